@@ -0,0 +1,178 @@
+/**
+ * The AffineMap class represents an affine map of the plane
+ * A Point (x, y) is mapped to (a*x + b*y + e, c*x + d*y + f). AffineMaps are immutable
+ */
+public class AffineMap {
+
+  /** The identity map */
+  public static final AffineMap IDENTITY = new AffineMap(1, 0, 0, 1, 0, 0);
+
+  /** The linear part of the map */
+  private final double a;
+  private final double b;
+  private final double c;
+  private final double d;
+
+  /** The translation of the map */
+  private final double e;
+  private final double f;
+
+  /**
+   * Creates an AffineMap mapping (x, y) to (a*x + b*y + e, c*x + d*y + f)
+   *
+   * @param a the factor of x in the new x coordinate
+   * @param b the factor of y in the new x coordinate
+   * @param c the factor of x in the new y coordinate
+   * @param d the factor of y in the new y coordinate
+   * @param e the translation along the x axis
+   * @param f the translation along the y axis
+   */
+  public AffineMap(double a, double b, double c, double d, double e, double f) {
+    this.a = a;
+    this.b = b;
+    this.c = c;
+    this.d = d;
+    this.e = e;
+    this.f = f;
+  }
+
+  /**
+   * Creates the map taking the segment from (0, 0) to (1, 0) onto a given segment
+   * The map is a rotation and a uniform scaling followed by a translation, so it keeps angles
+   *
+   * @param startX the x coordinate the origin is mapped to
+   * @param startY the y coordinate the origin is mapped to
+   * @param endX the x coordinate (1, 0) is mapped to
+   * @param endY the y coordinate (1, 0) is mapped to
+   * @return the map
+   */
+  public static AffineMap ofSegment(double startX, double startY, double endX, double endY) {
+    double dx = endX - startX;
+    double dy = endY - startY;
+    return new AffineMap(dx, -dy, dy, dx, startX, startY);
+  }
+
+  /**
+   * Creates the map taking the triangle (0, 0), (1, 0), (0, 1) onto a given triangle
+   *
+   * @param x1 the x coordinate the origin is mapped to
+   * @param y1 the y coordinate the origin is mapped to
+   * @param x2 the x coordinate (1, 0) is mapped to
+   * @param y2 the y coordinate (1, 0) is mapped to
+   * @param x3 the x coordinate (0, 1) is mapped to
+   * @param y3 the y coordinate (0, 1) is mapped to
+   * @return the map
+   */
+  public static AffineMap ofTriangle(double x1, double y1, double x2, double y2, double x3, double y3) {
+    return new AffineMap(x2 - x1, x3 - x1, y2 - y1, y3 - y1, x1, y1);
+  }
+
+  /**
+   * Creates a map scaling the plane along both axes, then translating it
+   *
+   * @param scaleX the scaling along the x axis
+   * @param scaleY the scaling along the y axis
+   * @param translateX the translation along the x axis
+   * @param translateY the translation along the y axis
+   * @return the map
+   */
+  public static AffineMap ofScale(double scaleX, double scaleY, double translateX, double translateY) {
+    return new AffineMap(scaleX, 0, 0, scaleY, translateX, translateY);
+  }
+
+  /**
+   * Creates a map rotating the plane about a Point
+   *
+   * @param angle the angle of rotation in radians
+   * @param centerX the x coordinate of the center of rotation
+   * @param centerY the y coordinate of the center of rotation
+   * @return the map
+   */
+  public static AffineMap ofRotation(double angle, double centerX, double centerY) {
+    double cos = Math.cos(angle);
+    double sin = Math.sin(angle);
+    return new AffineMap(cos, -sin, sin, cos, centerX - cos * centerX + sin * centerY, centerY - sin * centerX - cos * centerY);
+  }
+
+  /**
+   * Returns the map applying another map first, then this one
+   *
+   * @param inner the map applied first
+   * @return the composed map
+   */
+  public AffineMap compose(AffineMap inner) {
+    return new AffineMap(a * inner.a + b * inner.c, a * inner.b + b * inner.d,
+                         c * inner.a + d * inner.c, c * inner.b + d * inner.d,
+                         a * inner.e + b * inner.f + e, c * inner.e + d * inner.f + f);
+  }
+
+  /**
+   * Returns the inverse of the map
+   *
+   * @return the inverse map
+   * @throws IllegalStateException if the map collapses the plane and has no inverse
+   */
+  public AffineMap inverse() {
+    double det = a * d - b * c;
+    if (det == 0)
+      throw new IllegalStateException("The map has no inverse.");
+    return new AffineMap(d / det, -b / det, -c / det, a / det,
+                         (b * f - d * e) / det, (c * e - a * f) / det);
+  }
+
+  /**
+   * Maps the x coordinate of a Point
+   *
+   * @param x the x coordinate of the Point
+   * @param y the y coordinate of the Point
+   * @return the new x coordinate
+   */
+  public double mapX(double x, double y) {
+    return a * x + b * y + e;
+  }
+
+  /**
+   * Maps the y coordinate of a Point
+   *
+   * @param x the x coordinate of the Point
+   * @param y the y coordinate of the Point
+   * @return the new y coordinate
+   */
+  public double mapY(double x, double y) {
+    return c * x + d * y + f;
+  }
+
+  /**
+   * Maps a Point
+   *
+   * @param point the Point to map
+   * @return the new Point
+   */
+  public Point map(Point point) {
+    return new Point(mapX(point.getX(), point.getY()), mapY(point.getX(), point.getY()));
+  }
+
+  /**
+   * Copies the coefficients of the map into an array
+   *
+   * @param target the array to copy into
+   * @param offset the index of the first coefficient, in the order a, b, c, d, e, f
+   */
+  public void copyTo(double[] target, int offset) {
+    target[offset] = a;
+    target[offset + 1] = b;
+    target[offset + 2] = c;
+    target[offset + 3] = d;
+    target[offset + 4] = e;
+    target[offset + 5] = f;
+  }
+
+  /**
+   * Returns the coefficients of the map
+   *
+   * @return the map as a string
+   */
+  public String toString() {
+    return "[" + a + ", " + b + ", " + e + "; " + c + ", " + d + ", " + f + "]";
+  }
+}
@@ -0,0 +1,249 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+import java.util.ArrayDeque;
+import java.util.function.LongSupplier;
+
+/**
+ * JUnit test suite for the allocation budgets of the generation hot paths
+ * Each path is measured with GenerationRun.currentThreadAllocatedBytes(), which reads the allocation counter of
+ * com.sun.management.ThreadMXBean. Every path runs several times and the smallest measurement counts,
+ * so that it is measured once compiled.
+ *
+ * The paths meant to be allocation-free, generate(), the stream and bounds tree walks, the mesh replay,
+ * the packed transforms and rotate(), may allocate a fixed number of bytes for buffers and metrics but nothing per vertex or edge, so an object
+ * created per vertex or edge fails them. The paths that return Points and Lines allocate them by design,
+ * and the exact bytes depend on the JVM, so they are held to a generous ceiling per vertex or edge instead:
+ * several times what they allocate on a 64-bit HotSpot JVM, so that only a path allocating far more than
+ * its results, such as a copy per level or a boxed coordinate, fails them
+ */
+public class AllocationBudgetClassTest {
+
+  /** The number of runs of each path */
+  private static final int RUNS = 10;
+
+  /** The bytes an allocation-free path may allocate no matter how large the fractal, for block buffers, metrics and the like */
+  private static final long FIXED_BYTES = 32 * 1024;
+
+  /** The bytes per vertex allowed to generating the Points, which build the mesh or the packed coordinates first */
+  private static final long POINT_BYTES = 512;
+
+  /** The bytes per edge allowed to generating the Lines, which join Points generated already */
+  private static final long LINE_BYTES = 128;
+
+  /** The bytes per vertex or edge allowed to a cached read, which copies only the array */
+  private static final long CACHED_BYTES = 16;
+
+  /** The bytes per vertex or edge allowed to the streams, which create a Point or a Line with its Points per element */
+  private static final long STREAM_BYTES = 256;
+
+  /** The bytes per vertex allowed to the packed Points, two doubles each */
+  private static final long PACKED_BYTES = 64;
+
+  /** The sink counting the geometry it receives and keeping nothing */
+  private final long[] emitted = new long[1];
+  private final GeometrySink countingSink = new GeometrySink() {
+    public void point(double x, double y) {
+      emitted[0]++;
+    }
+
+    public void line(double x1, double y1, double x2, double y2) {
+      emitted[0]++;
+    }
+  };
+
+  /**
+   * Compiles the transform kernels before any path is measured
+   * The Vector API boxes every vector until the JIT compiler has compiled the kernel using it,
+   * which the few runs of a single path do not reach. The kernels run on ranges of every length
+   * modulo the vector size, until a round allocates no more than the coefficients of the map
+   */
+  @BeforeClass
+  public static void warmUpKernels() {
+    AffineMap map = AffineMap.ofRotation(0.01, 1, 2);
+    double[] xs = new double[1024];
+    double[] ys = new double[xs.length];
+    double[] packed = new double[2 * xs.length];
+    double[] target = new double[packed.length];
+    for (int round = 0; round < 200000; round++) {
+      int count = xs.length - round % 16;
+      long start = GenerationRun.currentThreadAllocatedBytes();
+      BatchTransform.apply(map, xs, ys, 0, count);
+      BatchTransform.apply(map, packed, 0, count);
+      BatchTransform.apply(map, packed, 0, target, 0, count);
+      if (round >= 20000 && GenerationRun.currentThreadAllocatedBytes() - start < 1024)
+        break;
+    }
+  }
+
+  @Before
+  public void checkMeasurable() {
+    Assume.assumeTrue("The JVM can not measure allocations per thread", GenerationRun.currentThreadAllocatedBytes() >= 0);
+  }
+
+  /**
+   * Test the allocation-free paths of TriangleFractal
+   */
+  @Test
+  public void testTriangleFractal() {
+    TriangleFractal fractal = new TriangleFractal(new Triangle(new Point(0, 500), new Point(250, 0), new Point(500, 500)), 8);
+    checkBudgets(fractal);
+
+    //replaying the mesh creates nothing
+    FractalMesh mesh = fractal.getMesh();
+    assertAllocationFree("mesh replay", measure(() -> {
+      mesh.replay(countingSink);
+      return 0;
+    }), mesh.getVertexCount() + mesh.getEdgeCount());
+  }
+
+  /**
+   * Test the allocation-free paths of SnowflakeFractal
+   */
+  @Test
+  public void testSnowflakeFractal() {
+    SnowflakeFractal<NGon> fractal = new SnowflakeFractal<>(new NGon(new Point(250, 250), 150.0, 8), 5);
+    checkBudgets(fractal);
+
+    //transforming the packed Points in place creates nothing
+    double[] packed = fractal.getPackedPoints();
+    AffineMap rotation = AffineMap.ofRotation(0.01, 250, 250);
+    assertAllocationFree("packed transform", measure(() -> {
+      BatchTransform.apply(rotation, packed, 0, packed.length / 2);
+      return 0;
+    }), packed.length / 2);
+    assertPerItem("getPackedPoints", measure(() -> fractal.getPackedPoints().length), packed.length / 2, PACKED_BYTES);
+  }
+
+  /**
+   * Test the allocation-free paths of RectangleFractal
+   */
+  @Test
+  public void testRectangleFractal() {
+    RectangleFractal fractal = new RectangleFractal(new Rectangle(new Point(250, 250), 300.0, 200.0), 4);
+    checkBudgets(fractal);
+  }
+
+  /**
+   * Helper method to check the allocation-free paths shared by every fractal and the ceilings of the others
+   *
+   * @param fractal the fractal
+   */
+  private void checkBudgets(Fractal<?> fractal) {
+    int numLevels = fractal.getNumLevels();
+    long vertices = fractal.getPoints().length;
+    long edges = fractal.getLines().length;
+
+    assertAllocationFree("generate", measure(() -> {
+      fractal.generate(countingSink);
+      return 0;
+    }), vertices + edges);
+    //the walks behind the streams and the culling handle every node in reused arrays
+    assertAllocationFree("spliterator tryAdvance", measure(() -> {
+      new NodeCounter(fractal).tryAdvance(element -> {});
+      return 0;
+    }), vertices + edges);
+    assertAllocationFree("spliterator forEachRemaining", measure(() -> {
+      new NodeCounter(fractal).forEachRemaining(element -> {});
+      return 0;
+    }), vertices + edges);
+    BoundsTree tree = BoundsTree.of(fractal, 3);
+    assertAllocationFree("bounds tree", measure(() -> {
+      tree.generate(-1e9, -1e9, 1e9, 1e9, countingSink);
+      return 0;
+    }), vertices + edges);
+    assertAllocationFree("rotate", measure(() -> {
+      fractal.rotate(0.01);
+      return 0;
+    }), vertices);
+
+    //changing the number of levels, even to the same number, makes the fractal generate again
+    long points = measure(() -> {
+      fractal.setNumLevels(numLevels);
+      return fractal.getPoints().length;
+    });
+    assertPerItem("getPoints", points, vertices, POINT_BYTES);
+    long pointsAndLines = measure(() -> {
+      fractal.setNumLevels(numLevels);
+      fractal.getPoints();
+      return fractal.getLines().length;
+    });
+    assertPerItem("getLines", pointsAndLines - points, edges, LINE_BYTES);
+    assertPerItem("cached getPoints", measure(() -> fractal.getPoints().length), vertices, CACHED_BYTES);
+    assertPerItem("cached getLines", measure(() -> fractal.getLines().length), edges, CACHED_BYTES);
+    assertPerItem("pointStream", measure(() -> fractal.pointStream().count()), vertices, STREAM_BYTES);
+    assertPerItem("lineStream", measure(() -> fractal.lineStream().count()), edges, STREAM_BYTES);
+  }
+
+  /**
+   * Helper method to measure the smallest number of bytes a path allocates over several runs
+   *
+   * @param path the path, returning anything so that its result is used
+   * @return the smallest number of bytes allocated by a run
+   */
+  private long measure(LongSupplier path) {
+    long allocated = Long.MAX_VALUE;
+    long results = 0;
+    for (int run = 0; run < RUNS; run++) {
+      long start = GenerationRun.currentThreadAllocatedBytes();
+      results += path.getAsLong();
+      allocated = Math.min(allocated, GenerationRun.currentThreadAllocatedBytes() - start);
+    }
+    emitted[0] += results;
+    return allocated;
+  }
+
+  /**
+   * Helper method to check that a path allocated nothing per vertex or edge
+   *
+   * @param path the name of the path
+   * @param allocated the bytes allocated by the path
+   * @param items the number of vertices or edges the path handles, enough that one object each goes over the budget
+   */
+  private static void assertAllocationFree(String path, long allocated, long items) {
+    assertTrue(String.format("%s allocated %d bytes (%.1f per item of %d), more than the %d fixed bytes allowed",
+                             path, allocated, allocated / (double) Math.max(1, items), items, FIXED_BYTES),
+               allocated <= FIXED_BYTES);
+  }
+
+  /**
+   * Helper method to check that a path allocated no more than a ceiling per vertex or edge
+   *
+   * @param path the name of the path
+   * @param allocated the bytes allocated by the path
+   * @param items the number of vertices or edges the path generates
+   * @param bytesPerItem the bytes allowed per vertex or edge, on top of the fixed bytes
+   */
+  private static void assertPerItem(String path, long allocated, long items, long bytesPerItem) {
+    long ceiling = FIXED_BYTES + bytesPerItem * items;
+    assertTrue(String.format("%s allocated %d bytes (%.1f per item of %d), more than the %d bytes allowed",
+                             path, allocated, allocated / (double) Math.max(1, items), items, ceiling),
+               allocated <= ceiling);
+  }
+
+  /**
+   * The NodeCounter class walks the recursion tree of a fractal like its streams, counting the geometry instead of
+   * creating Points and Lines, so that only the walk itself allocates
+   */
+  private class NodeCounter extends FractalSpliterator<Object> {
+
+    NodeCounter(Fractal<?> fractal) {
+      super(fractal.system(), fractal.system().rootNodes(fractal.getNumLevels(), fractal.rootMaps()));
+    }
+
+    private NodeCounter(IteratedFunctionSystem system, ArrayDeque<double[]> nodes) {
+      super(system, nodes);
+    }
+
+    protected FractalSpliterator<Object> create(ArrayDeque<double[]> nodes) {
+      return new NodeCounter(system, nodes);
+    }
+
+    public void point(double x, double y) {
+      emitted[0]++;
+    }
+
+    public void line(double x1, double y1, double x2, double y2) {
+      emitted[0]++;
+    }
+  }
+}
@@ -0,0 +1,283 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The BatchTransform class applies an AffineMap to many coordinates at once
+ * The map's coefficients and any trigonometry are computed once per batch instead of once per Point.
+ * When the jdk.incubator.vector module is present, the kernels run on VectorKernel, which transforms
+ * several coordinates per instruction. Without it they run as plain, branch-free loops over double arrays.
+ * The JIT compiler turns the loop over separate x and y arrays into SIMD instructions by itself, but not
+ * the loops over packed coordinates, where every Point mixes its own two. Both give exactly the same results.
+ *
+ * Point objects are transformed by gathering their coordinates into blocks of packed arrays,
+ * running the same kernel on each block and writing the results back.
+ *
+ * The applyParallel() methods split the index range in halves on the common fork/join pool
+ * until a range holds fewer than PARALLEL_THRESHOLD Points, and run the same kernels on each range.
+ * Smaller batches stay on the calling thread, where forking would cost more than it saves
+ */
+public class BatchTransform {
+
+  /** The number of Points gathered into a block */
+  private static final int BLOCK_SIZE = 1024;
+
+  /** The number of Points below which a batch is transformed on the calling thread */
+  public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+  /** The kernels used, VectorKernel when the Vector API is available and the scalar loops otherwise */
+  private static final Kernel KERNEL = loadKernel();
+
+  /**
+   * Checks whether the kernels run on the Vector API
+   *
+   * @return true if the jdk.incubator.vector module is present and VectorKernel is used; false if the scalar loops are
+   */
+  public static boolean isVectorized() {
+    return !(KERNEL instanceof ScalarKernel);
+  }
+
+  /**
+   * Helper method to load VectorKernel by name, so that this class links without the jdk.incubator.vector module
+   *
+   * @return a VectorKernel, or the scalar loops if the module or the class is absent
+   */
+  private static Kernel loadKernel() {
+    try {
+      return (Kernel) Class.forName("VectorKernel").getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return new ScalarKernel();
+    }
+  }
+
+  /**
+   * Transforms packed coordinates in place
+   *
+   * @param map the map to apply
+   * @param coordinates the coordinates, as x, y
+   * @param from the index of the first Point to transform
+   * @param to the index after the last Point to transform
+   */
+  public static void apply(AffineMap map, double[] coordinates, int from, int to) {
+    KERNEL.apply(coefficients(map), coordinates, from, to);
+  }
+
+  /**
+   * Transforms packed coordinates into another range, fusing the copy and the transform into one pass
+   * The ranges may be in the same array but must not overlap
+   *
+   * @param map the map to apply
+   * @param source the coordinates to read, as x, y
+   * @param sourceFrom the index of the first Point to read
+   * @param target the array receiving the transformed coordinates, as x, y
+   * @param targetFrom the index of the first Point to write
+   * @param count the number of Points to transform
+   */
+  public static void apply(AffineMap map, double[] source, int sourceFrom, double[] target, int targetFrom, int count) {
+    KERNEL.apply(coefficients(map), source, sourceFrom, target, targetFrom, count);
+  }
+
+  /**
+   * Transforms coordinates held in separate x and y arrays in place
+   * This is the layout that vectorizes best, since every lane holds the same coordinate of a Point
+   *
+   * @param map the map to apply
+   * @param xs the x coordinates
+   * @param ys the y coordinates
+   * @param from the index of the first Point to transform
+   * @param to the index after the last Point to transform
+   */
+  public static void apply(AffineMap map, double[] xs, double[] ys, int from, int to) {
+    KERNEL.apply(coefficients(map), xs, ys, from, to);
+  }
+
+  /**
+   * Transforms Points in place, a block at a time
+   * Each Point must be listed only once
+   *
+   * @param map the map to apply
+   * @param points the Points
+   * @param from the index of the first Point to transform
+   * @param to the index after the last Point to transform
+   */
+  public static void apply(AffineMap map, Point[] points, int from, int to) {
+    apply(map, Arrays.asList(points).subList(from, to));
+  }
+
+  /**
+   * Transforms a list of Points in place, a block at a time
+   * Each Point must be listed only once
+   *
+   * @param map the map to apply
+   * @param points the Points, in a list with fast random access
+   */
+  public static void apply(AffineMap map, List<Point> points) {
+    int size = points.size();
+    double[] xs = new double[Math.min(size, BLOCK_SIZE)];
+    double[] ys = new double[xs.length];
+    for (int start = 0; start < size; start += BLOCK_SIZE) {
+      int count = Math.min(BLOCK_SIZE, size - start);
+      for (int i = 0; i < count; i++) {
+        Point point = points.get(start + i);
+        xs[i] = point.getX();
+        ys[i] = point.getY();
+      }
+      apply(map, xs, ys, 0, count);
+      for (int i = 0; i < count; i++) {
+        Point point = points.get(start + i);
+        point.setX(xs[i]);
+        point.setY(ys[i]);
+      }
+    }
+  }
+
+  /**
+   * Helper method to read the coefficients of a map once per batch
+   *
+   * @param map the map
+   * @return the coefficients, as a, b, c, d, e, f
+   */
+  private static double[] coefficients(AffineMap map) {
+    double[] m = new double[6];
+    map.copyTo(m, 0);
+    return m;
+  }
+
+  /**
+   * Transforms packed coordinates in place, splitting large batches across the common fork/join pool
+   *
+   * @param map the map to apply
+   * @param coordinates the coordinates, as x, y
+   * @param from the index of the first Point to transform
+   * @param to the index after the last Point to transform
+   */
+  public static void applyParallel(AffineMap map, double[] coordinates, int from, int to) {
+    forEachRange(from, to, (start, end) -> apply(map, coordinates, start, end));
+  }
+
+  /**
+   * Transforms coordinates held in separate x and y arrays in place,
+   * splitting large batches across the common fork/join pool
+   *
+   * @param map the map to apply
+   * @param xs the x coordinates
+   * @param ys the y coordinates
+   * @param from the index of the first Point to transform
+   * @param to the index after the last Point to transform
+   */
+  public static void applyParallel(AffineMap map, double[] xs, double[] ys, int from, int to) {
+    forEachRange(from, to, (start, end) -> apply(map, xs, ys, start, end));
+  }
+
+  /**
+   * Transforms a list of Points in place, splitting large batches across the common fork/join pool
+   * Each Point must be listed only once, so that no two ranges write to the same Point
+   *
+   * @param map the map to apply
+   * @param points the Points, in a list with fast random access
+   */
+  public static void applyParallel(AffineMap map, List<Point> points) {
+    forEachRange(0, points.size(), (start, end) -> apply(map, points.subList(start, end)));
+  }
+
+  /**
+   * Helper method to run a kernel over a range of Points, forking when the range is large
+   *
+   * @param from the index of the first Point
+   * @param to the index after the last Point
+   * @param kernel the kernel to run on each range
+   */
+  private static void forEachRange(int from, int to, RangeKernel kernel) {
+    if (to - from < PARALLEL_THRESHOLD)
+      kernel.apply(from, to);
+    else
+      ForkJoinPool.commonPool().invoke(new RangeTask(kernel, from, to));
+  }
+
+  /**
+   * The RangeKernel interface transforms the Points in a range of indexes
+   */
+  private interface RangeKernel {
+    void apply(int from, int to);
+  }
+
+  /**
+   * The RangeTask class splits a range of Points in halves until the halves are small enough to transform
+   */
+  private static class RangeTask extends RecursiveAction {
+
+    /** The version of the serialized form, which RecursiveAction inherits from Serializable */
+    private static final long serialVersionUID = 1L;
+
+    /** The kernel to run on each range */
+    private final transient RangeKernel kernel;
+
+    /** The range of Points, from inclusive to exclusive */
+    private final int from;
+    private final int to;
+
+    RangeTask(RangeKernel kernel, int from, int to) {
+      this.kernel = kernel;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute() {
+      if (to - from < PARALLEL_THRESHOLD) {
+        kernel.apply(from, to);
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(new RangeTask(kernel, from, middle), new RangeTask(kernel, middle, to));
+      }
+    }
+  }
+
+  /**
+   * The Kernel interface transforms batches of coordinates by the coefficients of a map, as a, b, c, d, e, f
+   */
+  interface Kernel {
+    void apply(double[] m, double[] coordinates, int from, int to);
+
+    void apply(double[] m, double[] source, int sourceFrom, double[] target, int targetFrom, int count);
+
+    void apply(double[] m, double[] xs, double[] ys, int from, int to);
+  }
+
+  /**
+   * The ScalarKernel class transforms one Point at a time with plain loops
+   */
+  static class ScalarKernel implements Kernel {
+
+    public void apply(double[] m, double[] coordinates, int from, int to) {
+      double a = m[0], b = m[1], c = m[2], d = m[3], e = m[4], f = m[5];
+      for (int i = 2 * from; i < 2 * to; i += 2) {
+        double x = coordinates[i];
+        double y = coordinates[i + 1];
+        coordinates[i] = a * x + b * y + e;
+        coordinates[i + 1] = c * x + d * y + f;
+      }
+    }
+
+    public void apply(double[] m, double[] source, int sourceFrom, double[] target, int targetFrom, int count) {
+      double a = m[0], b = m[1], c = m[2], d = m[3], e = m[4], f = m[5];
+      int shift = 2 * (targetFrom - sourceFrom);
+      for (int i = 2 * sourceFrom; i < 2 * (sourceFrom + count); i += 2) {
+        double x = source[i];
+        double y = source[i + 1];
+        target[i + shift] = a * x + b * y + e;
+        target[i + shift + 1] = c * x + d * y + f;
+      }
+    }
+
+    public void apply(double[] m, double[] xs, double[] ys, int from, int to) {
+      double a = m[0], b = m[1], c = m[2], d = m[3], e = m[4], f = m[5];
+      for (int i = from; i < to; i++) {
+        double x = xs[i];
+        double y = ys[i];
+        xs[i] = a * x + b * y + e;
+        ys[i] = c * x + d * y + f;
+      }
+    }
+  }
+}
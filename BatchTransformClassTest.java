@@ -0,0 +1,160 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * JUnit test suite for the BatchTransform class
+ * This class checks the kernels against Point.rotateAbout(), over more than one block
+ */
+public class BatchTransformClassTest {
+
+  /**
+   * Test that the three layouts rotate like Point.rotateAbout()
+   */
+  @Test
+  public void testRotation() {
+    Point center = new Point(3, -2);
+    double angle = 0.7;
+    AffineMap rotation = AffineMap.ofRotation(angle, center.getX(), center.getY());
+
+    int size = 2500;
+    Point[] expected = new Point[size];
+    Point[] points = new Point[size];
+    double[] packed = new double[2 * size];
+    double[] xs = new double[size];
+    double[] ys = new double[size];
+    for (int i = 0; i < size; i++) {
+      double x = Math.cos(i) * i;
+      double y = Math.sin(i) * 0.5 * i;
+      expected[i] = new Point(x, y);
+      expected[i].rotateAbout(center, angle);
+      points[i] = new Point(x, y);
+      packed[2 * i] = xs[i] = x;
+      packed[2 * i + 1] = ys[i] = y;
+    }
+
+    //leave the first Point alone to check the range
+    BatchTransform.apply(rotation, points, 1, size);
+    BatchTransform.apply(rotation, packed, 1, size);
+    BatchTransform.apply(rotation, xs, ys, 1, size);
+    assertEquals(new Point(0, 0), points[0]);
+    assertEquals(0, packed[0], 0);
+    for (int i = 1; i < size; i++) {
+      assertEquals(expected[i], points[i]);
+      assertEquals(expected[i], new Point(packed[2 * i], packed[2 * i + 1]));
+      assertEquals(expected[i], new Point(xs[i], ys[i]));
+    }
+  }
+
+  /**
+   * Test that rotating a fractal in a batch rotates all of its Points about its center
+   */
+  @Test
+  public void testFractalRotate() {
+    SnowflakeFractal<Square> fractal = new SnowflakeFractal<>(new Square(new Point(1, 1), 2.0), 3);
+    Point[] before = fractal.getPoints();
+    ArrayList<Point> expected = new ArrayList<>();
+    for (Point point : before) {
+      Point copy = new Point(point.getX(), point.getY());
+      copy.rotateAbout(new Point(1, 1), Math.PI / 5);
+      expected.add(copy);
+    }
+    fractal.rotate(Math.PI / 5);
+    assertEquals(expected, Arrays.asList(before));
+  }
+
+  /**
+   * Test that the parallel kernels give exactly the results of the sequential ones, over several ranges
+   */
+  @Test
+  public void testParallel() {
+    AffineMap map = AffineMap.ofRotation(0.3, 5, -1).compose(AffineMap.ofScale(2, 0.5, 1, 1));
+    int size = 3 * BatchTransform.PARALLEL_THRESHOLD + 7;
+    double[] packed = new double[2 * size];
+    double[] xs = new double[size];
+    double[] ys = new double[size];
+    ArrayList<Point> points = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      packed[2 * i] = xs[i] = Math.cos(i) * i;
+      packed[2 * i + 1] = ys[i] = Math.sin(i) * i;
+      points.add(new Point(xs[i], ys[i]));
+    }
+    double[] expected = packed.clone();
+    BatchTransform.apply(map, expected, 1, size);
+
+    //leave the first Point alone to check the range
+    BatchTransform.applyParallel(map, packed, 1, size);
+    BatchTransform.applyParallel(map, xs, ys, 1, size);
+    BatchTransform.applyParallel(map, points.subList(1, size));
+    assertEquals(0, packed[0], 0);
+    assertEquals(0, xs[0], 0);
+    assertEquals(new Point(0, 0), points.get(0));
+    assertArrayEquals(expected, packed, 0);
+    for (int i = 0; i < size; i++) {
+      assertEquals(expected[2 * i], xs[i], 0);
+      assertEquals(expected[2 * i + 1], ys[i], 0);
+      assertEquals(expected[2 * i], points.get(i).getX(), 0);
+      assertEquals(expected[2 * i + 1], points.get(i).getY(), 0);
+    }
+  }
+
+  /**
+   * Test that a fractal with parallel transforms is moved and rotated like one without
+   */
+  @Test
+  public void testFractalParallelTransforms() {
+    SnowflakeFractal<Square> sequential = new SnowflakeFractal<>(new Square(new Point(0, 0), 100.0), 8);
+    SnowflakeFractal<Square> parallel = new SnowflakeFractal<>(new Square(new Point(0, 0), 100.0), 8);
+    assertFalse(parallel.isParallelTransforms());
+    parallel.setParallelTransforms(true);
+    assertTrue(parallel.isParallelTransforms());
+
+    for (SnowflakeFractal<Square> fractal : Arrays.asList(sequential, parallel)) {
+      fractal.setCenter(new Point(20, -30));
+      fractal.rotate(1.1);
+    }
+    Point[] expected = sequential.getPoints();
+    Point[] actual = parallel.getPoints();
+    assertTrue(actual.length > BatchTransform.PARALLEL_THRESHOLD);
+    assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+  }
+
+  /**
+   * Test that the Vector API kernels are used when the module is present and match the scalar loops
+   * over ranges that do not fill a whole vector
+   */
+  @Test
+  public void testVectorKernels() {
+    assertEquals(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), BatchTransform.isVectorized());
+
+    AffineMap map = AffineMap.ofRotation(-1.3, 2, 7).compose(AffineMap.ofScale(3, 0.25, -4, 1));
+    BatchTransform.ScalarKernel scalar = new BatchTransform.ScalarKernel();
+    double[] m = new double[6];
+    map.copyTo(m, 0);
+    for (int count = 0; count < 40; count++) {
+      double[] packed = new double[2 * (count + 3)];
+      double[] xs = new double[count + 3];
+      double[] ys = new double[count + 3];
+      for (int i = 0; i < xs.length; i++) {
+        packed[2 * i] = xs[i] = Math.cos(i) * i;
+        packed[2 * i + 1] = ys[i] = Math.sin(i) * i;
+      }
+      double[] expected = packed.clone();
+      scalar.apply(m, expected, 1, count + 1);
+      double[] copied = new double[packed.length];
+      double[] expectedCopy = new double[packed.length];
+      scalar.apply(m, packed, 1, expectedCopy, 2, count);
+
+      BatchTransform.apply(map, packed, 1, copied, 2, count);
+      BatchTransform.apply(map, packed, 1, count + 1);
+      BatchTransform.apply(map, xs, ys, 1, count + 1);
+      assertArrayEquals(expected, packed, 0);
+      assertArrayEquals(expectedCopy, copied, 0);
+      for (int i = 0; i < xs.length; i++) {
+        assertEquals(expected[2 * i], xs[i], 0);
+        assertEquals(expected[2 * i + 1], ys[i], 0);
+      }
+    }
+  }
+}
@@ -0,0 +1,281 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The BoundsTree class keeps the bounds of the recursion tree of a fractal, level by level
+ * Every node of the tree gets the bounding box of all the geometry its subtree emits, found by mapping
+ * the hull of the fractal's IteratedFunctionSystem onto the node. A node's box therefore holds the
+ * boxes of all its descendants, and a query can skip a whole subtree as soon as its box misses.
+ *
+ * The boxes of each depth are stored in one flat array, indexed by the node addresses of the
+ * IteratedFunctionSystem, so a child is found from its parent without any pointer. A tree of depth d
+ * over a system of m maps holds about roots * m^d boxes, which is why callers choose the stored depth.
+ * Below it the recursion is generated again from the nodes, and nothing else is kept.
+ * A BoundsTree is a snapshot: it does not follow later changes to the fractal
+ */
+public class BoundsTree {
+
+  /** The largest number of nodes stored at one depth */
+  private static final int MAX_NODES = Integer.MAX_VALUE / 6;
+
+  /** The system generating the fractal */
+  private final IteratedFunctionSystem system;
+
+  /** The number of levels of the fractal */
+  private final int numLevels;
+
+  /** The maps taking the base shape onto each root */
+  private final AffineMap[] roots;
+
+  /** The bounds of the nodes of each depth as minX, minY, maxX, maxY, indexed by address */
+  private final double[][] bounds;
+
+  /**
+   * Builds a BoundsTree over the recursion tree of a system
+   *
+   * @param system the system generating the fractal
+   * @param numLevels the number of levels below each root
+   * @param roots the maps taking the base shape onto each root
+   * @param maxDepth the deepest level to store bounds for
+   * @throws IllegalArgumentException if the depth is negative or too deep to store
+   */
+  public BoundsTree(IteratedFunctionSystem system, int numLevels, AffineMap[] roots, int maxDepth) {
+    if (maxDepth < 0)
+      throw new IllegalArgumentException("The stored depth must be non-negative.");
+    int depth = Math.min(maxDepth, numLevels);
+    int numMaps = system.getNumMaps();
+    if (roots.length * Math.pow(numMaps, depth) > MAX_NODES)
+      throw new IllegalArgumentException("The stored depth is too deep.");
+    this.system = system;
+    this.numLevels = numLevels;
+    this.roots = roots.clone();
+    this.bounds = new double[depth + 1][];
+
+    double[] hull = system.getHull();
+    double[] childMaps = new double[6 * numMaps];
+    for (int k = 0; k < numMaps; k++)
+      system.getMap(k).copyTo(childMaps, 6 * k);
+
+    //the maps of one depth are only kept while the next depth is built from them
+    double[] maps = new double[6 * roots.length];
+    for (int r = 0; r < roots.length; r++)
+      roots[r].copyTo(maps, 6 * r);
+    for (int d = 0; d <= depth; d++) {
+      double[] nodeMaps = maps;
+      double[] box = new double[4 * (nodeMaps.length / 6)];
+      IntStream.range(0, nodeMaps.length / 6).parallel().forEach(n -> bound(nodeMaps, n, hull, box));
+      bounds[d] = box;
+      if (d < depth) {
+        double[] next = new double[numMaps * nodeMaps.length];
+        IntStream.range(0, nodeMaps.length / 6).parallel().forEach(n -> {
+          for (int k = 0; k < numMaps; k++)
+            compose(nodeMaps, n, childMaps, k, next, n * numMaps + k);
+        });
+        maps = next;
+      }
+    }
+  }
+
+  /**
+   * Builds a BoundsTree over the recursion tree of a fractal
+   *
+   * @param fractal the fractal
+   * @param maxDepth the deepest level to store bounds for
+   * @return the tree
+   * @throws IllegalArgumentException if the depth is negative or too deep to store
+   */
+  public static BoundsTree of(Fractal<?> fractal, int maxDepth) {
+    return new BoundsTree(fractal.system(), fractal.getNumLevels(), fractal.rootMaps(), maxDepth);
+  }
+
+  /**
+   * Retrieves the deepest level with stored bounds
+   * It is the smaller of the depth asked for and the number of levels of the fractal
+   *
+   * @return the stored depth
+   */
+  public int getDepth() {
+    return bounds.length - 1;
+  }
+
+  /**
+   * Retrieves the number of nodes at a depth
+   *
+   * @param depth the depth, at most getDepth()
+   * @return the number of nodes
+   */
+  public int getNodeCount(int depth) {
+    return bounds[depth].length / 4;
+  }
+
+  /**
+   * Retrieves the bounds of a node
+   *
+   * @param depth the depth of the node, at most getDepth()
+   * @param address the address of the node
+   * @return the bounds of everything the node's subtree emits, as minX, minY, maxX, maxY
+   */
+  public double[] getBounds(int depth, int address) {
+    double[] box = new double[4];
+    System.arraycopy(bounds[depth], 4 * address, box, 0, 4);
+    return box;
+  }
+
+  /**
+   * Finds the deepest stored nodes whose bounds meet a box, skipping the subtrees that miss it
+   *
+   * @param minX the smallest x coordinate of the box
+   * @param minY the smallest y coordinate of the box
+   * @param maxX the largest x coordinate of the box
+   * @param maxY the largest y coordinate of the box
+   * @return the addresses of the nodes at getDepth(), in increasing order
+   */
+  public int[] visible(double minX, double minY, double maxX, double maxY) {
+    int[] found = new int[16];
+    int count = 0;
+    int numMaps = system.getNumMaps();
+    int depth = getDepth();
+
+    //depth first, so the addresses come out in increasing order
+    int[] stack = new int[2 * (depth * numMaps + roots.length)];
+    int top = 0;
+    for (int r = roots.length - 1; r >= 0; r--) {
+      stack[top++] = r;
+      stack[top++] = 0;
+    }
+    while (top > 0) {
+      int d = stack[--top];
+      int address = stack[--top];
+      if (!meets(bounds[d], address, minX, minY, maxX, maxY))
+        continue;
+      if (d == depth) {
+        if (count == found.length)
+          found = Arrays.copyOf(found, 2 * count);
+        found[count++] = address;
+        continue;
+      }
+      for (int k = numMaps - 1; k >= 0; k--) {
+        stack[top++] = address * numMaps + k;
+        stack[top++] = d + 1;
+      }
+    }
+    return Arrays.copyOf(found, count);
+  }
+
+  /**
+   * Finds the deepest stored nodes whose bounds hold a Point
+   *
+   * @param x the x coordinate of the Point
+   * @param y the y coordinate of the Point
+   * @return the addresses of the nodes at getDepth(), in increasing order
+   */
+  public int[] pick(double x, double y) {
+    return visible(x, y, x, y);
+  }
+
+  /**
+   * Generates only the subtrees whose bounds meet a box, for culling a viewport or redrawing part of it
+   * Every Point and Line of the fractal inside the box is emitted, along with some outside of it
+   *
+   * @param minX the smallest x coordinate of the box
+   * @param minY the smallest y coordinate of the box
+   * @param maxX the largest x coordinate of the box
+   * @param maxY the largest y coordinate of the box
+   * @param sink the sink receiving the geometry
+   */
+  public void generate(double minX, double minY, double maxX, double maxY, GeometrySink sink) {
+    //the children of the node being visited at each depth, reused by every node of that depth
+    double[][][] children = new double[getDepth()][system.getNumMaps()][];
+    for (double[][] depth : children) {
+      for (int k = 0; k < depth.length; k++)
+        depth[k] = IteratedFunctionSystem.newNode();
+    }
+    for (double[] root : system.rootNodes(numLevels, roots))
+      generate(root, children, minX, minY, maxX, maxY, sink);
+  }
+
+  /**
+   * Helper method to generate the part of a subtree whose bounds meet a box
+   *
+   * @param node the root of the subtree
+   * @param children the nodes receiving the children of each depth
+   * @param minX the smallest x coordinate of the box
+   * @param minY the smallest y coordinate of the box
+   * @param maxX the largest x coordinate of the box
+   * @param maxY the largest y coordinate of the box
+   * @param sink the sink receiving the geometry
+   */
+  private void generate(double[] node, double[][][] children, double minX, double minY, double maxX, double maxY,
+                        GeometrySink sink) {
+    int depth = IteratedFunctionSystem.getDepth(node);
+    if (!meets(bounds[depth], (int) IteratedFunctionSystem.getAddress(node), minX, minY, maxX, maxY))
+      return;
+    if (depth == getDepth()) {
+      system.generate(node, sink);
+      return;
+    }
+    system.expand(node, sink, children[depth]);
+    for (double[] child : children[depth])
+      generate(child, children, minX, minY, maxX, maxY, sink);
+  }
+
+  /**
+   * Helper method to check whether the bounds of a node meet a box
+   *
+   * @param box the bounds of a depth
+   * @param address the address of the node
+   * @return true if the bounds and the box overlap or touch; false if not
+   */
+  private static boolean meets(double[] box, int address, double minX, double minY, double maxX, double maxY) {
+    int i = 4 * address;
+    return box[i] <= maxX && box[i + 2] >= minX && box[i + 1] <= maxY && box[i + 3] >= minY;
+  }
+
+  /**
+   * Helper method to bound a node by mapping the hull onto it
+   *
+   * @param maps the maps of the nodes of a depth, six per node
+   * @param node the position of the node
+   * @param hull the corners of the hull, as x, y
+   * @param box the bounds of the depth, receiving those of the node
+   */
+  private static void bound(double[] maps, int node, double[] hull, double[] box) {
+    int m = 6 * node;
+    double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < hull.length; i += 2) {
+      double x = maps[m] * hull[i] + maps[m + 1] * hull[i + 1] + maps[m + 4];
+      double y = maps[m + 2] * hull[i] + maps[m + 3] * hull[i + 1] + maps[m + 5];
+      minX = Math.min(minX, x);
+      minY = Math.min(minY, y);
+      maxX = Math.max(maxX, x);
+      maxY = Math.max(maxY, y);
+    }
+    box[4 * node] = minX;
+    box[4 * node + 1] = minY;
+    box[4 * node + 2] = maxX;
+    box[4 * node + 3] = maxY;
+  }
+
+  /**
+   * Helper method to compose the map of a node with one of the maps of the system, like IteratedFunctionSystem.expand()
+   *
+   * @param maps the maps of the parents, six per node
+   * @param parent the position of the parent
+   * @param childMaps the maps of the system, six per map
+   * @param k the index of the map of the system
+   * @param next the maps of the children, receiving the composition
+   * @param child the position of the child
+   */
+  private static void compose(double[] maps, int parent, double[] childMaps, int k, double[] next, int child) {
+    int p = 6 * parent;
+    int m = 6 * k;
+    int c = 6 * child;
+    next[c] = maps[p] * childMaps[m] + maps[p + 1] * childMaps[m + 2];
+    next[c + 1] = maps[p] * childMaps[m + 1] + maps[p + 1] * childMaps[m + 3];
+    next[c + 2] = maps[p + 2] * childMaps[m] + maps[p + 3] * childMaps[m + 2];
+    next[c + 3] = maps[p + 2] * childMaps[m + 1] + maps[p + 3] * childMaps[m + 3];
+    next[c + 4] = maps[p] * childMaps[m + 4] + maps[p + 1] * childMaps[m + 5] + maps[p + 4];
+    next[c + 5] = maps[p + 2] * childMaps[m + 4] + maps[p + 3] * childMaps[m + 5] + maps[p + 5];
+  }
+}
@@ -0,0 +1,126 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JUnit test suite for the BoundsTree class
+ * This class checks that the bounds hold their subtrees and that culling keeps what is in view
+ */
+public class BoundsTreeClassTest {
+
+  /**
+   * Test that every stored box holds all the geometry of its subtree, for the three fractals
+   */
+  @Test
+  public void testBoundsHoldSubtrees() {
+    Point center = new Point(250, 250);
+    List<Fractal<?>> fractals = new ArrayList<>();
+    fractals.add(new TriangleFractal(new Triangle(new Point(0, 500), new Point(250, 0), new Point(500, 500)), 4));
+    fractals.add(new SnowflakeFractal<NGon>(new NGon(center, 150.0, 5), 4));
+    fractals.add(new RectangleFractal(new Rectangle(center, 300.0, 200.0), 3));
+
+    for (Fractal<?> fractal : fractals) {
+      BoundsTree tree = BoundsTree.of(fractal, 2);
+      assertEquals(2, tree.getDepth());
+      IteratedFunctionSystem system = fractal.system();
+      assertEquals(fractal.rootMaps().length * system.getNumMaps() * system.getNumMaps(), tree.getNodeCount(2));
+
+      //walk down to the stored depth and generate every subtree from there
+      List<double[]> nodes = new ArrayList<>(system.rootNodes(fractal.getNumLevels(), fractal.rootMaps()));
+      for (int d = 0; d < 2; d++) {
+        List<double[]> children = new ArrayList<>();
+        for (double[] node : nodes)
+          for (double[] child : system.expand(node, new Collector()))
+            children.add(child);
+        nodes = children;
+      }
+      for (double[] node : nodes) {
+        double[] box = tree.getBounds(2, (int) IteratedFunctionSystem.getAddress(node));
+        Collector collector = new Collector();
+        system.generate(node, collector);
+        for (int i = 0; i < collector.coordinates.size(); i += 2) {
+          assertTrue(collector.coordinates.get(i) >= box[0] - 1e-9 && collector.coordinates.get(i) <= box[2] + 1e-9);
+          assertTrue(collector.coordinates.get(i + 1) >= box[1] - 1e-9 && collector.coordinates.get(i + 1) <= box[3] + 1e-9);
+        }
+      }
+    }
+  }
+
+  /**
+   * Test that culling to a viewport keeps every Line in view and skips most of the others
+   */
+  @Test
+  public void testCulling() {
+    SnowflakeFractal<EquilateralTriangle> fractal =
+      new SnowflakeFractal<EquilateralTriangle>(new EquilateralTriangle(new Point(250, 250), 300.0), 5);
+    BoundsTree tree = BoundsTree.of(fractal, 3);
+    Collector all = new Collector();
+    fractal.generate(all);
+    Collector culled = new Collector();
+    tree.generate(100, 100, 180, 180, culled);
+
+    assertTrue(culled.lines.size() < all.lines.size() / 2);
+    for (double[] line : all.lines) {
+      boolean inView = (line[0] >= 100 && line[0] <= 180 && line[1] >= 100 && line[1] <= 180)
+        || (line[2] >= 100 && line[2] <= 180 && line[3] >= 100 && line[3] <= 180);
+      if (inView)
+        assertTrue(culled.lines.stream().anyMatch(l -> Arrays.equals(l, line)));
+    }
+
+    //the picked nodes are the visible nodes of a box reduced to the Point
+    int[] picked = tree.pick(140, 140);
+    int[] visible = tree.visible(100, 100, 180, 180);
+    for (int address : picked)
+      assertTrue(Arrays.binarySearch(visible, address) >= 0);
+    assertArrayEquals(new int[0], tree.visible(-100, -100, -50, -50));
+  }
+
+  /**
+   * Test the limits on the stored depth
+   */
+  @Test
+  public void testDepth() {
+    TriangleFractal fractal = new TriangleFractal(new Triangle(new Point(0, 500), new Point(250, 0), new Point(500, 500)), 2);
+    assertEquals(2, BoundsTree.of(fractal, 10).getDepth());
+    assertEquals(0, BoundsTree.of(fractal, 0).getDepth());
+    assertEquals(1, BoundsTree.of(fractal, 0).getNodeCount(0));
+
+    try {
+      BoundsTree.of(fractal, -1);
+      fail("A negative depth should be rejected");
+    } catch (IllegalArgumentException e) {
+    }
+    try {
+      BoundsTree.of(new TriangleFractal(new Triangle(new Point(0, 500), new Point(250, 0), new Point(500, 500)), 40), 40);
+      fail("A depth too deep to store should be rejected");
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+  /**
+   * The Collector class keeps the geometry emitted into it
+   */
+  private static class Collector implements GeometrySink {
+
+    /** The coordinates of every Point and Line end, as x, y */
+    private final List<Double> coordinates = new ArrayList<>();
+
+    /** The Lines, as x1, y1, x2, y2 */
+    private final List<double[]> lines = new ArrayList<>();
+
+    public void point(double x, double y) {
+      coordinates.add(x);
+      coordinates.add(y);
+    }
+
+    public void line(double x1, double y1, double x2, double y2) {
+      coordinates.add(x1);
+      coordinates.add(y1);
+      coordinates.add(x2);
+      coordinates.add(y2);
+      lines.add(new double[] {x1, y1, x2, y2});
+    }
+  }
+}
@@ -0,0 +1,48 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * JUnit test suite for the CarpetRasterizer class
+ * This class tests the pixels of carpets, with and without rotation
+ */
+public class CarpetRasterizerClassTest {
+
+  /** The color of a pixel inside the carpet */
+  private static final int BLACK = 0xFF000000;
+
+  /** The color of a pixel outside the carpet */
+  private static final int WHITE = 0xFFFFFFFF;
+
+  /**
+   * Test the pixels of a carpet filling the image
+   */
+  @Test
+  public void testPixels() {
+    RectangleFractal fractal = new RectangleFractal(new Square(new Point(40.5, 40.5), 81.0), 2);
+    BufferedImage image = CarpetRasterizer.rasterize(fractal, 90, 90, 0);
+
+    assertEquals(BLACK, image.getRGB(0, 0));
+    assertEquals(BLACK, image.getRGB(80, 80));
+    assertEquals(WHITE, image.getRGB(85, 85));
+    //the center removed at level 1 and the center of a corner removed at level 2
+    assertEquals(WHITE, image.getRGB(40, 40));
+    assertEquals(WHITE, image.getRGB(13, 13));
+    assertEquals(BLACK, image.getRGB(8, 13));
+  }
+
+  /**
+   * Test that a rotation maps the pixels back into the carpet
+   */
+  @Test
+  public void testRotation() {
+    RectangleFractal fractal = new RectangleFractal(new Rectangle(new Point(50, 50), 60.0, 30.0), 1);
+    BufferedImage image = CarpetRasterizer.rasterize(fractal, 100, 100, Math.PI / 2);
+
+    //the rotated carpet is 30 wide and 60 high
+    assertEquals(BLACK, image.getRGB(36, 22));
+    assertEquals(WHITE, image.getRGB(22, 36));
+    assertEquals(WHITE, image.getRGB(50, 50));
+    assertEquals(BLACK, image.getRGB(50, 30));
+  }
+}
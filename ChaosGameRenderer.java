@@ -0,0 +1,176 @@
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import javax.imageio.ImageIO;
+
+/**
+ * The ChaosGameRenderer class draws the attractor of a fractal by playing the chaos game
+ * A point jumps again and again through a randomly chosen map of the fractal's iterated function system.
+ * After a few jumps it stays on the attractor, so every later position is one sample of the fractal
+ * at an unlimited depth. The work is O(samples) instead of growing with the number of levels.
+ *
+ * The samples are split into blocks, each drawn from its own SplittableRandom, and the blocks are
+ * shared out between one task per core. Each task counts hits into its own density grid and the grids
+ * are added up at the end, so the tasks share nothing while they run. A given seed always gives
+ * the same density grid, whatever the number of cores
+ */
+public class ChaosGameRenderer {
+
+  /** The number of jumps made before the point is on the attractor */
+  private static final int BURN_IN = 32;
+
+  /** The number of samples drawn from one random stream */
+  private static final int BLOCK_SIZE = 1 << 16;
+
+  /**
+   * Samples the attractor of a fractal into a density grid
+   * The fractal is drawn in its own coordinates, like the other renderers, and its number of levels is ignored
+   *
+   * @param fractal the fractal to sample
+   * @param width the width of the grid in pixels
+   * @param height the height of the grid in pixels
+   * @param angle the angle of rotation about the fractal's center, in radians
+   * @param samples the total number of samples
+   * @param seed the seed of the random jumps
+   * @return the number of samples in each pixel, row by row
+   */
+  public static long[] sample(Fractal<?> fractal, int width, int height, double angle, long samples, long seed) {
+    if (width <= 0 || height <= 0)
+      throw new IllegalArgumentException("The image size must be positive.");
+    if (samples < 0)
+      throw new IllegalArgumentException("The number of samples must be non-negative.");
+
+    IteratedFunctionSystem system = fractal.system();
+    double[] maps = new double[6 * system.getNumMaps()];
+    for (int k = 0; k < system.getNumMaps(); k++)
+      system.getMap(k).copyTo(maps, 6 * k);
+
+    //every root map is followed by the rotation, so a sample is placed with a single map
+    Point center = fractal.getCenter();
+    AffineMap rotation = AffineMap.ofRotation(angle, center.getX(), center.getY());
+    AffineMap[] rootMaps = fractal.rootMaps();
+    double[] views = new double[6 * rootMaps.length];
+    for (int r = 0; r < rootMaps.length; r++)
+      rotation.compose(rootMaps[r]).copyTo(views, 6 * r);
+
+    //split the random streams up front, one per block of samples, so that the result
+    //depends neither on the number of cores nor on the scheduling of the tasks
+    int numBlocks = (int) ((samples + BLOCK_SIZE - 1) / BLOCK_SIZE);
+    SplittableRandom root = new SplittableRandom(seed);
+    SplittableRandom[] randoms = new SplittableRandom[numBlocks];
+    for (int b = 0; b < numBlocks; b++)
+      randoms[b] = root.split();
+
+    int numTasks = Math.max(1, Math.min(numBlocks, Runtime.getRuntime().availableProcessors()));
+    return IntStream.range(0, numTasks).parallel()
+      .mapToObj(t -> {
+        long[] density = new long[width * height];
+        for (int b = t; b < numBlocks; b += numTasks)
+          play(maps, views, randoms[b], Math.min(BLOCK_SIZE, samples - (long) b * BLOCK_SIZE), density, width, height);
+        return density;
+      })
+      .reduce(ChaosGameRenderer::merge)
+      .get();
+  }
+
+  /**
+   * Renders the attractor of a fractal as a PNG image
+   * Darker pixels were hit more often, on a logarithmic scale
+   *
+   * @param fractal the fractal to sample
+   * @param width the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @param angle the angle of rotation about the fractal's center, in radians
+   * @param samples the total number of samples
+   * @param seed the seed of the random jumps
+   * @return the bytes of the PNG image
+   */
+  public static byte[] renderPng(Fractal<?> fractal, int width, int height, double angle, long samples, long seed) {
+    BufferedImage image = toImage(sample(fractal, width, height, angle, samples, seed), width, height);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      ImageIO.write(image, "png", out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Turns a density grid into a grayscale image, white where nothing was hit
+   *
+   * @param density the number of samples in each pixel, row by row
+   * @param width the width of the grid in pixels
+   * @param height the height of the grid in pixels
+   * @return the image
+   */
+  public static BufferedImage toImage(long[] density, int width, int height) {
+    long max = 0;
+    for (long count : density)
+      max = Math.max(max, count);
+    double scale = max == 0 ? 0 : 255 / Math.log1p(max);
+
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int gray = 255 - (int) Math.round(Math.log1p(density[y * width + x]) * scale);
+        row[x] = gray << 16 | gray << 8 | gray;
+      }
+      image.setRGB(0, y, width, 1, row, 0, width);
+    }
+    return image;
+  }
+
+  /**
+   * Helper method to play the chaos game for one block of samples
+   *
+   * @param maps the coefficients of the maps of the system, six per map
+   * @param views the coefficients of the maps placing a sample in the image, six per root
+   * @param random the random stream of the block
+   * @param samples the number of samples to take
+   * @param density the density grid of the task, counting the hits
+   * @param width the width of the grid in pixels
+   * @param height the height of the grid in pixels
+   */
+  private static void play(double[] maps, double[] views, SplittableRandom random, long samples,
+                           long[] density, int width, int height) {
+    int numMaps = maps.length / 6;
+    int numRoots = views.length / 6;
+
+    //the origin lies on the attractor of all fractals of this project, the burn-in covers other systems
+    double x = 0;
+    double y = 0;
+    for (long i = -BURN_IN; i < samples; i++) {
+      int m = 6 * random.nextInt(numMaps);
+      double nextX = maps[m] * x + maps[m + 1] * y + maps[m + 4];
+      y = maps[m + 2] * x + maps[m + 3] * y + maps[m + 5];
+      x = nextX;
+      if (i < 0)
+        continue;
+
+      int v = numRoots == 1 ? 0 : 6 * random.nextInt(numRoots);
+      double px = views[v] * x + views[v + 1] * y + views[v + 4];
+      double py = views[v + 2] * x + views[v + 3] * y + views[v + 5];
+      if (px >= 0 && py >= 0 && px < width && py < height)
+        density[(int) py * width + (int) px]++;
+    }
+  }
+
+  /**
+   * Helper method to add a density grid into another one
+   * Every task owns its grid, so the grid of the first task can take the sum
+   *
+   * @param total the grid to add into
+   * @param part the grid to add
+   * @return the total grid
+   */
+  private static long[] merge(long[] total, long[] part) {
+    for (int i = 0; i < total.length; i++)
+      total[i] += part[i];
+    return total;
+  }
+}
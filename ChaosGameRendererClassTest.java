@@ -0,0 +1,42 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test suite for the ChaosGameRenderer class
+ * This class tests that the chaos game lands on the attractor and is reproducible
+ */
+public class ChaosGameRendererClassTest {
+
+  /**
+   * Test that every sample of the carpet lands in the image but never in the removed center
+   */
+  @Test
+  public void testCarpet() {
+    RectangleFractal fractal = new RectangleFractal(new Square(new Point(45, 45), 90.0), 1);
+    long[] density = ChaosGameRenderer.sample(fractal, 90, 90, 0, 100000, 1);
+
+    long total = 0;
+    for (long count : density)
+      total += count;
+    assertEquals(100000, total);
+    for (int y = 31; y < 59; y++) {
+      for (int x = 31; x < 59; x++)
+        assertEquals(0, density[y * 90 + x]);
+    }
+  }
+
+  /**
+   * Test that the same seed gives the same density grid, and that the image is drawn
+   */
+  @Test
+  public void testSeed() {
+    SnowflakeFractal<Square> fractal = new SnowflakeFractal<>(new Square(new Point(50, 50), 40.0), 2);
+    long[] first = ChaosGameRenderer.sample(fractal, 100, 100, Math.PI / 6, 20000, 42);
+    long[] second = ChaosGameRenderer.sample(fractal, 100, 100, Math.PI / 6, 20000, 42);
+    assertArrayEquals(first, second);
+
+    byte[] png = ChaosGameRenderer.renderPng(fractal, 100, 100, 0, 20000, 42);
+    assertEquals((byte) 0x89, png[0]);
+    assertEquals('P', png[1]);
+  }
+}
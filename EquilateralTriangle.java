@@ -67,5 +67,6 @@ public class EquilateralTriangle extends Triangle implements RegularPolygon {
       rotatedPoint.rotateAbout(center, centralAngle);
       polyPoints[i] = rotatedPoint;
     }
+    modified();
   }
 }
\ No newline at end of file
@@ -1,4 +1,7 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * The abstract Fractal class represents the framework for generating fractals 
@@ -17,6 +20,23 @@ public abstract class Fractal <T extends Polygon> {
   /** A list to store points of the fractal */
   protected ArrayList<Point> pointsOfFractal = new ArrayList<Point>();
   
+  /** The metrics of the generation in progress, or null if none is running */
+  private GenerationRun currentRun;
+  
+  /** The number of changes made to the fractal */
+  private long modCount;
+  
+  /** The Points and Lines of the last generation, or null if they are not cached */
+  private Point[] cachedPoints;
+  private Line[] cachedLines;
+  
+  /** The version of the fractal the cached Points and Lines were generated from */
+  private long pointsVersion;
+  private long linesVersion;
+  
+  /** Whether setCenter() and rotate() split large batches of Points across threads */
+  private boolean parallelTransforms;
+  
   /**
    * Constructs a new Fractal with the specified base shape and recursion levels
    * 
@@ -50,6 +70,56 @@ public abstract class Fractal <T extends Polygon> {
     return numLevels;
   }
   
+  /**
+   * Changes the number of levels of recursion for the fractal
+   * 
+   * @param numLevels the number of recursive levels for the fractal. Must be non-negative
+   * @throws IllegalArgumentException if numLevels is negative
+   */
+  public void setNumLevels(int numLevels) {
+    if (numLevels < 0)
+      throw new IllegalArgumentException("Number of levels must be non-negative.");
+    this.numLevels = numLevels;
+    modified();
+  }
+  
+  /**
+   * Retrieves the version of the fractal, which changes whenever the fractal or its base shape is changed
+   * The version counts the changes made through setCenter(), rotate(), setNumLevels() and the setters
+   * of the base shape. Points changed directly are not counted
+   * 
+   * @return the version of the fractal
+   */
+  public long getVersion() {
+    return modCount + baseShape.getModificationCount();
+  }
+  
+  /**
+   * Counts a change to the fractal, so that the cached geometry is generated again
+   */
+  protected void modified() {
+    modCount++;
+  }
+  
+  /**
+   * Checks whether transforms of the fractal run in parallel
+   * 
+   * @return true if setCenter() and rotate() split large batches of Points across threads
+   */
+  public boolean isParallelTransforms() {
+    return parallelTransforms;
+  }
+  
+  /**
+   * Sets whether transforms of the fractal run in parallel
+   * Batches smaller than BatchTransform.PARALLEL_THRESHOLD stay on the calling thread either way
+   * 
+   * @param parallelTransforms true to split large batches of Points across threads
+   */
+  public void setParallelTransforms(boolean parallelTransforms) {
+    this.parallelTransforms = parallelTransforms;
+  }
+  
   /**
    * Retrieves the center Point of the fractal
    * 
@@ -65,15 +135,17 @@ public abstract class Fractal <T extends Polygon> {
    * @param newCenter the new center Point for the fractal
    */
   public void setCenter(Point newCenter) {
+    FractalTransformEvent event = new FractalTransformEvent();
+    event.begin();
     Point currentCenter = getCenter();
     double dx = newCenter.getX() - currentCenter.getX();
     double dy = newCenter.getY() - currentCenter.getY();
     
-    //a loop to adjust all Points of the base shape relative to the new center
-    for (Point point : baseShape.getPoints()) {
-      point.setX(point.getX() + dx);
-      point.setY(point.getY() + dy);
-    }
+    //move all Points of the base shape relative to the new center
+    Point[] points = baseShape.getPoints();
+    transform(AffineMap.ofScale(1, 1, dx, dy), Arrays.asList(points));
+    commitTransform(event, "setCenter", baseShape.getPoints().length);
+    modified();
   }
   
   /**
@@ -88,26 +160,114 @@ public abstract class Fractal <T extends Polygon> {
     if (pointsOfFractal.isEmpty())
       getPoints(); 
     
-    // a loop to rotate each Point of the fractal about the center
-    for (Point point : pointsOfFractal) {
-      point.rotateAbout(center, angle);
+    FractalTransformEvent event = new FractalTransformEvent();
+    event.begin();
+    // rotate every Point of the fractal about the center in one batch
+    transform(AffineMap.ofRotation(angle, center.getX(), center.getY()), pointsOfFractal);
+    commitTransform(event, "rotate", pointsOfFractal.size());
+    modified();
+  }
+  
+  /**
+   * Applies a map to Points of the fractal in place, in parallel if parallel transforms are on
+   * Each Point must be listed only once
+   * 
+   * @param map the map to apply
+   * @param points the Points, in a list with fast random access
+   */
+  protected void transform(AffineMap map, List<Point> points) {
+    if (parallelTransforms)
+      BatchTransform.applyParallel(map, points);
+    else
+      BatchTransform.apply(map, points);
+  }
+  
+  /**
+   * Ends a flight recorder event covering a transform and commits it if it is enabled
+   * 
+   * @param event the event, begun before the transform
+   * @param operation the name of the transform
+   * @param points the number of Points transformed
+   */
+  protected void commitTransform(FractalTransformEvent event, String operation, long points) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.fractalType = getClass().getSimpleName();
+      event.numLevels = numLevels;
+      event.operation = operation;
+      event.points = points;
+      event.commit();
     }
   }
   
   /**
    * Abstract method to retrieve all points of the fractal
+   * Implementations return cachedPoints() when it is not null and pass a new generation through cachePoints()
+   * Every call returns a new array, but the Points in it are the fractal's own: they are shared with the cache,
+   * with the Lines and with later calls, and rotate() moves them in place. Callers must not change them, and
+   * should copy a Point before changing it
    * 
-   * @return an array of Points representing the fractal's geometry
+   * @return an array of the fractal's Points, which must not be changed
    */
   public abstract Point[] getPoints();
   
   /**
    * Abstract method to retrieve all lines of the fractal
+   * Implementations return cachedLines() when it is not null and pass a new generation through cacheLines()
+   * Every call returns a new array, but the Lines in it and the Points they join are shared in the same way
+   * as those of getPoints(), and must not be changed
    * 
-   * @return an array of Lines that make up the fractal
+   * @return an array of the fractal's Lines, which must not be changed
    */
   public abstract Line[] getLines();
   
+  /**
+   * Returns a lazy Stream over the Points of the fractal
+   * Points are generated on demand from the base shape, and a parallel stream
+   * splits the work along the recursion subtrees
+   * 
+   * @return a Stream of the unique Points of the fractal
+   */
+  public Stream<Point> pointStream() {
+    return system().pointStream(numLevels, rootMaps());
+  }
+  
+  /**
+   * Returns a lazy Stream over the Lines of the fractal
+   * Lines are generated on demand from the base shape, and a parallel stream
+   * splits the work along the recursion subtrees
+   * 
+   * @return a Stream of the unique Lines of the fractal
+   */
+  public Stream<Line> lineStream() {
+    return system().lineStream(numLevels, rootMaps());
+  }
+  
+  /**
+   * Generates the fractal into a sink, without creating any Point or Line
+   * Every unique Point and Line is emitted exactly once, in the same order as the streams
+   *
+   * @param sink the sink receiving the coordinates of the fractal
+   */
+  public void generate(GeometrySink sink) {
+    system().generate(numLevels, sink, rootMaps());
+  }
+  
+  /**
+   * Abstract method to retrieve the iterated function system generating this kind of fractal
+   * The system emits every Point and Line of the fractal from exactly one node of the recursion tree
+   * 
+   * @return the iterated function system
+   */
+  protected abstract IteratedFunctionSystem system();
+  
+  /**
+   * Abstract method to retrieve the maps taking the base shape of the system onto the fractal's base shape
+   * 
+   * @return one map per root of the recursion tree, in encounter order
+   */
+  protected abstract AffineMap[] rootMaps();
+  
   /**
    * Helper method to find a point at a given ratio along a line segment
    * 
@@ -123,18 +283,112 @@ public abstract class Fractal <T extends Polygon> {
   }
   
   /**
-   * Adds a Line to a list if it does not already exist
+   * Looks up the Points generated for the current version of the fractal
    * 
-   * @param line the Line to potentially add.
-   * @param lines the list of Lines to add to if the line is unique.
+   * @return a copy of the cached array, holding the cached Points themselves, or null if the fractal changed since they were generated
    */
-  protected void addLineIfNotExists(Line line, ArrayList<Line> lines) {
-    //check if the line or its reverse already exists
-    for (Line existingLine : lines) {
-      if (existingLine.equals(line)) {
-        return;
-      }
-    }
-    lines.add(line);
+  protected Point[] cachedPoints() {
+    boolean hit = cachedPoints != null && pointsVersion == getVersion();
+    FractalMetrics.getRegistry().recordCacheLookup("points", hit);
+    return hit ? cachedPoints.clone() : null;
+  }
+  
+  /**
+   * Keeps the Points of a generation for the current version of the fractal
+   * 
+   * @param points the generated Points
+   * @return a copy of the array to hand out, holding the same Points
+   */
+  protected Point[] cachePoints(Point[] points) {
+    cachedPoints = points;
+    pointsVersion = getVersion();
+    return points.clone();
+  }
+  
+  /**
+   * Checks whether the Points of the current version of the fractal are cached, without copying them
+   * 
+   * @return true if getPoints() would return the cached Points; false if it would generate them again
+   */
+  protected boolean hasCachedPoints() {
+    return cachedPoints != null && pointsVersion == getVersion();
+  }
+  
+  /**
+   * Keeps the cached Points for the current version of the fractal, for a change that moved them in place
+   */
+  protected void keepCachedPoints() {
+    if (cachedPoints != null)
+      pointsVersion = getVersion();
+  }
+  
+  /**
+   * Looks up the Lines generated for the current version of the fractal
+   * 
+   * @return a copy of the cached array, holding the cached Lines themselves, or null if the fractal changed since they were generated
+   */
+  protected Line[] cachedLines() {
+    boolean hit = cachedLines != null && linesVersion == getVersion();
+    FractalMetrics.getRegistry().recordCacheLookup("lines", hit);
+    return hit ? cachedLines.clone() : null;
+  }
+  
+  /**
+   * Keeps the Lines of a generation for the current version of the fractal
+   * 
+   * @param lines the generated Lines
+   * @return a copy of the array to hand out, holding the same Lines
+   */
+  protected Line[] cacheLines(Line[] lines) {
+    cachedLines = lines;
+    linesVersion = getVersion();
+    return lines.clone();
+  }
+  
+  /**
+   * Starts collecting the metrics of a generation
+   * A generation started while another one is running (for example getLines() calling getPoints())
+   * is counted as part of the running one
+   * 
+   * @return the started run, or null if a run is already in progress
+   */
+  protected GenerationRun startRun() {
+    if (currentRun != null)
+      return null;
+    currentRun = new GenerationRun(getClass().getSimpleName(), numLevels);
+    return currentRun;
+  }
+  
+  /**
+   * Finishes a generation and records its metrics into the FractalMetrics registry
+   * 
+   * @param run the run returned by startRun(); nothing happens if it is null
+   */
+  protected void finishRun(GenerationRun run) {
+    if (run == null)
+      return;
+    currentRun = null;
+    run.finish();
+    FractalMetrics.getRegistry().record(run);
+  }
+  
+  /**
+   * Counts vertices emitted by the generation in progress
+   * 
+   * @param count the number of vertices emitted
+   */
+  protected void countVertices(long count) {
+    if (currentRun != null)
+      currentRun.countVertices(count);
+  }
+  
+  /**
+   * Counts edges emitted by the generation in progress
+   * 
+   * @param count the number of edges emitted
+   */
+  protected void countEdges(long count) {
+    if (currentRun != null)
+      currentRun.countEdges(count);
   }
-}
\ No newline at end of file
+}
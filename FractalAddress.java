@@ -0,0 +1,107 @@
+import java.util.Arrays;
+
+/**
+ * The FractalAddress class tells where a Point lies in the recursion tree of a fractal
+ * The path lists the child taken at each level, from the base shape down to the deepest piece
+ * holding the Point, using the order of the maps of the fractal's IteratedFunctionSystem.
+ * A Point is a member of the fractal if that piece is one of the smallest pieces. Otherwise it
+ * lies in a part removed right below the last piece of the path
+ */
+public class FractalAddress {
+
+  /** The child taken at each level */
+  private final int[] path;
+
+  /** The number of children of every piece */
+  private final int numMaps;
+
+  /** Whether the Point lies in one of the smallest pieces */
+  private final boolean member;
+
+  /**
+   * Creates a FractalAddress
+   *
+   * @param path the child taken at each level
+   * @param numMaps the number of children of every piece
+   * @param member whether the Point lies in one of the smallest pieces
+   */
+  public FractalAddress(int[] path, int numMaps, boolean member) {
+    this.path = path.clone();
+    this.numMaps = numMaps;
+    this.member = member;
+  }
+
+  /**
+   * Retrieves the child taken at each level
+   *
+   * @return the path, starting below the base shape
+   */
+  public int[] getPath() {
+    return path.clone();
+  }
+
+  /**
+   * Retrieves the number of levels the path goes down
+   *
+   * @return the depth of the deepest piece holding the Point
+   */
+  public int getDepth() {
+    return path.length;
+  }
+
+  /**
+   * Checks whether the Point lies in one of the smallest pieces of the fractal
+   *
+   * @return true if the Point is part of the fractal; false if it lies in a removed part
+   */
+  public boolean isMember() {
+    return member;
+  }
+
+  /**
+   * Numbers the deepest piece holding the Point like IteratedFunctionSystem numbers its nodes
+   *
+   * @return the address of the piece's node
+   */
+  public long toIndex() {
+    long index = 0;
+    for (int child : path)
+      index = index * numMaps + child;
+    return index;
+  }
+
+  /**
+   * Changes the behavior of equals
+   * Two FractalAddresses are equal if they have the same path and membership
+   *
+   * @return true if the addresses are equal; false if not
+   */
+  public boolean equals(Object o) {
+    if (o instanceof FractalAddress) {
+      FractalAddress address = (FractalAddress) o;
+      return member == address.member && numMaps == address.numMaps && Arrays.equals(path, address.path);
+    }
+    return false;
+  }
+
+  /**
+   * Computes the hash code consistently with equals
+   *
+   * @return the hash code
+   */
+  public int hashCode() {
+    return Arrays.hashCode(path) * 31 + (member ? 1 : 0);
+  }
+
+  /**
+   * Returns the path as dotted children, followed by "removed" if the Point is not a member
+   *
+   * @return the address as a string
+   */
+  public String toString() {
+    StringBuilder s = new StringBuilder("/");
+    for (int i = 0; i < path.length; i++)
+      s.append(i == 0 ? "" : ".").append(path[i]);
+    return member ? s.toString() : s + " removed";
+  }
+}
@@ -0,0 +1,198 @@
+import javafx.animation.AnimationTimer;
+import javafx.event.EventHandler;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+
+/**
+ * The FractalAnimator class spins a fractal on a canvas in real time
+ * The geometry is generated once and packed into a coordinate array. Every frame only changes
+ * the transform of the canvas, so the fractal's Points are never touched again.
+ * While the animation runs, dragging the mouse pans the drawing and scrolling zooms it. These handlers are
+ * added next to any other handlers of the canvas, such as those of a FractalPicker, and removed by stop().
+ * A label shows the frame time
+ */
+public class FractalAnimator {
+
+  /** The speed of the spin, in radians per second */
+  private static final double SPIN_SPEED = Math.PI / 4;
+
+  /** The weight of the newest frame in the averaged frame times */
+  private static final double SMOOTHING = 0.1;
+
+  /** The canvas to draw on */
+  private final Canvas canvas;
+
+  /** The label showing the frame time */
+  private final Label frameTimeLabel;
+
+  /** The fractal being animated */
+  private Fractal<?> fractal;
+
+  /** The Lines of the fractal, packed as x1, y1, x2, y2 */
+  private double[] lines = new double[0];
+
+  /** The point the fractal spins about */
+  private double centerX;
+  private double centerY;
+
+  /** The rotation when the animation started, in radians */
+  private double startAngle;
+
+  /** The current pan and zoom */
+  private double panX;
+  private double panY;
+  private double zoom = 1;
+
+  /** The mouse position at the last drag event */
+  private double dragX;
+  private double dragY;
+
+  /** The time of the first frame and of the previous frame, in nanoseconds */
+  private long firstFrame;
+  private long previousFrame;
+
+  /** The averaged time between frames and time spent drawing a frame, in nanoseconds */
+  private double averageFrameNanos;
+  private double averageDrawNanos;
+
+  /** The handlers panning and zooming the drawing */
+  private final EventHandler<MouseEvent> pressHandler = e -> {
+    dragX = e.getX();
+    dragY = e.getY();
+  };
+  private final EventHandler<MouseEvent> dragHandler = e -> {
+    panX += e.getX() - dragX;
+    panY += e.getY() - dragY;
+    dragX = e.getX();
+    dragY = e.getY();
+  };
+  private final EventHandler<ScrollEvent> scrollHandler = e -> zoom = Math.max(0.05, zoom * Math.pow(1.001, e.getDeltaY()));
+
+  /** The timer calling drawFrame() once per frame */
+  private final AnimationTimer timer = new AnimationTimer() {
+    public void handle(long now) {
+      drawFrame(now);
+    }
+  };
+
+  /**
+   * Creates a FractalAnimator drawing on the given canvas
+   *
+   * @param canvas the canvas to draw on
+   * @param frameTimeLabel the label showing the frame time
+   */
+  public FractalAnimator(Canvas canvas, Label frameTimeLabel) {
+    this.canvas = canvas;
+    this.frameTimeLabel = frameTimeLabel;
+  }
+
+  /**
+   * Generates the geometry of a fractal once and starts spinning it
+   * Must be called on the JavaFX application thread
+   *
+   * @param fractal the fractal to animate, without rotation
+   * @param angle the rotation of the fractal when the animation starts, in radians
+   */
+  public void start(Fractal<?> fractal, double angle) {
+    stop();
+    this.fractal = fractal;
+    lines = packLines(fractal);
+    Point center = fractal.getCenter();
+    centerX = center.getX();
+    centerY = center.getY();
+    startAngle = angle;
+    panX = 0;
+    panY = 0;
+    zoom = 1;
+    firstFrame = 0;
+    averageFrameNanos = 0;
+    averageDrawNanos = 0;
+
+    //pan by dragging and zoom by scrolling
+    canvas.addEventHandler(MouseEvent.MOUSE_PRESSED, pressHandler);
+    canvas.addEventHandler(MouseEvent.MOUSE_DRAGGED, dragHandler);
+    canvas.addEventHandler(ScrollEvent.SCROLL, scrollHandler);
+    timer.start();
+  }
+
+  /**
+   * Stops the animation, leaving the last frame on the canvas and giving the mouse back to the other handlers
+   */
+  public void stop() {
+    timer.stop();
+    canvas.removeEventHandler(MouseEvent.MOUSE_PRESSED, pressHandler);
+    canvas.removeEventHandler(MouseEvent.MOUSE_DRAGGED, dragHandler);
+    canvas.removeEventHandler(ScrollEvent.SCROLL, scrollHandler);
+  }
+
+  /**
+   * Helper method to pack the Lines of a fractal into a coordinate array
+   *
+   * @param fractal the fractal
+   * @return the coordinates of the Lines, as x1, y1, x2, y2 for each Line
+   */
+  private static double[] packLines(Fractal<?> fractal) {
+    Line[] fractalLines = fractal.lineStream().toArray(Line[]::new);
+    double[] packed = new double[4 * fractalLines.length];
+    for (int i = 0; i < fractalLines.length; i++) {
+      packed[4 * i] = fractalLines[i].getFirstPoint().getX();
+      packed[4 * i + 1] = fractalLines[i].getFirstPoint().getY();
+      packed[4 * i + 2] = fractalLines[i].getSecondPoint().getX();
+      packed[4 * i + 3] = fractalLines[i].getSecondPoint().getY();
+    }
+    return packed;
+  }
+
+  /**
+   * Helper method to draw one frame of the animation
+   *
+   * @param now the time of the frame, in nanoseconds
+   */
+  private void drawFrame(long now) {
+    if (firstFrame == 0) {
+      firstFrame = now;
+      previousFrame = now;
+    }
+    long drawStart = System.nanoTime();
+    double angle = startAngle + SPIN_SPEED * (now - firstFrame) / 1e9;
+    double cos = Math.cos(angle) * zoom;
+    double sin = Math.sin(angle) * zoom;
+
+    GraphicsContext gc = canvas.getGraphicsContext2D();
+    gc.setTransform(1, 0, 0, 1, 0, 0);
+    gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+
+    //rotate and zoom about the fractal's center, then pan
+    gc.setTransform(cos, sin, -sin, cos,
+                    centerX - cos * centerX + sin * centerY + panX,
+                    centerY - sin * centerX - cos * centerY + panY);
+    gc.setLineWidth(1 / zoom);
+
+    //a single path is much cheaper to stroke than one strokeLine() per Line
+    FractalDrawEvent event = new FractalDrawEvent();
+    event.begin();
+    gc.beginPath();
+    for (int i = 0; i < lines.length; i += 4) {
+      gc.moveTo(lines[i], lines[i + 1]);
+      gc.lineTo(lines[i + 2], lines[i + 3]);
+    }
+    gc.stroke();
+    gc.setTransform(1, 0, 0, 1, 0, 0);
+    gc.setLineWidth(1);
+    event.finish(fractal, "animation", lines.length / 4);
+
+    //update the averaged frame times
+    long drawNanos = System.nanoTime() - drawStart;
+    if (now > previousFrame)
+      averageFrameNanos += SMOOTHING * ((now - previousFrame) - averageFrameNanos);
+    averageDrawNanos += SMOOTHING * (drawNanos - averageDrawNanos);
+    previousFrame = now;
+    if (averageFrameNanos > 0) {
+      frameTimeLabel.setText(String.format("Frame: %.1f ms (%.0f fps), draw: %.1f ms",
+                                           averageFrameNanos / 1e6, 1e9 / averageFrameNanos, averageDrawNanos / 1e6));
+    }
+  }
+}
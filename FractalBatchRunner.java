@@ -0,0 +1,536 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The FractalBatchRunner class renders many fractals headlessly from a job file
+ * Each line of the job file is one job, either a flat JSON object such as
+ * {"type": "snowflake", "sides": 6, "side": 120, "levels": 4, "rotation": 15, "format": "svg"}
+ * or a CSV row under a header line naming the columns, such as "type,sides,side,levels,format".
+ * The fields are the parameters of a FractalSpec, plus format (png or svg, png by default) and
+ * output (the file name, job-LINE.FORMAT by default). Blank lines and lines starting with '#' are skipped
+ *
+ * Jobs run on a fixed pool of threads. The job file is read as the jobs are taken, and reading
+ * waits while the pool has a full queue, so a job file of any length never piles up in memory.
+ * Every output is written into one directory, next to a report.csv of the time and size of every job
+ */
+public class FractalBatchRunner {
+
+  /** The name of the report written next to the outputs */
+  public static final String REPORT_NAME = "report.csv";
+
+  /** The directory receiving the outputs */
+  private final Path outputDir;
+
+  /** The number of threads rendering jobs */
+  private final int threads;
+
+  /** The number of jobs waiting for a thread at most */
+  private final int queueCapacity;
+
+  /**
+   * Creates a FractalBatchRunner
+   *
+   * @param outputDir the directory receiving the outputs, created if it does not exist
+   * @param threads the number of threads rendering jobs. Must be positive
+   * @param queueCapacity the number of jobs waiting for a thread at most. Must be non-negative
+   */
+  public FractalBatchRunner(Path outputDir, int threads, int queueCapacity) {
+    if (threads <= 0 || queueCapacity < 0)
+      throw new IllegalArgumentException("The number of threads must be positive and the queue capacity non-negative.");
+    this.outputDir = outputDir;
+    this.threads = threads;
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * Runs every job of a job file and writes the report
+   * A job that fails is reported and does not stop the others
+   *
+   * @param jobs the lines of the job file
+   * @return the results of all jobs
+   * @throws IOException if the job file can not be read or the report can not be written
+   * @throws InterruptedException if the thread is interrupted while waiting for the jobs
+   */
+  public Report run(BufferedReader jobs) throws IOException, InterruptedException {
+    Files.createDirectories(outputDir);
+    ConcurrentLinkedQueue<JobResult> results = new ConcurrentLinkedQueue<>();
+    Semaphore slots = new Semaphore(threads + queueCapacity);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+    long start = System.nanoTime();
+    try {
+      List<String> header = null;
+      String line;
+      int lineNumber = 0;
+      while ((line = jobs.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#"))
+          continue;
+        if (!line.startsWith("{") && header == null) {
+          header = parseCsv(line);
+          continue;
+        }
+
+        //wait for a free slot before reading on, so the job file is only read as fast as jobs finish
+        slots.acquire();
+        String job = line;
+        int jobLine = lineNumber;
+        List<String> columns = header;
+        pool.execute(() -> {
+          try {
+            results.add(runJob(job, jobLine, columns));
+          } finally {
+            slots.release();
+          }
+        });
+      }
+    } finally {
+      pool.shutdown();
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+    long elapsed = System.nanoTime() - start;
+
+    List<JobResult> sorted = new ArrayList<>(results);
+    sorted.sort(Comparator.comparingInt(JobResult::getLine));
+    Report report = new Report(sorted, elapsed);
+    report.write(outputDir.resolve(REPORT_NAME));
+    return report;
+  }
+
+  /**
+   * Helper method to parse, render and write one job
+   *
+   * @param job the line of the job
+   * @param line the line number of the job
+   * @param header the column names of CSV jobs, or null if no header was read
+   * @return the result of the job
+   */
+  private JobResult runJob(String job, int line, List<String> header) {
+    long start = System.nanoTime();
+    String output = "";
+    try {
+      TreeMap<String, String> params = job.startsWith("{") ? parseJson(job) : parseCsvRow(job, header);
+      String format = params.getOrDefault("format", "png").toLowerCase(Locale.ROOT);
+      if (!format.equals("png") && !format.equals("svg"))
+        throw new IllegalArgumentException("Unknown format: " + format);
+      output = params.getOrDefault("output", "job-" + line + "." + format);
+      params.remove("format");
+      params.remove("output");
+      Path directory = outputDir.toAbsolutePath().normalize();
+      Path target = directory.resolve(output).normalize();
+      if (!target.startsWith(directory) || target.equals(directory))
+        throw new IllegalArgumentException("The output must be a file in the output directory: " + output);
+
+      FractalSpec spec = new FractalSpec(params);
+      byte[] bytes = format.equals("png") ? FractalRenderer.renderPng(spec)
+                                          : FractalRenderer.renderSvg(spec).getBytes(StandardCharsets.UTF_8);
+      Files.write(target, bytes);
+      return new JobResult(line, output, System.nanoTime() - start, bytes.length, null);
+    } catch (IOException e) {
+      return new JobResult(line, output, System.nanoTime() - start, 0, e.toString());
+    } catch (RuntimeException e) {
+      return new JobResult(line, output, System.nanoTime() - start, 0, e.getMessage() == null ? e.toString() : e.getMessage());
+    } catch (Error e) {
+      //a job too large for the memory or the stack fails alone, and the next jobs still run
+      return new JobResult(line, output, System.nanoTime() - start, 0, e.toString());
+    }
+  }
+
+  /**
+   * Parses a job written as a flat JSON object
+   * Values may be strings, numbers or booleans, and null values are left out
+   *
+   * @param json the JSON object
+   * @return the fields of the object, with every value as a string
+   * @throws IllegalArgumentException if the object is malformed or nested
+   */
+  public static TreeMap<String, String> parseJson(String json) {
+    TreeMap<String, String> fields = new TreeMap<>();
+    int[] at = {skipSpaces(json, 0)};
+    expect(json, at, '{');
+    at[0] = skipSpaces(json, at[0]);
+    if (at[0] < json.length() && json.charAt(at[0]) == '}') {
+      at[0]++;
+    } else {
+      while (true) {
+        at[0] = skipSpaces(json, at[0]);
+        String name = readString(json, at);
+        at[0] = skipSpaces(json, at[0]);
+        expect(json, at, ':');
+        at[0] = skipSpaces(json, at[0]);
+        String value;
+        boolean isString = at[0] < json.length() && json.charAt(at[0]) == '"';
+        if (isString) {
+          value = readString(json, at);
+        } else {
+          int end = at[0];
+          while (end < json.length() && ",} \t".indexOf(json.charAt(end)) < 0)
+            end++;
+          value = json.substring(at[0], end);
+          at[0] = end;
+          if (value.isEmpty() || value.startsWith("{") || value.startsWith("["))
+            throw new IllegalArgumentException("Expected a string, number or boolean for " + name);
+        }
+        if (isString || !value.equals("null"))
+          fields.put(name, value);
+        at[0] = skipSpaces(json, at[0]);
+        if (at[0] < json.length() && json.charAt(at[0]) == ',') {
+          at[0]++;
+          continue;
+        }
+        expect(json, at, '}');
+        break;
+      }
+    }
+    if (skipSpaces(json, at[0]) != json.length())
+      throw new IllegalArgumentException("Unexpected text after the JSON object.");
+    return fields;
+  }
+
+  /**
+   * Helper method to skip spaces
+   *
+   * @param text the text
+   * @param at the index to start at
+   * @return the index of the first character that is not a space
+   */
+  private static int skipSpaces(String text, int at) {
+    while (at < text.length() && Character.isWhitespace(text.charAt(at)))
+      at++;
+    return at;
+  }
+
+  /**
+   * Helper method to read an expected character
+   *
+   * @param text the text
+   * @param at the index of the character, moved past it
+   * @param expected the expected character
+   * @throws IllegalArgumentException if the character is missing
+   */
+  private static void expect(String text, int[] at, char expected) {
+    if (at[0] >= text.length() || text.charAt(at[0]) != expected)
+      throw new IllegalArgumentException("Expected '" + expected + "' at position " + at[0] + ".");
+    at[0]++;
+  }
+
+  /**
+   * Helper method to read a JSON string
+   *
+   * @param text the text
+   * @param at the index of the opening quote, moved past the closing quote
+   * @return the string, with its escapes replaced
+   * @throws IllegalArgumentException if the string is malformed
+   */
+  private static String readString(String text, int[] at) {
+    expect(text, at, '"');
+    StringBuilder builder = new StringBuilder();
+    while (at[0] < text.length()) {
+      char c = text.charAt(at[0]++);
+      if (c == '"')
+        return builder.toString();
+      if (c != '\\') {
+        builder.append(c);
+        continue;
+      }
+      if (at[0] >= text.length())
+        break;
+      char escape = text.charAt(at[0]++);
+      switch (escape) {
+        case 'n': builder.append('\n'); break;
+        case 't': builder.append('\t'); break;
+        case 'r': builder.append('\r'); break;
+        case 'b': builder.append('\b'); break;
+        case 'f': builder.append('\f'); break;
+        case 'u':
+          if (at[0] + 4 > text.length())
+            throw new IllegalArgumentException("Malformed escape in a JSON string.");
+          builder.append((char) Integer.parseInt(text.substring(at[0], at[0] + 4), 16));
+          at[0] += 4;
+          break;
+        default: builder.append(escape);
+      }
+    }
+    throw new IllegalArgumentException("Unterminated JSON string.");
+  }
+
+  /**
+   * Parses a job written as a CSV row
+   * Empty cells are left out, so that the parameter takes its default value
+   *
+   * @param row the CSV row
+   * @param header the column names
+   * @return the parameters of the job
+   * @throws IllegalArgumentException if there is no header or the row has more cells than the header
+   */
+  public static TreeMap<String, String> parseCsvRow(String row, List<String> header) {
+    if (header == null)
+      throw new IllegalArgumentException("A CSV job needs a header line naming its columns.");
+    List<String> cells = parseCsv(row);
+    if (cells.size() > header.size())
+      throw new IllegalArgumentException("The row has more cells than the header.");
+    TreeMap<String, String> params = new TreeMap<>();
+    for (int i = 0; i < cells.size(); i++) {
+      if (!cells.get(i).isEmpty())
+        params.put(header.get(i), cells.get(i));
+    }
+    return params;
+  }
+
+  /**
+   * Splits a CSV line into its cells
+   * Cells may be quoted with '"', and a doubled quote inside a quoted cell is a quote
+   *
+   * @param line the CSV line
+   * @return the trimmed cells
+   */
+  public static List<String> parseCsv(String line) {
+    List<String> cells = new ArrayList<>();
+    StringBuilder cell = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          cell.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          cell.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        cells.add(cell.toString().trim());
+        cell.setLength(0);
+      } else {
+        cell.append(c);
+      }
+    }
+    cells.add(cell.toString().trim());
+    return cells;
+  }
+
+  /**
+   * The JobResult class holds the outcome of one job
+   */
+  public static class JobResult {
+
+    /** The line number of the job in the job file */
+    private final int line;
+
+    /** The name of the output file */
+    private final String output;
+
+    /** The time taken by the job, in nanoseconds */
+    private final long nanos;
+
+    /** The size of the output, in bytes */
+    private final long bytes;
+
+    /** The reason the job failed, or null if it succeeded */
+    private final String error;
+
+    /**
+     * Creates a JobResult
+     *
+     * @param line the line number of the job in the job file
+     * @param output the name of the output file
+     * @param nanos the time taken by the job, in nanoseconds
+     * @param bytes the size of the output, in bytes
+     * @param error the reason the job failed, or null if it succeeded
+     */
+    public JobResult(int line, String output, long nanos, long bytes, String error) {
+      this.line = line;
+      this.output = output;
+      this.nanos = nanos;
+      this.bytes = bytes;
+      this.error = error;
+    }
+
+    /**
+     * Retrieves the line number of the job
+     *
+     * @return the line number in the job file
+     */
+    public int getLine() {
+      return line;
+    }
+
+    /**
+     * Retrieves the name of the output file
+     *
+     * @return the output file name, empty if the job failed before naming it
+     */
+    public String getOutput() {
+      return output;
+    }
+
+    /**
+     * Retrieves the time taken by the job
+     *
+     * @return the time in milliseconds
+     */
+    public double getMillis() {
+      return nanos / 1e6;
+    }
+
+    /**
+     * Retrieves the size of the output
+     *
+     * @return the size in bytes, 0 if the job failed
+     */
+    public long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * Retrieves the reason the job failed
+     *
+     * @return the reason, or null if the job succeeded
+     */
+    public String getError() {
+      return error;
+    }
+  }
+
+  /**
+   * The Report class holds the results of one run of the FractalBatchRunner
+   */
+  public static class Report {
+
+    /** The results of the jobs, in the order of the job file */
+    private final List<JobResult> results;
+
+    /** The wall time of the whole run, in nanoseconds */
+    private final long elapsedNanos;
+
+    /**
+     * Creates a Report
+     *
+     * @param results the results of the jobs, in the order of the job file
+     * @param elapsedNanos the wall time of the whole run, in nanoseconds
+     */
+    public Report(List<JobResult> results, long elapsedNanos) {
+      this.results = Collections.unmodifiableList(results);
+      this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Retrieves the results of the jobs
+     *
+     * @return the results, in the order of the job file
+     */
+    public List<JobResult> getResults() {
+      return results;
+    }
+
+    /**
+     * Counts the jobs that failed
+     *
+     * @return the number of failed jobs
+     */
+    public int getNumFailures() {
+      int failures = 0;
+      for (JobResult result : results) {
+        if (result.getError() != null)
+          failures++;
+      }
+      return failures;
+    }
+
+    /**
+     * Adds up the sizes of the outputs
+     *
+     * @return the total size in bytes
+     */
+    public long getTotalBytes() {
+      long total = 0;
+      for (JobResult result : results)
+        total += result.getBytes();
+      return total;
+    }
+
+    /**
+     * Writes the report as CSV, one row per job
+     *
+     * @param file the file to write
+     * @throws IOException if the file can not be written
+     */
+    public void write(Path file) throws IOException {
+      try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+        out.println("line,output,millis,bytes,error");
+        for (JobResult result : results) {
+          out.printf(Locale.ROOT, "%d,%s,%.3f,%d,%s%n", result.getLine(), quote(result.getOutput()), result.getMillis(),
+                     result.getBytes(), result.getError() == null ? "" : quote(result.getError()));
+        }
+        if (out.checkError())
+          throw new IOException("The report could not be written to " + file);
+      }
+    }
+
+    /**
+     * Helper method to quote a CSV cell
+     *
+     * @param cell the cell
+     * @return the quoted cell
+     */
+    private static String quote(String cell) {
+      return "\"" + cell.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Returns a summary of the run
+     *
+     * @return the summary
+     */
+    public String toString() {
+      double seconds = elapsedNanos / 1e9;
+      return String.format(Locale.ROOT, "%d jobs, %d failed, %d bytes written in %.2f s, %.1f jobs/s",
+                           results.size(), getNumFailures(), getTotalBytes(), seconds, results.size() / seconds);
+    }
+  }
+
+  /**
+   * Runs the jobs of a job file
+   *
+   * @param args the job file, then optionally the output directory (the current directory),
+   * the number of threads (one per processor) and the queue capacity (twice the number of threads)
+   * @throws Exception if the job file can not be read or the report can not be written
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.out.println("Usage: java FractalBatchRunner <jobs file> [output directory] [threads] [queue capacity]");
+      return;
+    }
+    Path outputDir = Paths.get(args.length > 1 ? args[1] : ".");
+    int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    int queueCapacity = args.length > 3 ? Integer.parseInt(args[3]) : 2 * threads;
+    try (BufferedReader jobs = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+      Report report = new FractalBatchRunner(outputDir, threads, queueCapacity).run(jobs);
+      for (JobResult result : report.getResults()) {
+        if (result.getError() != null)
+          System.out.println("Line " + result.getLine() + " failed: " + result.getError());
+      }
+      System.out.println(report);
+    }
+  }
+}
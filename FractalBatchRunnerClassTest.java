@@ -0,0 +1,119 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * JUnit test suite for the FractalBatchRunner class
+ * This class runs small job files and checks the outputs and the report
+ */
+public class FractalBatchRunnerClassTest {
+
+  /** The directory receiving the outputs of a test */
+  private Path outputDir;
+
+  @Before
+  public void createOutputDir() throws IOException {
+    outputDir = Files.createTempDirectory("fractal-batch");
+  }
+
+  @After
+  public void deleteOutputDir() throws IOException {
+    try (Stream<Path> paths = Files.walk(outputDir)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+        Files.delete(path);
+    }
+  }
+
+  /**
+   * Test a job file mixing JSON and CSV jobs, with one job that fails
+   */
+  @Test
+  public void testRun() throws Exception {
+    String jobs = String.join("\n",
+      "# overnight assets",
+      "{\"type\": \"snowflake\", \"sides\": 6, \"side\": 120, \"levels\": 3, \"rotation\": 15, \"format\": \"svg\", \"output\": \"flake.svg\"}",
+      "type,levels,width,height,format,output",
+      "rectangle,2,200,100,png,carpet.png",
+      "triangle,3,,,,",
+      "",
+      "{\"type\": \"snowflake\", \"sides\": 2}");
+
+    //a single thread and no queue forces the reader to wait for every job
+    FractalBatchRunner.Report report = new FractalBatchRunner(outputDir, 1, 0)
+      .run(new BufferedReader(new StringReader(jobs)));
+    List<FractalBatchRunner.JobResult> results = report.getResults();
+    assertEquals(4, results.size());
+    assertEquals(1, report.getNumFailures());
+
+    assertEquals(2, results.get(0).getLine());
+    assertEquals("flake.svg", results.get(0).getOutput());
+    assertTrue(Files.readString(outputDir.resolve("flake.svg")).startsWith("<svg"));
+    assertEquals(Files.size(outputDir.resolve("flake.svg")), results.get(0).getBytes());
+    assertEquals("carpet.png", results.get(1).getOutput());
+    assertTrue(Files.exists(outputDir.resolve("carpet.png")));
+    assertEquals("job-5.png", results.get(2).getOutput());
+    assertTrue(Files.exists(outputDir.resolve("job-5.png")));
+    assertNull(results.get(2).getError());
+    assertEquals(7, results.get(3).getLine());
+    assertNotNull(results.get(3).getError());
+    assertEquals(0, results.get(3).getBytes());
+    assertEquals(results.get(0).getBytes() + results.get(1).getBytes() + results.get(2).getBytes(), report.getTotalBytes());
+
+    //the report has a header and one row per job
+    List<String> rows = Files.readAllLines(outputDir.resolve(FractalBatchRunner.REPORT_NAME), StandardCharsets.UTF_8);
+    assertEquals(5, rows.size());
+    assertEquals("line,output,millis,bytes,error", rows.get(0));
+    assertTrue(rows.get(2).startsWith("4,\"carpet.png\","));
+  }
+
+  /**
+   * Test that outputs can not be written outside the output directory
+   */
+  @Test
+  public void testOutputOutsideDirectory() throws Exception {
+    String jobs = "{\"type\": \"triangle\", \"output\": \"../escaped.png\"}";
+    FractalBatchRunner.Report report = new FractalBatchRunner(outputDir, 2, 2)
+      .run(new BufferedReader(new StringReader(jobs)));
+    assertEquals(1, report.getNumFailures());
+    assertFalse(Files.exists(outputDir.resolveSibling("escaped.png")));
+  }
+
+  /**
+   * Test the parsing of JSON and CSV jobs
+   */
+  @Test
+  public void testParse() {
+    TreeMap<String, String> json = FractalBatchRunner.parseJson(
+      "{ \"type\" : \"snow\\u0066lake\", \"levels\": 4, \"side\": 1.5e2, \"name\": \"a \\\"b\\\"\", \"skip\": null }");
+    assertEquals("snowflake", json.get("type"));
+    assertEquals("4", json.get("levels"));
+    assertEquals("1.5e2", json.get("side"));
+    assertEquals("a \"b\"", json.get("name"));
+    assertFalse(json.containsKey("skip"));
+    assertTrue(FractalBatchRunner.parseJson("{}").isEmpty());
+
+    for (String malformed : new String[] {"{", "{\"type\"}", "{\"a\": {\"b\": 1}}", "{\"a\": 1} extra", "{\"a\": \"b}"}) {
+      try {
+        FractalBatchRunner.parseJson(malformed);
+        fail("Malformed JSON should be rejected: " + malformed);
+      } catch (IllegalArgumentException e) {
+      }
+    }
+
+    assertEquals(Arrays.asList("a", "b,c", "say \"hi\"", ""), FractalBatchRunner.parseCsv("a, \"b,c\" ,\"say \"\"hi\"\"\","));
+    TreeMap<String, String> row = FractalBatchRunner.parseCsvRow("snowflake,,5", Arrays.asList("type", "levels", "sides"));
+    assertEquals("snowflake", row.get("type"));
+    assertFalse(row.containsKey("levels"));
+    assertEquals("5", row.get("sides"));
+  }
+}
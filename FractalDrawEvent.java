@@ -0,0 +1,50 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The FractalDrawEvent class is a Java Flight Recorder event covering the drawing of a fractal
+ * onto a JavaFX canvas or into a PNG or SVG image
+ */
+@Name("fractal.Draw")
+@Label("Fractal Draw")
+@Category("Fractal")
+@Description("Drawing of the Lines of a fractal")
+public class FractalDrawEvent extends Event {
+
+  /** The simple class name of the fractal */
+  @Label("Fractal Type")
+  public String fractalType;
+
+  /** The number of levels of the fractal */
+  @Label("Levels")
+  public int numLevels;
+
+  /** Where the fractal is drawn: canvas, png or svg */
+  @Label("Target")
+  public String target;
+
+  /** The number of Lines drawn */
+  @Label("Lines")
+  public long lines;
+
+  /**
+   * Ends the event and commits it if it is enabled
+   *
+   * @param fractal the fractal that was drawn
+   * @param target where the fractal was drawn
+   * @param lines the number of Lines drawn
+   */
+  public void finish(Fractal<?> fractal, String target, long lines) {
+    end();
+    if (shouldCommit()) {
+      this.fractalType = fractal.getClass().getSimpleName();
+      this.numLevels = fractal.getNumLevels();
+      this.target = target;
+      this.lines = lines;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,38 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The FractalGenerationEvent class is a Java Flight Recorder event covering one generation of a fractal
+ * It starts when getPoints() or getLines() starts generating and ends when the generation is finished
+ */
+@Name("fractal.Generation")
+@Label("Fractal Generation")
+@Category("Fractal")
+@Description("Generation of the Points or Lines of a fractal")
+public class FractalGenerationEvent extends Event {
+
+  /** The simple class name of the fractal */
+  @Label("Fractal Type")
+  public String fractalType;
+
+  /** The number of levels of the fractal */
+  @Label("Levels")
+  public int numLevels;
+
+  /** The number of vertices emitted */
+  @Label("Vertices")
+  public long vertices;
+
+  /** The number of edges emitted */
+  @Label("Edges")
+  public long edges;
+
+  /** The bytes allocated by the generating thread */
+  @Label("Allocated")
+  @DataAmount
+  public long allocatedBytes;
+}
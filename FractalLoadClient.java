@@ -0,0 +1,169 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The FractalLoadClient class is a load-test client for the FractalServer
+ * It sends a number of requests from concurrent virtual threads and reports
+ * the throughput in requests per second and the latency percentiles
+ */
+public class FractalLoadClient {
+
+  /** The URI requested by every call */
+  private final URI uri;
+
+  /** The number of requests in flight at the same time */
+  private final int concurrency;
+
+  /** The total number of requests to send */
+  private final int numRequests;
+
+  /**
+   * Creates a FractalLoadClient
+   *
+   * @param uri the URI requested by every call
+   * @param concurrency the number of requests in flight at the same time. Must be positive
+   * @param numRequests the total number of requests to send. Must be positive
+   */
+  public FractalLoadClient(URI uri, int concurrency, int numRequests) {
+    if (concurrency <= 0 || numRequests <= 0)
+      throw new IllegalArgumentException("The concurrency and the number of requests must be positive.");
+    this.uri = uri;
+    this.concurrency = concurrency;
+    this.numRequests = numRequests;
+  }
+
+  /**
+   * Sends all requests and measures them
+   *
+   * @return the measured throughput and latencies
+   * @throws Exception if the requests can not be sent
+   */
+  public Result run() throws Exception {
+    HttpClient client = HttpClient.newHttpClient();
+    HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+    long[] latencies = new long[numRequests];
+    AtomicInteger next = new AtomicInteger();
+    AtomicInteger failures = new AtomicInteger();
+
+    long start = System.nanoTime();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      Future<?>[] workers = new Future<?>[concurrency];
+      for (int w = 0; w < concurrency; w++) {
+        //each worker sends requests one after the other until all of them are taken
+        workers[w] = executor.submit(() -> {
+          int i;
+          while ((i = next.getAndIncrement()) < numRequests) {
+            long sent = System.nanoTime();
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            latencies[i] = System.nanoTime() - sent;
+            if (response.statusCode() != 200)
+              failures.incrementAndGet();
+          }
+          return null;
+        });
+      }
+      for (Future<?> worker : workers)
+        worker.get();
+    }
+    long elapsed = System.nanoTime() - start;
+
+    Arrays.sort(latencies);
+    return new Result(numRequests, failures.get(), elapsed, latencies);
+  }
+
+  /**
+   * The Result class holds the measurements of one run of the FractalLoadClient
+   */
+  public static class Result {
+
+    /** The number of requests sent */
+    private final int numRequests;
+
+    /** The number of requests that did not succeed */
+    private final int numFailures;
+
+    /** The wall time of the whole run, in nanoseconds */
+    private final long elapsedNanos;
+
+    /** The latency of every request in nanoseconds, sorted */
+    private final long[] latencies;
+
+    /**
+     * Creates a Result
+     *
+     * @param numRequests the number of requests sent
+     * @param numFailures the number of requests that did not succeed
+     * @param elapsedNanos the wall time of the whole run, in nanoseconds
+     * @param latencies the sorted latency of every request, in nanoseconds
+     */
+    public Result(int numRequests, int numFailures, long elapsedNanos, long[] latencies) {
+      this.numRequests = numRequests;
+      this.numFailures = numFailures;
+      this.elapsedNanos = elapsedNanos;
+      this.latencies = latencies;
+    }
+
+    /**
+     * Retrieves the number of requests that did not succeed
+     *
+     * @return the number of failed requests
+     */
+    public int getNumFailures() {
+      return numFailures;
+    }
+
+    /**
+     * Retrieves the throughput of the run
+     *
+     * @return the number of requests per second
+     */
+    public double getRequestsPerSecond() {
+      return numRequests / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Retrieves a latency percentile
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in milliseconds
+     */
+    public double getLatencyMillis(double percentile) {
+      int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+      return latencies[Math.max(0, Math.min(index, latencies.length - 1))] / 1e6;
+    }
+
+    /**
+     * Returns a summary of the measurements
+     *
+     * @return the summary
+     */
+    public String toString() {
+      return String.format("%d requests, %d failed, %.1f requests/s, latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms",
+                           numRequests, numFailures, getRequestsPerSecond(), getLatencyMillis(50),
+                           getLatencyMillis(90), getLatencyMillis(99), getLatencyMillis(100));
+    }
+  }
+
+  /**
+   * Runs a load test against a FractalServer
+   *
+   * @param args the URI to request, then optionally the concurrency (64) and the number of requests (10000)
+   * @throws Exception if the requests can not be sent
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.out.println("Usage: java FractalLoadClient <uri> [concurrency] [requests]");
+      return;
+    }
+    int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+    int numRequests = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+    System.out.println(new FractalLoadClient(URI.create(args[0]), concurrency, numRequests).run());
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * The FractalMesh class holds the geometry of a fractal as an indexed mesh
+ * Every unique vertex is stored once as x, y, and every edge refers to its two vertices by id,
+ * so the edges need no Point of their own and no search for duplicates.
+ * A FractalMesh is immutable
+ */
+public class FractalMesh {
+
+  /** The vertices, as x, y */
+  private final double[] vertices;
+
+  /** The edges, as the ids of their start and end vertices */
+  private final int[] edges;
+
+  /**
+   * Creates a FractalMesh, taking ownership of the arrays
+   *
+   * @param vertices the vertices, as x, y
+   * @param edges the edges, as the ids of their start and end vertices
+   * @throws IllegalArgumentException if an array has a bad length or an edge refers to a missing vertex
+   */
+  public FractalMesh(double[] vertices, int[] edges) {
+    if (vertices.length % 2 != 0 || edges.length % 2 != 0)
+      throw new IllegalArgumentException("The mesh must hold whole vertices and edges.");
+    for (int id : edges) {
+      if (id < 0 || id >= vertices.length / 2)
+        throw new IllegalArgumentException("An edge refers to a missing vertex.");
+    }
+    this.vertices = vertices;
+    this.edges = edges;
+  }
+
+  /**
+   * Retrieves the number of vertices
+   *
+   * @return the number of vertices
+   */
+  public int getVertexCount() {
+    return vertices.length / 2;
+  }
+
+  /**
+   * Retrieves the number of edges
+   *
+   * @return the number of edges
+   */
+  public int getEdgeCount() {
+    return edges.length / 2;
+  }
+
+  /**
+   * Retrieves the x coordinate of a vertex
+   *
+   * @param vertex the id of the vertex
+   * @return the x coordinate
+   */
+  public double getX(int vertex) {
+    return vertices[2 * vertex];
+  }
+
+  /**
+   * Retrieves the y coordinate of a vertex
+   *
+   * @param vertex the id of the vertex
+   * @return the y coordinate
+   */
+  public double getY(int vertex) {
+    return vertices[2 * vertex + 1];
+  }
+
+  /**
+   * Retrieves the vertex an edge starts from
+   *
+   * @param edge the index of the edge
+   * @return the id of the start vertex
+   */
+  public int getEdgeStart(int edge) {
+    return edges[2 * edge];
+  }
+
+  /**
+   * Retrieves the vertex an edge ends at
+   *
+   * @param edge the index of the edge
+   * @return the id of the end vertex
+   */
+  public int getEdgeEnd(int edge) {
+    return edges[2 * edge + 1];
+  }
+
+  /**
+   * Creates one Point per vertex
+   *
+   * @return the Points, indexed by vertex id
+   */
+  public Point[] toPoints() {
+    Point[] points = new Point[getVertexCount()];
+    for (int v = 0; v < points.length; v++)
+      points[v] = new Point(vertices[2 * v], vertices[2 * v + 1]);
+    return points;
+  }
+
+  /**
+   * Creates one Line per edge, the Lines meeting at a vertex sharing its Point
+   *
+   * @return the Lines, in edge order
+   */
+  public Line[] toLines() {
+    Point[] points = toPoints();
+    Line[] lines = new Line[getEdgeCount()];
+    for (int e = 0; e < lines.length; e++)
+      lines[e] = new Line(points[edges[2 * e]], points[edges[2 * e + 1]]);
+    return lines;
+  }
+
+  /**
+   * Emits the vertices, then the edges, into a sink
+   *
+   * @param sink the sink receiving the coordinates
+   */
+  public void replay(GeometrySink sink) {
+    for (int v = 0; v < vertices.length; v += 2)
+      sink.point(vertices[v], vertices[v + 1]);
+    for (int e = 0; e < edges.length; e += 2) {
+      int start = 2 * edges[e];
+      int end = 2 * edges[e + 1];
+      sink.line(vertices[start], vertices[start + 1], vertices[end], vertices[end + 1]);
+    }
+  }
+}
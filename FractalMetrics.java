@@ -0,0 +1,331 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The FractalMetrics class is the registry of generation and cache metrics
+ * Fractals record a GenerationRun for every generation, and caches record their lookups.
+ * The metrics are kept per fractal type and per cache, and their totals are exposed
+ * through JMX under the name "Fractal:type=Metrics"
+ */
+public class FractalMetrics implements FractalMetricsMBean {
+
+  /** The JMX name of the registry */
+  public static final String OBJECT_NAME = "Fractal:type=Metrics";
+
+  /** The numbers of levels whose runs are timed separately; runs of deeper fractals are counted in the last bucket */
+  public static final int MAX_TRACKED_LEVELS = 16;
+
+  /** The registry shared by the whole application */
+  private static final FractalMetrics REGISTRY = new FractalMetrics();
+
+  /** The metrics of every fractal type */
+  private final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+  /** The lookups of every cache, as {hits, misses} */
+  private final ConcurrentHashMap<String, LongAdder[]> caches = new ConcurrentHashMap<>();
+
+  /** The most recent generation run */
+  private volatile GenerationRun lastRun;
+
+  /**
+   * Retrieves the registry shared by the whole application
+   *
+   * @return the shared registry
+   */
+  public static FractalMetrics getRegistry() {
+    return REGISTRY;
+  }
+
+  /**
+   * Registers the shared registry with the platform MBean server
+   * Calling this method again has no effect
+   *
+   * @return the JMX name of the registry
+   * @throws IllegalStateException if the registry can not be registered
+   */
+  public static synchronized ObjectName registerMBean() {
+    try {
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (!server.isRegistered(name))
+        server.registerMBean(REGISTRY, name);
+      return name;
+    } catch (JMException e) {
+      throw new IllegalStateException("The metrics could not be registered.", e);
+    }
+  }
+
+  /**
+   * Records a finished generation run
+   *
+   * @param run the run to record
+   */
+  public void record(GenerationRun run) {
+    stats.computeIfAbsent(run.getFractalType(), type -> new Stats()).add(run);
+    lastRun = run;
+  }
+
+  /**
+   * Records a lookup into a cache
+   *
+   * @param cache the name of the cache
+   * @param hit true if the entry was found
+   */
+  public void recordCacheLookup(String cache, boolean hit) {
+    LongAdder[] counters = caches.computeIfAbsent(cache, name -> new LongAdder[] {new LongAdder(), new LongAdder()});
+    counters[hit ? 0 : 1].increment();
+  }
+
+  /**
+   * Retrieves the metrics of one fractal type
+   *
+   * @param fractalType the simple class name of the fractal
+   * @return the metrics of the type, empty if no run was recorded for it
+   */
+  public Stats getStats(String fractalType) {
+    Stats typeStats = stats.get(fractalType);
+    return typeStats == null ? new Stats() : typeStats;
+  }
+
+  /**
+   * Retrieves the fraction of lookups into one cache that found their entry
+   *
+   * @param cache the name of the cache
+   * @return the hit rate between 0 and 1, or 0 if the cache was never used
+   */
+  public double getCacheHitRate(String cache) {
+    LongAdder[] counters = caches.get(cache);
+    return counters == null ? 0 : rate(counters[0].sum(), counters[1].sum());
+  }
+
+  /**
+   * Retrieves the most recent generation run
+   *
+   * @return the most recent run, or null if no run was recorded
+   */
+  public GenerationRun getLastGenerationRun() {
+    return lastRun;
+  }
+
+  public long getGenerationRuns() {
+    long total = 0;
+    for (Stats typeStats : stats.values())
+      total += typeStats.runs.sum();
+    return total;
+  }
+
+  public long getVerticesEmitted() {
+    long total = 0;
+    for (Stats typeStats : stats.values())
+      total += typeStats.vertices.sum();
+    return total;
+  }
+
+  public long getEdgesEmitted() {
+    long total = 0;
+    for (Stats typeStats : stats.values())
+      total += typeStats.edges.sum();
+    return total;
+  }
+
+  public long getAllocatedBytes() {
+    long total = 0;
+    for (Stats typeStats : stats.values())
+      total += typeStats.allocatedBytes.sum();
+    return total;
+  }
+
+  public double getGenerationMillis() {
+    long total = 0;
+    for (Stats typeStats : stats.values())
+      total += typeStats.nanos.sum();
+    return total / 1e6;
+  }
+
+  public double[] getAverageRunMillisByLevels() {
+    long[] nanos = new long[MAX_TRACKED_LEVELS];
+    long[] runs = new long[MAX_TRACKED_LEVELS];
+    for (Stats typeStats : stats.values()) {
+      for (int level = 0; level < MAX_TRACKED_LEVELS; level++) {
+        nanos[level] += typeStats.levelNanos.get(level);
+        runs[level] += typeStats.levelRuns.get(level);
+      }
+    }
+    double[] average = new double[MAX_TRACKED_LEVELS];
+    for (int level = 0; level < MAX_TRACKED_LEVELS; level++)
+      average[level] = runs[level] == 0 ? 0 : nanos[level] / 1e6 / runs[level];
+    return average;
+  }
+
+  public String getLastRun() {
+    GenerationRun run = lastRun;
+    return run == null ? "" : run.toString();
+  }
+
+  public long getCacheHits() {
+    long total = 0;
+    for (LongAdder[] counters : caches.values())
+      total += counters[0].sum();
+    return total;
+  }
+
+  public long getCacheMisses() {
+    long total = 0;
+    for (LongAdder[] counters : caches.values())
+      total += counters[1].sum();
+    return total;
+  }
+
+  public double getCacheHitRate() {
+    return rate(getCacheHits(), getCacheMisses());
+  }
+
+  public void reset() {
+    stats.clear();
+    caches.clear();
+    lastRun = null;
+  }
+
+  /**
+   * Returns a summary of the metrics of every fractal type and cache
+   *
+   * @return the summary
+   */
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (Map.Entry<String, Stats> entry : new TreeMap<>(stats).entrySet())
+      builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+    for (String cache : new TreeMap<>(caches).keySet())
+      builder.append(String.format("cache %s: %.1f%% hits%n", cache, 100 * getCacheHitRate(cache)));
+    return builder.toString();
+  }
+
+  /**
+   * Helper method to compute a hit rate
+   *
+   * @param hits the number of hits
+   * @param misses the number of misses
+   * @return the hit rate between 0 and 1
+   */
+  private static double rate(long hits, long misses) {
+    return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+  }
+
+  /**
+   * The Stats class holds the accumulated metrics of one fractal type
+   * It is updated concurrently by the threads recording runs
+   */
+  public static class Stats {
+
+    /** The number of runs */
+    private final LongAdder runs = new LongAdder();
+
+    /** The number of vertices emitted */
+    private final LongAdder vertices = new LongAdder();
+
+    /** The number of edges emitted */
+    private final LongAdder edges = new LongAdder();
+
+    /** The bytes allocated */
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    /** The wall time of all runs, in nanoseconds */
+    private final LongAdder nanos = new LongAdder();
+
+    /** The wall time of whole runs, summed by the number of levels of their fractal, in nanoseconds */
+    private final AtomicLongArray levelNanos = new AtomicLongArray(MAX_TRACKED_LEVELS);
+
+    /** The number of runs, counted by the number of levels of their fractal */
+    private final AtomicLongArray levelRuns = new AtomicLongArray(MAX_TRACKED_LEVELS);
+
+    /**
+     * Helper method to add a finished run
+     *
+     * @param run the run to add
+     */
+    private void add(GenerationRun run) {
+      runs.increment();
+      vertices.add(run.getVertices());
+      edges.add(run.getEdges());
+      allocatedBytes.add(run.getAllocatedBytes());
+      nanos.add(run.getElapsedNanos());
+      int level = Math.min(run.getNumLevels(), MAX_TRACKED_LEVELS - 1);
+      levelNanos.addAndGet(level, run.getElapsedNanos());
+      levelRuns.incrementAndGet(level);
+    }
+
+    /**
+     * Retrieves the number of runs
+     *
+     * @return the number of runs
+     */
+    public long getRuns() {
+      return runs.sum();
+    }
+
+    /**
+     * Retrieves the number of vertices emitted
+     *
+     * @return the number of vertices
+     */
+    public long getVertices() {
+      return vertices.sum();
+    }
+
+    /**
+     * Retrieves the number of edges emitted
+     *
+     * @return the number of edges
+     */
+    public long getEdges() {
+      return edges.sum();
+    }
+
+    /**
+     * Retrieves the bytes allocated
+     *
+     * @return the allocated bytes
+     */
+    public long getAllocatedBytes() {
+      return allocatedBytes.sum();
+    }
+
+    /**
+     * Retrieves the wall time of all runs
+     *
+     * @return the wall time in nanoseconds
+     */
+    public long getNanos() {
+      return nanos.sum();
+    }
+
+    /**
+     * Retrieves the average wall time of the whole runs of fractals with a given number of levels
+     *
+     * @param numLevels the number of levels
+     * @return the average wall time in nanoseconds, or 0 if no such run was recorded
+     */
+    public double getAverageNanos(int numLevels) {
+      int level = Math.min(numLevels, MAX_TRACKED_LEVELS - 1);
+      long count = levelRuns.get(level);
+      return count == 0 ? 0 : (double) levelNanos.get(level) / count;
+    }
+
+    /**
+     * Returns a summary of the metrics
+     *
+     * @return the summary
+     */
+    public String toString() {
+      return String.format("%d runs, %d vertices, %d edges, %.3f ms, %d bytes",
+                           getRuns(), getVertices(), getEdges(), getNanos() / 1e6, getAllocatedBytes());
+    }
+  }
+}
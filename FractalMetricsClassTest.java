@@ -0,0 +1,86 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * JUnit test suite for the FractalMetrics class
+ * This class tests that generation runs and cache lookups are recorded and exposed through JMX
+ */
+public class FractalMetricsClassTest {
+  /** The shared registry */
+  private FractalMetrics metrics = FractalMetrics.getRegistry();
+  
+  /**
+   * Clears the metrics recorded by other tests
+   */
+  @Before
+  public void setUp() {
+    metrics.reset();
+  }
+  
+  /**
+   * Test the metrics of a getPoints() run
+   */
+  @Test
+  public void testGetPointsRun() {
+    TriangleFractal fractal = new TriangleFractal(new EquilateralTriangle(new Point(0, 0), 1.0), 2);
+    Point[] points = fractal.getPoints();
+    
+    GenerationRun run = metrics.getLastGenerationRun();
+    assertEquals("TriangleFractal", run.getFractalType());
+    assertEquals(2, run.getNumLevels());
+    assertEquals(points.length, run.getVertices());
+    assertEquals(0, run.getEdges());
+    assertTrue(run.getElapsedNanos() > 0);
+  }
+  
+  /**
+   * Test that a nested generation is counted as part of the running one
+   */
+  @Test
+  public void testNestedRun() {
+    SnowflakeFractal<Square> fractal = new SnowflakeFractal<>(new Square(new Point(0, 0), 1.0), 2);
+    Line[] lines = fractal.getLines();
+    
+    FractalMetrics.Stats stats = metrics.getStats("SnowflakeFractal");
+    assertEquals(1, stats.getRuns());
+    assertEquals(lines.length, stats.getVertices());
+    assertEquals(lines.length, stats.getEdges());
+    assertTrue(stats.getAverageNanos(2) > 0);
+  }
+  
+  /**
+   * Test the cache hit rates
+   */
+  @Test
+  public void testCacheHitRate() {
+    metrics.recordCacheLookup("test", false);
+    metrics.recordCacheLookup("test", true);
+    metrics.recordCacheLookup("test", true);
+    metrics.recordCacheLookup("test", true);
+    
+    assertEquals(0.75, metrics.getCacheHitRate("test"), 1e-9);
+    assertEquals(0.75, metrics.getCacheHitRate(), 1e-9);
+    assertEquals(0, metrics.getCacheHitRate("unused"), 1e-9);
+  }
+  
+  /**
+   * Test reading the metrics through JMX
+   */
+  @Test
+  public void testMBean() throws Exception {
+    ObjectName name = FractalMetrics.registerMBean();
+    new RectangleFractal(new Square(new Point(0, 0), 1.0), 1).getLines();
+    
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    assertEquals(1L, server.getAttribute(name, "GenerationRuns"));
+    assertEquals(24L, server.getAttribute(name, "EdgesEmitted"));
+    assertEquals(16L, server.getAttribute(name, "VerticesEmitted"));
+    assertTrue(((String) server.getAttribute(name, "LastRun")).startsWith("RectangleFractal level 1"));
+    
+    server.invoke(name, "reset", null, null);
+    assertEquals(0L, server.getAttribute(name, "GenerationRuns"));
+  }
+}
@@ -0,0 +1,83 @@
+/**
+ * The FractalMetricsMBean interface exposes the FractalMetrics registry through JMX
+ * All values are totals over every fractal type since the registry was created or last reset
+ */
+public interface FractalMetricsMBean {
+
+  /**
+   * Retrieves the number of generation runs recorded
+   *
+   * @return the number of runs
+   */
+  long getGenerationRuns();
+
+  /**
+   * Retrieves the number of vertices emitted
+   *
+   * @return the number of vertices
+   */
+  long getVerticesEmitted();
+
+  /**
+   * Retrieves the number of edges emitted
+   *
+   * @return the number of edges
+   */
+  long getEdgesEmitted();
+
+  /**
+   * Retrieves the bytes allocated by generation runs
+   *
+   * @return the allocated bytes
+   */
+  long getAllocatedBytes();
+
+  /**
+   * Retrieves the wall time of all generation runs
+   *
+   * @return the wall time in milliseconds
+   */
+  double getGenerationMillis();
+
+  /**
+   * Retrieves the average wall time of a whole run, grouped by the number of levels of the fractal
+   * Generation walks the recursion depth first, visiting every level many times over, so its time is not
+   * split by level. Instead a run of a 5 level fractal is counted at index 5 in full
+   *
+   * @return the average wall time of a run in milliseconds, indexed by the number of levels of its fractal
+   */
+  double[] getAverageRunMillisByLevels();
+
+  /**
+   * Retrieves a summary of the most recent generation run
+   *
+   * @return the summary, or an empty String if no run was recorded
+   */
+  String getLastRun();
+
+  /**
+   * Retrieves the number of cache lookups that found their entry
+   *
+   * @return the number of cache hits
+   */
+  long getCacheHits();
+
+  /**
+   * Retrieves the number of cache lookups that did not find their entry
+   *
+   * @return the number of cache misses
+   */
+  long getCacheMisses();
+
+  /**
+   * Retrieves the fraction of cache lookups that found their entry
+   *
+   * @return the hit rate between 0 and 1
+   */
+  double getCacheHitRate();
+
+  /**
+   * Clears all metrics
+   */
+  void reset();
+}
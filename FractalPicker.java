@@ -0,0 +1,205 @@
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+
+/**
+ * The FractalPicker class gives hover and selection feedback on a drawn fractal
+ * The drawn Lines and their end Points are put into SpatialIndexes, so finding what lies under
+ * the mouse costs a few node visits instead of a scan of every Line.
+ * Hovering marks the closest vertex, or else the closest Line. Clicking selects the closest Line
+ * and dragging selects every Line crossing the dragged box. The marks are drawn on an overlay
+ * canvas stacked over the drawing, so the drawing is never redrawn, and a label describes them
+ */
+public class FractalPicker {
+
+  /** The largest distance from the mouse to a picked element, in pixels */
+  private static final double PICK_RADIUS = 6;
+
+  /** The canvas the marks are drawn on, stacked over the drawing */
+  private final Canvas overlay;
+
+  /** The label describing the marks */
+  private final Label infoLabel;
+
+  /** The drawn Lines, packed as x1, y1, x2, y2 */
+  private double[] lines = new double[0];
+
+  /** The index of the drawn Lines, and of their end Points as zero-length segments */
+  private SpatialIndex lineIndex;
+  private SpatialIndex vertexIndex;
+
+  /** The Lines selected, and the vertex and Line under the mouse, or -1 */
+  private int[] selected = new int[0];
+  private int hoverVertex = -1;
+  private int hoverLine = -1;
+
+  /** The mouse position when the button was pressed, and while it is dragged */
+  private double pressX;
+  private double pressY;
+  private double dragX;
+  private double dragY;
+  private boolean dragging;
+
+  /**
+   * Creates a FractalPicker over a canvas
+   * The handlers are added beside the ones already set on the canvas, so panning keeps working
+   *
+   * @param canvas the canvas the fractal is drawn on
+   * @param overlay a canvas of the same size stacked over the drawing
+   * @param infoLabel the label describing the marks
+   */
+  public FractalPicker(Canvas canvas, Canvas overlay, Label infoLabel) {
+    this.overlay = overlay;
+    this.infoLabel = infoLabel;
+    overlay.setMouseTransparent(true);
+
+    canvas.addEventHandler(MouseEvent.MOUSE_MOVED, e -> hover(e.getX(), e.getY()));
+    canvas.addEventHandler(MouseEvent.MOUSE_EXITED, e -> hover(Double.NaN, Double.NaN));
+    canvas.addEventHandler(MouseEvent.MOUSE_PRESSED, e -> {
+      pressX = e.getX();
+      pressY = e.getY();
+      dragging = false;
+    });
+    canvas.addEventHandler(MouseEvent.MOUSE_DRAGGED, e -> {
+      dragX = e.getX();
+      dragY = e.getY();
+      dragging = Math.abs(dragX - pressX) > PICK_RADIUS || Math.abs(dragY - pressY) > PICK_RADIUS;
+      redraw();
+    });
+    canvas.addEventHandler(MouseEvent.MOUSE_RELEASED, e -> select(e.getX(), e.getY()));
+  }
+
+  /**
+   * Indexes the Lines drawn on the canvas, dropping the previous marks
+   * Must be called on the JavaFX application thread
+   *
+   * @param drawn the Lines drawn, in canvas coordinates
+   */
+  public void setLines(Line[] drawn) {
+    lines = new double[4 * drawn.length];
+    for (int i = 0; i < drawn.length; i++) {
+      lines[4 * i] = drawn[i].getFirstPoint().getX();
+      lines[4 * i + 1] = drawn[i].getFirstPoint().getY();
+      lines[4 * i + 2] = drawn[i].getSecondPoint().getX();
+      lines[4 * i + 3] = drawn[i].getSecondPoint().getY();
+    }
+
+    //vertex 2 * i is the start of Line i and vertex 2 * i + 1 its end
+    double[] vertices = new double[2 * lines.length];
+    for (int v = 0; v < lines.length / 2; v++) {
+      vertices[4 * v] = vertices[4 * v + 2] = lines[2 * v];
+      vertices[4 * v + 1] = vertices[4 * v + 3] = lines[2 * v + 1];
+    }
+    lineIndex = new SpatialIndex(lines);
+    vertexIndex = new SpatialIndex(vertices);
+    resetMarks();
+  }
+
+  /**
+   * Forgets the drawn Lines, for when the canvas shows something that is not indexed
+   * Must be called on the JavaFX application thread
+   */
+  public void clear() {
+    lines = new double[0];
+    lineIndex = null;
+    vertexIndex = null;
+    resetMarks();
+  }
+
+  /**
+   * Helper method to drop the marks and the text of the label
+   */
+  private void resetMarks() {
+    selected = new int[0];
+    hoverVertex = -1;
+    hoverLine = -1;
+    dragging = false;
+    infoLabel.setText("");
+    redraw();
+  }
+
+  /**
+   * Helper method to mark the vertex or Line under the mouse
+   *
+   * @param x the x coordinate of the mouse, or NaN when it left the canvas
+   * @param y the y coordinate of the mouse, or NaN when it left the canvas
+   */
+  private void hover(double x, double y) {
+    if (lineIndex == null)
+      return;
+    hoverVertex = Double.isNaN(x) ? -1 : vertexIndex.nearest(x, y, PICK_RADIUS);
+    hoverLine = Double.isNaN(x) || hoverVertex >= 0 ? -1 : lineIndex.nearest(x, y, PICK_RADIUS);
+    if (hoverVertex >= 0)
+      infoLabel.setText(String.format("Vertex (%.1f, %.1f)", lines[2 * hoverVertex], lines[2 * hoverVertex + 1]));
+    else if (hoverLine >= 0)
+      infoLabel.setText(describeLine(hoverLine));
+    else
+      infoLabel.setText(selected.length == 0 ? "" : selected.length + " Lines selected");
+    redraw();
+  }
+
+  /**
+   * Helper method to select the Lines in the dragged box, or the Line clicked on
+   *
+   * @param x the x coordinate of the mouse when the button was released
+   * @param y the y coordinate of the mouse when the button was released
+   */
+  private void select(double x, double y) {
+    if (lineIndex == null)
+      return;
+    if (dragging) {
+      selected = lineIndex.range(Math.min(pressX, x), Math.min(pressY, y), Math.max(pressX, x), Math.max(pressY, y));
+      dragging = false;
+    }
+    else {
+      int line = lineIndex.nearest(x, y, PICK_RADIUS);
+      selected = line < 0 ? new int[0] : new int[] {line};
+    }
+    infoLabel.setText(selected.length == 1 ? describeLine(selected[0]) : selected.length + " Lines selected");
+    redraw();
+  }
+
+  /**
+   * Helper method to describe a Line by its end Points
+   *
+   * @param line the index of the Line
+   * @return the description
+   */
+  private String describeLine(int line) {
+    return String.format("Line (%.1f, %.1f) - (%.1f, %.1f)",
+                         lines[4 * line], lines[4 * line + 1], lines[4 * line + 2], lines[4 * line + 3]);
+  }
+
+  /**
+   * Helper method to draw the marks on the overlay
+   */
+  private void redraw() {
+    GraphicsContext gc = overlay.getGraphicsContext2D();
+    gc.clearRect(0, 0, overlay.getWidth(), overlay.getHeight());
+
+    //the selection as a single path, like the animator draws the fractal
+    gc.setStroke(Color.DODGERBLUE);
+    gc.setLineWidth(2);
+    gc.beginPath();
+    for (int line : selected) {
+      gc.moveTo(lines[4 * line], lines[4 * line + 1]);
+      gc.lineTo(lines[4 * line + 2], lines[4 * line + 3]);
+    }
+    gc.stroke();
+
+    gc.setStroke(Color.ORANGERED);
+    if (hoverLine >= 0)
+      gc.strokeLine(lines[4 * hoverLine], lines[4 * hoverLine + 1], lines[4 * hoverLine + 2], lines[4 * hoverLine + 3]);
+    if (hoverVertex >= 0)
+      gc.strokeOval(lines[2 * hoverVertex] - PICK_RADIUS / 2, lines[2 * hoverVertex + 1] - PICK_RADIUS / 2,
+                    PICK_RADIUS, PICK_RADIUS);
+
+    if (dragging) {
+      gc.setStroke(Color.GRAY);
+      gc.setLineWidth(1);
+      gc.strokeRect(Math.min(pressX, dragX), Math.min(pressY, dragY), Math.abs(dragX - pressX), Math.abs(dragY - pressY));
+    }
+  }
+}
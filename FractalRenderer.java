@@ -0,0 +1,282 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Consumer;
+import javax.imageio.ImageIO;
+
+/**
+ * The FractalRenderer class draws fractals without JavaFX
+ * It produces PNG images through java.awt and SVG documents as plain text,
+ * so fractals can be rendered on headless machines
+ */
+public class FractalRenderer {
+
+  /**
+   * Renders the fractal described by a FractalSpec as a PNG image
+   *
+   * @param spec the fractal to render
+   * @return the bytes of the PNG image
+   */
+  public static byte[] renderPng(FractalSpec spec) {
+    return renderPng(spec.createFractal(), spec.getImageWidth(), spec.getImageHeight(), Math.toRadians(spec.getRotation()));
+  }
+
+  /**
+   * Renders a fractal as a PNG image
+   * Lines are drawn black on a white background, like the GUI applications
+   *
+   * @param fractal the fractal to render
+   * @param width the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @param angle the angle of rotation about the fractal's center, in radians
+   * @return the bytes of the PNG image
+   */
+  public static byte[] renderPng(Fractal<?> fractal, int width, int height, double angle) {
+    checkImageSize(width, height);
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    try {
+      g.setColor(Color.WHITE);
+      g.fillRect(0, 0, width, height);
+      g.setColor(Color.BLACK);
+      g.setStroke(new BasicStroke(1f));
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+      //rotate packed copies of the Lines instead of the fractal's Points, a chunk at a time,
+      //so that the chunks of a big fractal are rotated on every core. Unrotated Lines are drawn as they are
+      Point center = fractal.getCenter();
+      AffineMap rotation = angle == 0 ? null : AffineMap.ofRotation(angle, center.getX(), center.getY());
+      RotatedLines rotated = new RotatedLines(rotation, g);
+
+      //draw all Lines of the fractal
+      FractalDrawEvent event = new FractalDrawEvent();
+      event.begin();
+      long[] count = new long[1];
+      fractal.lineStream().forEach(line -> {
+        rotated.add(line);
+        count[0]++;
+      });
+      rotated.flush();
+      event.finish(fractal, "png", count[0]);
+    } finally {
+      g.dispose();
+    }
+    return encodePng(image);
+  }
+
+  /**
+   * Renders geometry kept off the heap as a PNG image
+   * The Lines are read straight from the store, so deep fractals never become Line objects
+   *
+   * @param geometry the Lines to render
+   * @param width the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @return the bytes of the PNG image
+   */
+  public static byte[] renderPng(OffHeapGeometry geometry, int width, int height) {
+    return renderPng(geometry::replay, width, height);
+  }
+
+  /**
+   * Renders geometry spilled to disk as a PNG image
+   * The chunks are read one at a time, so the geometry may be larger than memory
+   *
+   * @param spill the Lines to render
+   * @param width the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @return the bytes of the PNG image
+   */
+  public static byte[] renderPng(GeometrySpill spill, int width, int height) {
+    return renderPng(spill::replay, width, height);
+  }
+
+  /**
+   * Renders a scene of many fractals as a PNG image
+   * All instances are drawn in a single pass onto one image
+   *
+   * @param scene the fractals to render
+   * @param width the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @return the bytes of the PNG image
+   */
+  public static byte[] renderPng(FractalScene scene, int width, int height) {
+    return renderPng(scene::replay, width, height);
+  }
+
+  /**
+   * Helper method to render replayed geometry as a PNG image
+   *
+   * @param geometry replays the geometry into the sink it is given
+   * @param width the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @return the bytes of the PNG image
+   */
+  private static byte[] renderPng(Consumer<GeometrySink> geometry, int width, int height) {
+    checkImageSize(width, height);
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    try {
+      g.setColor(Color.WHITE);
+      g.fillRect(0, 0, width, height);
+      g.setColor(Color.BLACK);
+      g.setStroke(new BasicStroke(1f));
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+      Line2D.Double shape = new Line2D.Double();
+      geometry.accept(new GeometrySink() {
+        public void point(double x, double y) {
+        }
+
+        public void line(double x1, double y1, double x2, double y2) {
+          shape.setLine(x1, y1, x2, y2);
+          g.draw(shape);
+        }
+      });
+    } finally {
+      g.dispose();
+    }
+    return encodePng(image);
+  }
+
+  /**
+   * The RotatedLines class packs Lines into a chunk, rotates the whole chunk in one batch and draws it
+   * The chunk grows up to RENDER_CHUNK Lines, which is large enough for BatchTransform to split it across threads
+   */
+  private static class RotatedLines {
+
+    /** The largest number of Lines in a chunk */
+    private static final int RENDER_CHUNK = 2 * BatchTransform.PARALLEL_THRESHOLD;
+
+    /** The rotation applied to the Lines, or null to draw them unrotated */
+    private final AffineMap rotation;
+
+    /** The graphics to draw on */
+    private final Graphics2D g;
+
+    /** The Lines of the chunk, as x1, y1, x2, y2 */
+    private double[] chunk = new double[4 * 256];
+
+    /** The number of Lines in the chunk */
+    private int size;
+
+    /** A single shape reused for every Line */
+    private final Line2D.Double shape = new Line2D.Double();
+
+    RotatedLines(AffineMap rotation, Graphics2D g) {
+      this.rotation = rotation;
+      this.g = g;
+    }
+
+    /**
+     * Adds a Line to the chunk, drawing the chunk first if it is full
+     *
+     * @param line the Line to add
+     */
+    void add(Line line) {
+      if (4 * size == chunk.length) {
+        if (size < RENDER_CHUNK)
+          chunk = Arrays.copyOf(chunk, 2 * chunk.length);
+        else
+          flush();
+      }
+      chunk[4 * size] = line.getFirstPoint().getX();
+      chunk[4 * size + 1] = line.getFirstPoint().getY();
+      chunk[4 * size + 2] = line.getSecondPoint().getX();
+      chunk[4 * size + 3] = line.getSecondPoint().getY();
+      size++;
+    }
+
+    /**
+     * Rotates and draws the Lines of the chunk and empties it
+     */
+    void flush() {
+      //every Line is two Points of the packed coordinates
+      if (rotation != null)
+        BatchTransform.applyParallel(rotation, chunk, 0, 2 * size);
+      for (int i = 0; i < 4 * size; i += 4) {
+        shape.setLine(chunk[i], chunk[i + 1], chunk[i + 2], chunk[i + 3]);
+        g.draw(shape);
+      }
+      size = 0;
+    }
+  }
+
+  /**
+   * Helper method to encode an image as PNG
+   *
+   * @param image the image to encode
+   * @return the bytes of the PNG image
+   */
+  private static byte[] encodePng(BufferedImage image) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      ImageIO.write(image, "png", out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Renders the fractal described by a FractalSpec as an SVG document
+   *
+   * @param spec the fractal to render
+   * @return the SVG document
+   */
+  public static String renderSvg(FractalSpec spec) {
+    return renderSvg(spec.createFractal(), spec.getImageWidth(), spec.getImageHeight(), spec.getRotation());
+  }
+
+  /**
+   * Renders a fractal as an SVG document
+   * All Lines are written into a single path element
+   *
+   * @param fractal the fractal to render
+   * @param width the width of the document
+   * @param height the height of the document
+   * @param degrees the angle of rotation about the fractal's center, in degree
+   * @return the SVG document
+   */
+  public static String renderSvg(Fractal<?> fractal, int width, int height, double degrees) {
+    checkImageSize(width, height);
+    Point center = fractal.getCenter();
+    StringBuilder svg = new StringBuilder();
+    svg.append(String.format(Locale.ROOT,
+                             "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%d\" height=\"%d\" viewBox=\"0 0 %d %d\">\n",
+                             width, height, width, height));
+    svg.append(String.format(Locale.ROOT,
+                             "<path fill=\"none\" stroke=\"black\" transform=\"rotate(%s %s %s)\" d=\"",
+                             degrees, center.getX(), center.getY()));
+    FractalDrawEvent event = new FractalDrawEvent();
+    event.begin();
+    long[] count = new long[1];
+    fractal.lineStream().forEach(line -> {
+      svg.append('M').append(line.getFirstPoint().getX()).append(' ').append(line.getFirstPoint().getY())
+        .append('L').append(line.getSecondPoint().getX()).append(' ').append(line.getSecondPoint().getY());
+      count[0]++;
+    });
+    event.finish(fractal, "svg", count[0]);
+    svg.append("\"/>\n</svg>\n");
+    return svg.toString();
+  }
+
+  /**
+   * Helper method to check the size of an image
+   *
+   * @param width the width of the image
+   * @param height the height of the image
+   * @throws IllegalArgumentException if the width or the height is not positive
+   */
+  private static void checkImageSize(int width, int height) {
+    if (width <= 0 || height <= 0)
+      throw new IllegalArgumentException("The image size must be positive.");
+  }
+}
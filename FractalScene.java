@@ -0,0 +1,195 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The FractalScene class composes many fractals into one picture
+ * Each instance of the scene is a FractalSpec, giving the type and parameters of the fractal, placed by an AffineMap.
+ * Instances with the same shape share one template: its Lines are generated once and packed as x1, y1, x2, y2,
+ * and each instance only transforms the template's coordinates. Missing templates are generated in parallel
+ * on the common fork/join pool, and the whole scene is replayed in a single pass into one sink
+ */
+public class FractalScene {
+
+  /** The instances of the scene, in drawing order */
+  private final List<Instance> instances = new ArrayList<>();
+
+  /** Generated and in-progress templates, keyed by the FractalSpec of the shape without its rotation */
+  private final ConcurrentHashMap<FractalSpec, CompletableFuture<Template>> templates = new ConcurrentHashMap<>();
+
+  /**
+   * Adds a fractal to the scene, drawn as its FractalSpec describes it
+   *
+   * @param spec the fractal, rotated by its rotation parameter about its center
+   * @return the index of the new instance
+   */
+  public int add(FractalSpec spec) {
+    return add(spec, AffineMap.IDENTITY);
+  }
+
+  /**
+   * Adds a fractal to the scene, placed by a transform
+   *
+   * @param spec the fractal, rotated by its rotation parameter about its center before the transform
+   * @param transform the map placing the fractal in the scene
+   * @return the index of the new instance
+   */
+  public int add(FractalSpec spec, AffineMap transform) {
+    instances.add(new Instance(spec.without("rotation"), Math.toRadians(spec.getRotation()), transform));
+    return instances.size() - 1;
+  }
+
+  /**
+   * Moves an instance of the scene, keeping its template
+   *
+   * @param index the index of the instance
+   * @param transform the new map placing the fractal in the scene
+   * @throws IndexOutOfBoundsException if there is no instance at the index
+   */
+  public void setTransform(int index, AffineMap transform) {
+    instances.get(index).transform = transform;
+  }
+
+  /**
+   * Retrieves the number of instances in the scene
+   *
+   * @return the number of instances
+   */
+  public int size() {
+    return instances.size();
+  }
+
+  /**
+   * Retrieves the number of distinct shapes in the scene, each generated once
+   *
+   * @return the number of templates
+   */
+  public int getTemplateCount() {
+    return templates.size();
+  }
+
+  /**
+   * Removes every instance and template from the scene
+   */
+  public void clear() {
+    instances.clear();
+    templates.clear();
+  }
+
+  /**
+   * Generates the templates missing from the scene, in parallel on the common fork/join pool
+   * Instances sharing a shape wait for the same template
+   *
+   * @throws IllegalArgumentException if a FractalSpec describes an invalid fractal
+   */
+  public void prepare() {
+    List<CompletableFuture<Template>> pending = new ArrayList<>();
+    for (Instance instance : instances) {
+      CompletableFuture<Template> template = templates.get(instance.shape);
+      boolean hit = template != null;
+      FractalMetrics.getRegistry().recordCacheLookup("template", hit);
+      if (!hit) {
+        FractalSpec shape = instance.shape;
+        template = templates.computeIfAbsent(shape, key -> CompletableFuture.supplyAsync(() -> new Template(key)));
+        pending.add(template);
+      }
+    }
+    for (CompletableFuture<Template> template : pending) {
+      try {
+        template.join();
+      } catch (CompletionException e) {
+        //forget the failed template so that it is not served again
+        templates.values().remove(template);
+        if (e.getCause() instanceof Error)
+          throw (Error) e.getCause();
+        throw (RuntimeException) e.getCause();
+      }
+    }
+  }
+
+  /**
+   * Emits the Lines of every instance, transformed, into a sink in a single pass
+   * Templates are generated first if they are missing
+   *
+   * @param sink the sink receiving the Lines
+   * @return the number of Lines emitted
+   * @throws IllegalArgumentException if a FractalSpec describes an invalid fractal
+   */
+  public long replay(GeometrySink sink) {
+    prepare();
+    FractalDrawEvent event = new FractalDrawEvent();
+    event.begin();
+    double[] buffer = new double[0];
+    long count = 0;
+    for (Instance instance : instances) {
+      Template template = templates.get(instance.shape).join();
+      if (buffer.length < template.lines.length)
+        buffer = new double[template.lines.length];
+
+      //rotate about the template's center, then place the instance, in one fused pass over the template
+      AffineMap map = instance.transform.compose(AffineMap.ofRotation(instance.angle, template.centerX, template.centerY));
+      BatchTransform.apply(map, template.lines, 0, buffer, 0, template.lines.length / 2);
+      for (int i = 0; i < template.lines.length; i += 4)
+        sink.line(buffer[i], buffer[i + 1], buffer[i + 2], buffer[i + 3]);
+      count += template.lines.length / 4;
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.fractalType = "FractalScene";
+      event.target = "scene";
+      event.lines = count;
+      event.commit();
+    }
+    return count;
+  }
+
+  /**
+   * The Instance class places one fractal in the scene
+   */
+  private static class Instance {
+
+    /** The shape of the fractal, without its rotation */
+    private final FractalSpec shape;
+
+    /** The rotation of the fractal about its center, in radians */
+    private final double angle;
+
+    /** The map placing the fractal in the scene */
+    private AffineMap transform;
+
+    Instance(FractalSpec shape, double angle, AffineMap transform) {
+      this.shape = shape;
+      this.angle = angle;
+      this.transform = transform;
+    }
+  }
+
+  /**
+   * The Template class holds the Lines of a shape, generated once for every instance of it
+   */
+  private static class Template {
+
+    /** The Lines of the shape, packed as x1, y1, x2, y2 */
+    private final double[] lines;
+
+    /** The center of the shape */
+    private final double centerX;
+    private final double centerY;
+
+    Template(FractalSpec shape) {
+      Fractal<?> fractal = shape.createFractal();
+      Line[] fractalLines = fractal.lineStream().toArray(Line[]::new);
+      lines = new double[4 * fractalLines.length];
+      for (int i = 0; i < fractalLines.length; i++) {
+        lines[4 * i] = fractalLines[i].getFirstPoint().getX();
+        lines[4 * i + 1] = fractalLines[i].getFirstPoint().getY();
+        lines[4 * i + 2] = fractalLines[i].getSecondPoint().getX();
+        lines[4 * i + 3] = fractalLines[i].getSecondPoint().getY();
+      }
+      centerX = fractal.getCenter().getX();
+      centerY = fractal.getCenter().getY();
+    }
+  }
+}
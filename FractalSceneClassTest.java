@@ -0,0 +1,119 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JUnit test suite for the FractalScene class
+ * This class checks that instances share templates and are drawn where their fractals would be
+ */
+public class FractalSceneClassTest {
+
+  /**
+   * Test that identical shapes share a template and each instance is placed by its own transform
+   */
+  @Test
+  public void testSharedTemplates() {
+    FractalSpec snowflake = FractalSpec.parse("type=snowflake&sides=5&side=80&levels=2");
+    FractalSpec rotated = FractalSpec.parse("type=snowflake&sides=5&side=80&levels=2&rotation=30");
+    FractalSpec carpet = FractalSpec.parse("type=rectangle&width=90&height=60&levels=1");
+    AffineMap moved = AffineMap.ofScale(0.5, 0.5, 40, -10);
+
+    FractalScene scene = new FractalScene();
+    assertEquals(0, scene.add(snowflake));
+    assertEquals(1, scene.add(rotated, moved));
+    assertEquals(2, scene.add(carpet));
+    assertEquals(3, scene.size());
+
+    Collector collector = new Collector();
+    long count = scene.replay(collector);
+    assertEquals(2, scene.getTemplateCount());
+
+    //build the expected Lines from each fractal on its own
+    List<double[]> expected = new ArrayList<>();
+    addLines(expected, snowflake.createFractal(), 0, AffineMap.IDENTITY);
+    addLines(expected, snowflake.createFractal(), Math.toRadians(30), moved);
+    addLines(expected, carpet.createFractal(), 0, AffineMap.IDENTITY);
+    assertEquals(expected.size(), count);
+    assertEquals(expected.size(), collector.lines.size());
+    for (int i = 0; i < expected.size(); i++)
+      assertArrayEquals(expected.get(i), collector.lines.get(i), 1e-9);
+
+    //moving an instance keeps its template
+    scene.setTransform(0, AffineMap.ofScale(1, 1, 5, 5));
+    Collector movedCollector = new Collector();
+    scene.replay(movedCollector);
+    assertEquals(2, scene.getTemplateCount());
+    assertEquals(collector.lines.get(0)[0] + 5, movedCollector.lines.get(0)[0], 1e-9);
+
+    scene.clear();
+    assertEquals(0, scene.size());
+    assertEquals(0, scene.getTemplateCount());
+  }
+
+  /**
+   * Test that an invalid fractal is reported and not kept as a template
+   */
+  @Test
+  public void testInvalidSpec() {
+    FractalScene scene = new FractalScene();
+    scene.add(FractalSpec.parse("type=snowflake&sides=2"));
+    try {
+      scene.replay(new Collector());
+      fail("A snowflake with two sides should be rejected");
+    } catch (IllegalArgumentException e) {
+    }
+    assertEquals(0, scene.getTemplateCount());
+  }
+
+  /**
+   * Test that a scene renders as a PNG image
+   */
+  @Test
+  public void testRenderPng() {
+    FractalScene scene = new FractalScene();
+    for (int i = 0; i < 4; i++)
+      scene.add(FractalSpec.parse("type=triangle&levels=3"), AffineMap.ofScale(0.25, 0.25, 125 * i, 0));
+    byte[] png = FractalRenderer.renderPng(scene, 500, 200);
+    assertEquals((byte) 0x89, png[0]);
+    assertEquals('P', png[1]);
+    assertEquals(1, scene.getTemplateCount());
+  }
+
+  /**
+   * Helper method to add the Lines of a fractal, rotated about its center and then transformed
+   *
+   * @param lines the list receiving the Lines, as x1, y1, x2, y2
+   * @param fractal the fractal
+   * @param angle the rotation about the fractal's center, in radians
+   * @param transform the map applied after the rotation
+   */
+  private static void addLines(List<double[]> lines, Fractal<?> fractal, double angle, AffineMap transform) {
+    Point center = fractal.getCenter();
+    for (Line line : fractal.lineStream().toArray(Line[]::new)) {
+      Point first = new Point(line.getFirstPoint().getX(), line.getFirstPoint().getY());
+      Point second = new Point(line.getSecondPoint().getX(), line.getSecondPoint().getY());
+      first.rotateAbout(center, angle);
+      second.rotateAbout(center, angle);
+      first = transform.map(first);
+      second = transform.map(second);
+      lines.add(new double[] {first.getX(), first.getY(), second.getX(), second.getY()});
+    }
+  }
+
+  /**
+   * The Collector class keeps the Lines emitted into it
+   */
+  private static class Collector implements GeometrySink {
+
+    /** The Lines, as x1, y1, x2, y2 */
+    private final List<double[]> lines = new ArrayList<>();
+
+    public void point(double x, double y) {
+    }
+
+    public void line(double x1, double y1, double x2, double y2) {
+      lines.add(new double[] {x1, y1, x2, y2});
+    }
+  }
+}
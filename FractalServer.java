@@ -0,0 +1,288 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The FractalServer class is a small HTTP service rendering fractals headlessly
+ * A GET request to /render with the parameters of a FractalSpec and format=png or format=svg
+ * returns the rendered image, for example /render?type=snowflake&sides=6&levels=4&format=svg
+ *
+ * Every request runs on its own virtual thread. Rendered images are cached, the least recently used
+ * first out, and concurrent requests for the same image wait for a single rendering instead of repeating it
+ */
+public final class FractalServer {
+
+  /** The largest image width and height a request may ask for by default */
+  public static final int DEFAULT_MAX_IMAGE_SIZE = 4096;
+
+  /** The largest number of Lines a request may ask for by default */
+  public static final long DEFAULT_MAX_LINES = 1L << 22;
+
+  /** The underlying HTTP server */
+  private final HttpServer server;
+
+  /** The executor running one virtual thread per request */
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  /** Rendered and in-progress images, keyed by the canonical request, from the least to the most recently used */
+  private final LinkedHashMap<String, CompletableFuture<byte[]>> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** The maximum number of images kept in the cache */
+  private final int maxCacheEntries;
+
+  /** The maximum number of levels a request may ask for */
+  private final int maxLevels;
+
+  /** The maximum width and height of an image a request may ask for, in pixels */
+  private final int maxImageSize;
+
+  /** The maximum number of Lines a request may ask for, as bounded by FractalSpec.estimateLines() */
+  private final long maxLines;
+
+  /** The number of images actually rendered */
+  private final AtomicLong renderCount = new AtomicLong();
+
+  /** The number of requests served from the cache or from a rendering already in progress */
+  private final AtomicLong cacheHits = new AtomicLong();
+
+  /**
+   * Creates a FractalServer listening on the given address, accepting images of up to DEFAULT_MAX_IMAGE_SIZE pixels
+   * and DEFAULT_MAX_LINES Lines
+   * The server does not accept requests until start() is called
+   *
+   * @param address the address to listen on. Port 0 picks a free port
+   * @param maxCacheEntries the maximum number of images kept in the cache
+   * @param maxLevels the maximum number of levels a request may ask for
+   * @throws IOException if the server can not be bound to the address
+   */
+  public FractalServer(InetSocketAddress address, int maxCacheEntries, int maxLevels) throws IOException {
+    this(address, maxCacheEntries, maxLevels, DEFAULT_MAX_IMAGE_SIZE);
+  }
+
+  /**
+   * Creates a FractalServer listening on the given address, accepting images of up to DEFAULT_MAX_LINES Lines
+   * The server does not accept requests until start() is called
+   *
+   * @param address the address to listen on. Port 0 picks a free port
+   * @param maxCacheEntries the maximum number of images kept in the cache
+   * @param maxLevels the maximum number of levels a request may ask for
+   * @param maxImageSize the maximum width and height of an image a request may ask for, in pixels
+   * @throws IOException if the server can not be bound to the address
+   */
+  public FractalServer(InetSocketAddress address, int maxCacheEntries, int maxLevels, int maxImageSize) throws IOException {
+    this(address, maxCacheEntries, maxLevels, maxImageSize, DEFAULT_MAX_LINES);
+  }
+
+  /**
+   * Creates a FractalServer listening on the given address
+   * The server does not accept requests until start() is called
+   *
+   * @param address the address to listen on. Port 0 picks a free port
+   * @param maxCacheEntries the maximum number of images kept in the cache
+   * @param maxLevels the maximum number of levels a request may ask for
+   * @param maxImageSize the maximum width and height of an image a request may ask for, in pixels
+   * @param maxLines the maximum number of Lines a request may ask for
+   * @throws IOException if the server can not be bound to the address
+   */
+  public FractalServer(InetSocketAddress address, int maxCacheEntries, int maxLevels, int maxImageSize, long maxLines)
+    throws IOException {
+    if (maxCacheEntries < 0 || maxLevels < 0)
+      throw new IllegalArgumentException("The cache size and the maximum number of levels must be non-negative.");
+    if (maxImageSize <= 0 || maxLines <= 0)
+      throw new IllegalArgumentException("The maximum image size and number of Lines must be positive.");
+    this.maxCacheEntries = maxCacheEntries;
+    this.maxLevels = maxLevels;
+    this.maxImageSize = maxImageSize;
+    this.maxLines = maxLines;
+    server = HttpServer.create(address, 0);
+    server.setExecutor(executor);
+    server.createContext("/render", this::handleRender);
+  }
+
+  /**
+   * Starts accepting requests
+   */
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * Stops the server, waiting at most the given delay for requests in progress
+   *
+   * @param delaySeconds the maximum time to wait, in seconds
+   */
+  public void stop(int delaySeconds) {
+    server.stop(delaySeconds);
+    executor.shutdown();
+  }
+
+  /**
+   * Retrieves the port the server listens on
+   *
+   * @return the port number
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Retrieves the number of images actually rendered
+   *
+   * @return the number of renderings
+   */
+  public long getRenderCount() {
+    return renderCount.get();
+  }
+
+  /**
+   * Retrieves the number of requests that did not need a rendering of their own
+   *
+   * @return the number of cache hits
+   */
+  public long getCacheHits() {
+    return cacheHits.get();
+  }
+
+  /**
+   * Renders the image described by a FractalSpec, or reuses it if it is cached or being rendered
+   *
+   * @param spec the fractal to render
+   * @param format png or svg
+   * @return the bytes of the image
+   * @throws IllegalArgumentException if the format or a parameter of the FractalSpec is invalid
+   */
+  public byte[] render(FractalSpec spec, String format) {
+    if (!format.equals("png") && !format.equals("svg"))
+      throw new IllegalArgumentException("Unknown format: " + format);
+    if (spec.getNumLevels() > maxLevels)
+      throw new IllegalArgumentException("The number of levels must be at most " + maxLevels + ".");
+    if (spec.getImageWidth() > maxImageSize || spec.getImageHeight() > maxImageSize)
+      throw new IllegalArgumentException("The image width and height must be at most " + maxImageSize + ".");
+    if (spec.estimateLines() > maxLines)
+      throw new IllegalArgumentException("The fractal must have at most " + maxLines + " Lines.");
+
+    String key = format + ":" + spec;
+    CompletableFuture<byte[]> created = new CompletableFuture<>();
+    CompletableFuture<byte[]> existing;
+    synchronized (cache) {
+      //looking the key up makes it the most recently used
+      existing = cache.putIfAbsent(key, created);
+    }
+    FractalMetrics.getRegistry().recordCacheLookup("render", existing != null);
+    if (existing != null) {
+      cacheHits.incrementAndGet();
+      try {
+        return existing.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof Error)
+          throw (Error) e.getCause();
+        throw (RuntimeException) e.getCause();
+      }
+    }
+
+    //this request is the first one, so it renders the image for everyone waiting on it
+    try {
+      renderCount.incrementAndGet();
+      byte[] image = format.equals("png") ? FractalRenderer.renderPng(spec)
+                                          : FractalRenderer.renderSvg(spec).getBytes(StandardCharsets.UTF_8);
+      created.complete(image);
+      evictIfFull();
+      return image;
+    } catch (Throwable e) {
+      //failures, errors included, are not cached and release every request waiting on this one
+      synchronized (cache) {
+        cache.remove(key, created);
+      }
+      created.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Helper method to drop the least recently used finished images from the cache once it holds too many
+   */
+  private void evictIfFull() {
+    synchronized (cache) {
+      Iterator<CompletableFuture<byte[]>> iterator = cache.values().iterator();
+      while (cache.size() > maxCacheEntries && iterator.hasNext()) {
+        if (iterator.next().isDone())
+          iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Handles a request to /render
+   *
+   * @param exchange the HTTP request and response
+   * @throws IOException if the response can not be written
+   */
+  private void handleRender(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!exchange.getRequestMethod().equals("GET")) {
+        send(exchange, 405, "text/plain", "Only GET is supported.".getBytes(StandardCharsets.UTF_8));
+        return;
+      }
+      byte[] image;
+      String format;
+      try {
+        FractalSpec spec = FractalSpec.parse(exchange.getRequestURI().getRawQuery());
+        format = spec.get("format", "png");
+        image = render(spec, format);
+      } catch (IllegalArgumentException e) {
+        //NumberFormatException is an IllegalArgumentException as well
+        send(exchange, 400, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+        return;
+      } catch (RuntimeException | Error e) {
+        //answer any other failure, errors included, before the exchange is closed
+        send(exchange, 500, "text/plain", "The image could not be rendered.".getBytes(StandardCharsets.UTF_8));
+        if (e instanceof Error)
+          throw (Error) e;
+        return;
+      }
+      send(exchange, 200, format.equals("png") ? "image/png" : "image/svg+xml", image);
+    }
+  }
+
+  /**
+   * Helper method to send a complete response
+   *
+   * @param exchange the HTTP request and response
+   * @param status the status code
+   * @param contentType the content type of the body
+   * @param body the body of the response
+   * @throws IOException if the response can not be written
+   */
+  private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  /**
+   * Starts a FractalServer on localhost
+   *
+   * @param args an optional port number, 8080 by default
+   * @throws IOException if the server can not be started
+   */
+  public static void main(String[] args) throws IOException {
+    System.setProperty("java.awt.headless", "true");
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+    FractalServer server = new FractalServer(new InetSocketAddress("localhost", port), 256, 8);
+    FractalMetrics.registerMBean();
+    server.start();
+    System.out.println("Rendering fractals at http://localhost:" + server.getPort() + "/render");
+  }
+}
@@ -0,0 +1,172 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * JUnit test suite for the FractalServer class
+ * This class runs the server on localhost and tests rendering, errors, caching and request coalescing
+ */
+public class FractalServerClassTest {
+  /** The server under test */
+  private FractalServer server;
+
+  /** The client sending the requests */
+  private HttpClient client = HttpClient.newHttpClient();
+
+  /**
+   * Starts a server on a free port of localhost
+   */
+  @Before
+  public void setUp() throws Exception {
+    server = new FractalServer(new InetSocketAddress("localhost", 0), 16, 6);
+    server.start();
+  }
+
+  /**
+   * Stops the server
+   */
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  /**
+   * Helper method to send a GET request to the server
+   */
+  private HttpResponse<byte[]> get(String pathAndQuery) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + pathAndQuery)).build();
+    return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+  }
+
+  /**
+   * Test rendering a PNG image
+   */
+  @Test
+  public void testRenderPng() throws Exception {
+    HttpResponse<byte[]> response = get("/render?type=rectangle&width=300&height=200&levels=2&rotation=30");
+
+    assertEquals(200, response.statusCode());
+    assertEquals("image/png", response.headers().firstValue("Content-Type").get());
+    //verify the PNG signature
+    assertEquals((byte) 0x89, response.body()[0]);
+    assertEquals('P', response.body()[1]);
+    assertEquals('N', response.body()[2]);
+    assertEquals('G', response.body()[3]);
+  }
+
+  /**
+   * Test rendering an SVG document
+   */
+  @Test
+  public void testRenderSvg() throws Exception {
+    HttpResponse<byte[]> response = get("/render?type=snowflake&sides=5&side=100&levels=2&format=svg");
+
+    assertEquals(200, response.statusCode());
+    assertEquals("image/svg+xml", response.headers().firstValue("Content-Type").get());
+    String svg = new String(response.body(), StandardCharsets.UTF_8);
+    assertTrue(svg.startsWith("<svg"));
+    //one move per Line of the fractal
+    assertEquals(5 * 16, svg.chars().filter(c -> c == 'M').count());
+  }
+
+  /**
+   * Test invalid requests
+   * They should be answered with status 400 and should not be cached
+   */
+  @Test
+  public void testInvalidRequests() throws Exception {
+    assertEquals(400, get("/render?type=hexagon").statusCode());
+    assertEquals(400, get("/render?type=snowflake&sides=2").statusCode());
+    assertEquals(400, get("/render?type=triangle&levels=abc").statusCode());
+    assertEquals(400, get("/render?type=triangle&levels=7").statusCode());
+    assertEquals(400, get("/render?type=triangle&format=gif").statusCode());
+    assertEquals(400, get("/render?type=triangle&imageWidth=100000&imageHeight=100000").statusCode());
+    assertEquals(400, get("/render?type=snowflake&sides=100000&levels=6").statusCode());
+    assertEquals(0, server.getCacheHits());
+  }
+
+  /**
+   * Test that the number of Lines of a FractalSpec is bounded from above
+   */
+  @Test
+  public void testLineBound() {
+    for (String query : new String[] {"type=triangle&levels=4", "type=snowflake&sides=7&levels=3", "type=rectangle&levels=3"}) {
+      FractalSpec spec = FractalSpec.parse(query);
+      assertTrue(query, spec.createFractal().getLines().length <= spec.estimateLines());
+    }
+  }
+
+  /**
+   * Test that repeated requests are served from the cache
+   */
+  @Test
+  public void testCache() throws Exception {
+    get("/render?type=triangle&levels=3");
+    get("/render?levels=3&type=triangle");
+
+    assertEquals(1, server.getRenderCount());
+    assertEquals(1, server.getCacheHits());
+  }
+
+  /**
+   * Test that a full cache drops the least recently used image
+   */
+  @Test
+  public void testEviction() {
+    //the cache of the server holds 16 images
+    for (int i = 0; i < 16; i++)
+      server.render(FractalSpec.parse("type=triangle&levels=0&imageWidth=" + (10 + i)), "svg");
+    server.render(FractalSpec.parse("type=triangle&levels=0&imageWidth=10"), "svg");
+    server.render(FractalSpec.parse("type=triangle&levels=0&imageWidth=100"), "svg");
+    assertEquals(17, server.getRenderCount());
+
+    //the image of width 11 was the least recently used, so it is the only one rendered again
+    server.render(FractalSpec.parse("type=triangle&levels=0&imageWidth=10"), "svg");
+    server.render(FractalSpec.parse("type=triangle&levels=0&imageWidth=100"), "svg");
+    assertEquals(17, server.getRenderCount());
+    server.render(FractalSpec.parse("type=triangle&levels=0&imageWidth=11"), "svg");
+    assertEquals(18, server.getRenderCount());
+  }
+
+  /**
+   * Test that concurrent identical requests are coalesced into a single rendering
+   */
+  @Test
+  public void testCoalescing() throws Exception {
+    ArrayList<Future<HttpResponse<byte[]>>> responses = new ArrayList<>();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < 16; i++)
+        responses.add(executor.submit(() -> get("/render?type=rectangle&levels=4")));
+    }
+
+    byte[] first = responses.get(0).get().body();
+    for (Future<HttpResponse<byte[]>> response : responses) {
+      assertEquals(200, response.get().statusCode());
+      assertArrayEquals(first, response.get().body());
+    }
+    assertEquals(1, server.getRenderCount());
+    assertEquals(15, server.getCacheHits());
+  }
+
+  /**
+   * Test the load-test client against the server
+   */
+  @Test
+  public void testLoadClient() throws Exception {
+    URI uri = URI.create("http://localhost:" + server.getPort() + "/render?type=snowflake&levels=3");
+    FractalLoadClient.Result result = new FractalLoadClient(uri, 8, 64).run();
+
+    assertEquals(0, result.getNumFailures());
+    assertTrue(result.getRequestsPerSecond() > 0);
+    assertTrue(result.getLatencyMillis(50) <= result.getLatencyMillis(99));
+  }
+}
@@ -0,0 +1,244 @@
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The FractalSpec class describes a fractal to render as a set of named parameters
+ * It is parsed from strings such as "type=snowflake&sides=5&side=100&levels=3"
+ * and creates the matching fractal, the same way the GUI applications do
+ *
+ * Recognized parameters:
+ * type (triangle, snowflake or rectangle), levels, rotation (degree), imageWidth, imageHeight,
+ * x1, y1, x2, y2, x3, y3 for triangles, sides and side for snowflakes, width and height for rectangles
+ */
+public final class FractalSpec {
+
+  /** The parameters of the fractal, sorted by name */
+  private final TreeMap<String, String> params;
+
+  /**
+   * Creates a FractalSpec from the given parameters
+   *
+   * @param params the parameters of the fractal. Must include a type
+   * @throws IllegalArgumentException if the type is missing or unknown
+   */
+  public FractalSpec(Map<String, String> params) {
+    this.params = new TreeMap<>(params);
+    String type = getType();
+    if (!type.equals("triangle") && !type.equals("snowflake") && !type.equals("rectangle"))
+      throw new IllegalArgumentException("Unknown fractal type: " + type);
+  }
+
+  /**
+   * Parses a FractalSpec from a query string of name=value pairs separated by '&'
+   *
+   * @param query the query string
+   * @return the parsed FractalSpec
+   * @throws IllegalArgumentException if a pair is malformed or the type is missing or unknown
+   */
+  public static FractalSpec parse(String query) {
+    TreeMap<String, String> params = new TreeMap<>();
+    if (query != null && !query.isEmpty()) {
+      for (String pair : query.split("&")) {
+        int equals = pair.indexOf('=');
+        if (equals <= 0)
+          throw new IllegalArgumentException("Malformed parameter: " + pair);
+        params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                   URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+      }
+    }
+    return new FractalSpec(params);
+  }
+
+  /**
+   * Retrieves the type of the fractal
+   *
+   * @return triangle, snowflake or rectangle
+   */
+  public String getType() {
+    String type = params.get("type");
+    if (type == null)
+      throw new IllegalArgumentException("The fractal type is missing.");
+    return type.toLowerCase();
+  }
+
+  /**
+   * Retrieves the number of levels of the fractal
+   *
+   * @return the number of levels, 1 by default
+   */
+  public int getNumLevels() {
+    return getInt("levels", 1);
+  }
+
+  /**
+   * Retrieves the rotation of the fractal
+   *
+   * @return the rotation in degree, 0 by default
+   */
+  public double getRotation() {
+    return getDouble("rotation", 0);
+  }
+
+  /**
+   * Retrieves the width of the image to render
+   *
+   * @return the image width in pixels, 500 by default
+   */
+  public int getImageWidth() {
+    return getInt("imageWidth", 500);
+  }
+
+  /**
+   * Retrieves the height of the image to render
+   *
+   * @return the image height in pixels, 500 by default
+   */
+  public int getImageHeight() {
+    return getInt("imageHeight", 500);
+  }
+
+  /**
+   * Retrieves a parameter as a string
+   *
+   * @param name the name of the parameter
+   * @param defaultValue the value to return if the parameter is missing
+   * @return the value of the parameter
+   */
+  public String get(String name, String defaultValue) {
+    return params.getOrDefault(name, defaultValue);
+  }
+
+  /**
+   * Retrieves a parameter as a double
+   *
+   * @param name the name of the parameter
+   * @param defaultValue the value to return if the parameter is missing
+   * @return the value of the parameter
+   * @throws NumberFormatException if the parameter is not a number
+   */
+  public double getDouble(String name, double defaultValue) {
+    String value = params.get(name);
+    return value == null ? defaultValue : Double.parseDouble(value);
+  }
+
+  /**
+   * Retrieves a parameter as an int
+   *
+   * @param name the name of the parameter
+   * @param defaultValue the value to return if the parameter is missing
+   * @return the value of the parameter
+   * @throws NumberFormatException if the parameter is not an integer
+   */
+  public int getInt(String name, int defaultValue) {
+    String value = params.get(name);
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+
+  /**
+   * Creates a copy of this FractalSpec without some of its parameters
+   *
+   * @param names the names of the parameters to leave out
+   * @return the new FractalSpec
+   */
+  public FractalSpec without(String... names) {
+    TreeMap<String, String> copy = new TreeMap<>(params);
+    for (String name : names)
+      copy.remove(name);
+    return new FractalSpec(copy);
+  }
+
+  /**
+   * Creates the fractal described by this FractalSpec, centered in the image
+   * The rotation is not applied, so that renderers can apply it as a transform
+   *
+   * @return the new fractal
+   * @throws IllegalArgumentException if a parameter is out of range
+   */
+  public Fractal<?> createFractal() {
+    Point center = new Point(getImageWidth() / 2.0, getImageHeight() / 2.0);
+    int numLevels = getNumLevels();
+
+    switch (getType()) {
+      case "triangle":
+        Triangle triangle = new Triangle(new Point(getDouble("x1", 0), getDouble("y1", 500)),
+                                         new Point(getDouble("x2", 250), getDouble("y2", 0)),
+                                         new Point(getDouble("x3", 500), getDouble("y3", 500)));
+        return new TriangleFractal(triangle, numLevels);
+      case "snowflake":
+        int numSides = getInt("sides", 3);
+        double sideLength = getDouble("side", 100);
+        //choose which shape will be the base shape using the number of sides
+        if (numSides < 3)
+          throw new IllegalArgumentException("The number of sides must be at least 3.");
+        else if (numSides == 3)
+          return new SnowflakeFractal<EquilateralTriangle>(new EquilateralTriangle(center, sideLength), numLevels);
+        else if (numSides == 4)
+          return new SnowflakeFractal<Square>(new Square(center, sideLength), numLevels);
+        else
+          return new SnowflakeFractal<NGon>(new NGon(center, sideLength, numSides), numLevels);
+      default:
+        double width = getDouble("width", 100);
+        double height = getDouble("height", 100);
+        //determine the base shape: Square if width == height, otherwise Rectangle
+        Rectangle baseShape = width == height ? new Square(center, width) : new Rectangle(center, width, height);
+        return new RectangleFractal(baseShape, numLevels);
+    }
+  }
+
+  /**
+   * Bounds the number of Lines of the fractal described by this FractalSpec, without creating it
+   * The bound grows with the number of Lines of every smallest triangle, side or rectangle, so it is
+   * cheap enough to check before accepting a request
+   *
+   * @return an upper bound of the number of Lines, which may be infinite
+   * @throws IllegalArgumentException if a parameter is out of range
+   */
+  public double estimateLines() {
+    int numLevels = getNumLevels();
+    switch (getType()) {
+      case "triangle":
+        return 3 * Math.pow(3, numLevels);
+      case "snowflake":
+        return Math.max(3, getInt("sides", 3)) * Math.pow(4, numLevels);
+      default:
+        return 4 * Math.pow(8, numLevels);
+    }
+  }
+
+  /**
+   * Returns the parameters in a canonical form, sorted by name
+   * Two FractalSpecs with the same parameters have the same String
+   *
+   * @return the canonical String of the parameters
+   */
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (Map.Entry<String, String> entry : params.entrySet()) {
+      if (builder.length() > 0)
+        builder.append('&');
+      builder.append(entry.getKey()).append('=').append(entry.getValue());
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Changes the behavior of equals
+   * Two FractalSpecs are equal if they have the same parameters
+   *
+   * @return true if the two FractalSpecs are equal; false if not
+   */
+  public boolean equals(Object o) {
+    return o instanceof FractalSpec && ((FractalSpec) o).params.equals(params);
+  }
+
+  /**
+   * Returns a hash code consistent with equals
+   *
+   * @return the hash code of the parameters
+   */
+  public int hashCode() {
+    return params.hashCode();
+  }
+}
@@ -0,0 +1,209 @@
+import java.util.ArrayDeque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * The FractalSpliterator class walks the recursion tree of an IteratedFunctionSystem lazily
+ * Splitting hands whole subtrees to the new Spliterator, so parallel streams need no intermediate collection
+ *
+ * @param <E> the type of element produced (Point or Line)
+ */
+public abstract class FractalSpliterator<E> implements Spliterator<E>, GeometrySink {
+
+  /** The system that knows how to expand the nodes */
+  protected final IteratedFunctionSystem system;
+
+  /** The subtrees that have not been visited yet, in encounter order */
+  private final ArrayDeque<double[]> nodes;
+
+  /** Elements emitted by already expanded nodes but not yet consumed */
+  protected final ArrayDeque<E> ready = new ArrayDeque<>();
+
+  /** Nodes already expanded, kept to hold the children of the next nodes expanded */
+  private final ArrayDeque<double[]> spare = new ArrayDeque<>();
+
+  /** The children of the last node expanded, before they are queued */
+  private final double[][] children;
+
+  /** A consumer that buffers emitted elements in the ready queue */
+  private final Consumer<E> buffer = ready::add;
+
+  /** The consumer the emitted elements are currently routed to */
+  protected Consumer<? super E> target;
+
+  /**
+   * Creates a Spliterator over the given subtrees of a fractal
+   *
+   * @param system the system that expands the nodes
+   * @param nodes the subtrees to traverse, in encounter order
+   */
+  protected FractalSpliterator(IteratedFunctionSystem system, ArrayDeque<double[]> nodes) {
+    this.system = system;
+    this.nodes = nodes;
+    children = new double[system.getNumMaps()][];
+  }
+
+  /**
+   * Creates a Spliterator of the same kind over the given subtrees
+   *
+   * @param nodes the subtrees covered by the new Spliterator
+   * @return the new Spliterator
+   */
+  protected abstract FractalSpliterator<E> create(ArrayDeque<double[]> nodes);
+
+  /**
+   * Emits the next element, expanding subtrees until one becomes available
+   *
+   * @param action the action to perform on the element
+   * @return false if no elements remain; true otherwise
+   */
+  public boolean tryAdvance(Consumer<? super E> action) {
+    target = buffer;
+    while (ready.isEmpty()) {
+      double[] node = nodes.pollFirst();
+      if (node == null)
+        return false;
+      //push the children back to front so that the first child is visited next
+      if (expand(node)) {
+        for (int i = children.length - 1; i >= 0; i--)
+          nodes.addFirst(children[i]);
+      }
+    }
+    action.accept(ready.pollFirst());
+    return true;
+  }
+
+  /**
+   * Emits all remaining elements by generating the subtrees depth first, in the per-thread frames of the system
+   *
+   * @param action the action to perform on each element
+   */
+  public void forEachRemaining(Consumer<? super E> action) {
+    while (!ready.isEmpty())
+      action.accept(ready.pollFirst());
+    target = action;
+    double[] node;
+    while ((node = nodes.pollFirst()) != null)
+      system.generate(node, this);
+  }
+
+  /**
+   * Helper method to expand a node into the children array, reusing the nodes already expanded
+   * The node itself becomes a spare one, so a walk allocates nodes only until it reaches its deepest level
+   *
+   * @param node the node to expand, which is no longer queued
+   * @return true if the children array holds the children of the node; false if the node is a leaf
+   */
+  private boolean expand(double[] node) {
+    boolean inner = IteratedFunctionSystem.getLevels(node) > 0;
+    if (inner) {
+      for (int k = 0; k < children.length; k++)
+        children[k] = spare.isEmpty() ? IteratedFunctionSystem.newNode() : spare.pollLast();
+    }
+    system.expand(node, this, children);
+    spare.addLast(node);
+    return inner;
+  }
+
+  /**
+   * Splits off the first half of the remaining subtrees
+   * If only one subtree remains it is expanded first, so that its children can be shared out
+   *
+   * @return a Spliterator covering a prefix of the elements, or null if this one can not be split
+   */
+  public Spliterator<E> trySplit() {
+    target = buffer;
+    while (nodes.size() == 1 && IteratedFunctionSystem.getLevels(nodes.peekFirst()) > 0) {
+      expand(nodes.pollFirst());
+      for (double[] child : children)
+        nodes.addLast(child);
+    }
+    if (nodes.size() < 2)
+      return null;
+
+    ArrayDeque<double[]> prefix = new ArrayDeque<>();
+    for (int i = nodes.size() / 2; i > 0; i--)
+      prefix.addLast(nodes.pollFirst());
+    FractalSpliterator<E> split = create(prefix);
+
+    //elements already emitted come before every remaining subtree
+    split.ready.addAll(ready);
+    ready.clear();
+    return split;
+  }
+
+  /**
+   * Estimates the number of elements left from the size of the remaining subtrees
+   *
+   * @return the estimated number of remaining elements
+   */
+  public long estimateSize() {
+    double size = ready.size();
+    for (double[] node : nodes)
+      size += Math.pow(system.getNumMaps(), IteratedFunctionSystem.getLevels(node));
+    return size >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) size;
+  }
+
+  /**
+   * Returns the characteristics of the Spliterator
+   *
+   * @return the characteristics ORDERED, NONNULL and IMMUTABLE
+   */
+  public int characteristics() {
+    return ORDERED | NONNULL | IMMUTABLE;
+  }
+
+  /**
+   * The Points class is a FractalSpliterator producing the Points of a fractal
+   */
+  public static class Points extends FractalSpliterator<Point> {
+
+    /**
+     * Creates a Spliterator over the Points of the given subtrees
+     *
+     * @param system the system that expands the nodes
+     * @param nodes the subtrees to traverse
+     */
+    public Points(IteratedFunctionSystem system, ArrayDeque<double[]> nodes) {
+      super(system, nodes);
+    }
+
+    protected FractalSpliterator<Point> create(ArrayDeque<double[]> nodes) {
+      return new Points(system, nodes);
+    }
+
+    public void point(double x, double y) {
+      target.accept(new Point(x, y));
+    }
+
+    public void line(double x1, double y1, double x2, double y2) {
+    }
+  }
+
+  /**
+   * The Lines class is a FractalSpliterator producing the Lines of a fractal
+   */
+  public static class Lines extends FractalSpliterator<Line> {
+
+    /**
+     * Creates a Spliterator over the Lines of the given subtrees
+     *
+     * @param system the system that expands the nodes
+     * @param nodes the subtrees to traverse
+     */
+    public Lines(IteratedFunctionSystem system, ArrayDeque<double[]> nodes) {
+      super(system, nodes);
+    }
+
+    protected FractalSpliterator<Line> create(ArrayDeque<double[]> nodes) {
+      return new Lines(system, nodes);
+    }
+
+    public void point(double x, double y) {
+    }
+
+    public void line(double x1, double y1, double x2, double y2) {
+      target.accept(new Line(x1, y1, x2, y2));
+    }
+  }
+}
@@ -0,0 +1,32 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The FractalTransformEvent class is a Java Flight Recorder event covering a transform of a fractal,
+ * such as rotate() or setCenter()
+ */
+@Name("fractal.Transform")
+@Label("Fractal Transform")
+@Category("Fractal")
+@Description("Rotation or translation of the Points of a fractal")
+public class FractalTransformEvent extends Event {
+
+  /** The simple class name of the fractal */
+  @Label("Fractal Type")
+  public String fractalType;
+
+  /** The number of levels of the fractal */
+  @Label("Levels")
+  public int numLevels;
+
+  /** The transform applied, for example rotate or setCenter */
+  @Label("Operation")
+  public String operation;
+
+  /** The number of Points transformed */
+  @Label("Points")
+  public long points;
+}
@@ -0,0 +1,181 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * The GenerationRun class collects the metrics of one generation of a fractal
+ * A run is started before getPoints() or getLines() generates the fractal and finished afterwards,
+ * then recorded into the FractalMetrics registry. A run is used by a single thread.
+ * Runs also emit a FractalGenerationEvent to Java Flight Recorder
+ */
+public class GenerationRun {
+
+  /** The bean measuring the memory allocated by the current thread, or null if not supported */
+  private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+  /** The simple class name of the fractal */
+  private final String fractalType;
+
+  /** The number of levels of the fractal */
+  private final int numLevels;
+
+  /** The time the run started, in nanoseconds */
+  private final long startNanos;
+
+  /** The bytes allocated by the thread when the run started */
+  private final long startAllocatedBytes;
+
+  /** The wall time of the run in nanoseconds, set when the run finishes */
+  private long elapsedNanos;
+
+  /** The bytes allocated during the run, set when the run finishes */
+  private long allocatedBytes;
+
+  /** The number of vertices emitted */
+  private long vertices;
+
+  /** The number of edges emitted */
+  private long edges;
+
+  /** The flight recorder event covering the run */
+  private final FractalGenerationEvent event = new FractalGenerationEvent();
+
+  /**
+   * Starts a run for a fractal
+   *
+   * @param fractalType the simple class name of the fractal
+   * @param numLevels the number of levels of the fractal
+   */
+  public GenerationRun(String fractalType, int numLevels) {
+    this.fractalType = fractalType;
+    this.numLevels = numLevels;
+    this.startAllocatedBytes = currentThreadAllocatedBytes();
+    this.startNanos = System.nanoTime();
+    event.begin();
+  }
+
+  /**
+   * Finishes the run, measuring its wall time and allocated bytes
+   */
+  public void finish() {
+    elapsedNanos = System.nanoTime() - startNanos;
+    long allocated = currentThreadAllocatedBytes();
+    allocatedBytes = allocated < 0 || startAllocatedBytes < 0 ? 0 : allocated - startAllocatedBytes;
+    
+    event.end();
+    if (event.shouldCommit()) {
+      event.fractalType = fractalType;
+      event.numLevels = numLevels;
+      event.vertices = vertices;
+      event.edges = edges;
+      event.allocatedBytes = allocatedBytes;
+      event.commit();
+    }
+  }
+
+  /**
+   * Counts emitted vertices
+   *
+   * @param count the number of vertices emitted
+   */
+  public void countVertices(long count) {
+    vertices += count;
+  }
+
+  /**
+   * Counts emitted edges
+   *
+   * @param count the number of edges emitted
+   */
+  public void countEdges(long count) {
+    edges += count;
+  }
+
+  /**
+   * Retrieves the simple class name of the fractal
+   *
+   * @return the type of the fractal
+   */
+  public String getFractalType() {
+    return fractalType;
+  }
+
+  /**
+   * Retrieves the number of levels of the fractal
+   *
+   * @return the number of levels
+   */
+  public int getNumLevels() {
+    return numLevels;
+  }
+
+  /**
+   * Retrieves the wall time of the run
+   *
+   * @return the wall time in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Retrieves the bytes allocated by the thread during the run
+   *
+   * @return the allocated bytes, or 0 if the JVM can not measure them
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  /**
+   * Retrieves the number of vertices emitted
+   *
+   * @return the number of vertices
+   */
+  public long getVertices() {
+    return vertices;
+  }
+
+  /**
+   * Retrieves the number of edges emitted
+   *
+   * @return the number of edges
+   */
+  public long getEdges() {
+    return edges;
+  }
+
+  /**
+   * Returns a summary of the run
+   *
+   * @return the summary
+   */
+  public String toString() {
+    return String.format("%s level %d: %d vertices, %d edges, %.3f ms, %d bytes",
+                         fractalType, numLevels, vertices, edges, elapsedNanos / 1e6, allocatedBytes);
+  }
+
+  /**
+   * Retrieves the bytes allocated so far by the current thread
+   *
+   * @return the allocated bytes, or -1 if the JVM can not measure them
+   */
+  public static long currentThreadAllocatedBytes() {
+    return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+  }
+
+  /**
+   * Helper method to find the bean measuring allocations per thread
+   *
+   * @return the bean, or null if the JVM does not support allocation measurement
+   */
+  private static com.sun.management.ThreadMXBean allocationBean() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+      if (threads.isThreadAllocatedMemorySupported()) {
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+      }
+    }
+    return null;
+  }
+}
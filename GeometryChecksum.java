@@ -0,0 +1,212 @@
+/**
+ * The GeometryChecksum class sums up the vertices and edges of a fractal into a short checksum
+ * The checksum does not depend on the order of the vertices and edges or on the direction of an edge,
+ * so generators emitting the same geometry in different orders have the same checksum.
+ *
+ * Coordinates are snapped to a grid whose cells are as wide as the tolerance, and every snapped vertex and edge
+ * is hashed and added to a sum. A coordinate lying just on a cell border could snap to either side of it,
+ * so the sums are kept for two grids shifted by half a cell, and two checksums match if either grid agrees.
+ * Coordinates differing by less than a small fraction of the tolerance match, and coordinates differing
+ * by more than the tolerance do not
+ */
+public class GeometryChecksum implements GeometrySink {
+
+  /** The default tolerance, the same as the one of Point.equals() */
+  public static final double DEFAULT_TOLERANCE = 1e-6;
+
+  /** The width of a grid cell */
+  private final double tolerance;
+
+  /** The number of vertices and edges added */
+  private long vertexCount;
+  private long edgeCount;
+
+  /** The sums of the hashes of the vertices and edges, one for each grid */
+  private final long[] vertexSums = new long[2];
+  private final long[] edgeSums = new long[2];
+
+  /**
+   * Creates an empty GeometryChecksum with the default tolerance
+   */
+  public GeometryChecksum() {
+    this(DEFAULT_TOLERANCE);
+  }
+
+  /**
+   * Creates an empty GeometryChecksum
+   *
+   * @param tolerance the width of a grid cell. Must be positive
+   */
+  public GeometryChecksum(double tolerance) {
+    if (!(tolerance > 0))
+      throw new IllegalArgumentException("The tolerance must be positive.");
+    this.tolerance = tolerance;
+  }
+
+  /**
+   * Creates the GeometryChecksum of Points and Lines, with the default tolerance
+   *
+   * @param points the vertices
+   * @param lines the edges
+   * @return the checksum
+   */
+  public static GeometryChecksum of(Point[] points, Line[] lines) {
+    GeometryChecksum checksum = new GeometryChecksum();
+    for (Point point : points)
+      checksum.point(point.getX(), point.getY());
+    for (Line line : lines)
+      checksum.line(line);
+    return checksum;
+  }
+
+  /**
+   * Adds a vertex
+   *
+   * @param x the x coordinate of the vertex
+   * @param y the y coordinate of the vertex
+   */
+  public void point(double x, double y) {
+    vertexCount++;
+    for (int grid = 0; grid < 2; grid++)
+      vertexSums[grid] += vertexHash(x, y, grid);
+  }
+
+  /**
+   * Adds a vertex
+   *
+   * @param point the vertex
+   */
+  public void point(Point point) {
+    point(point.getX(), point.getY());
+  }
+
+  /**
+   * Adds an edge, in either direction
+   *
+   * @param x1 the x coordinate of one end
+   * @param y1 the y coordinate of one end
+   * @param x2 the x coordinate of the other end
+   * @param y2 the y coordinate of the other end
+   */
+  public void line(double x1, double y1, double x2, double y2) {
+    edgeCount++;
+    for (int grid = 0; grid < 2; grid++) {
+      long first = vertexHash(x1, y1, grid);
+      long second = vertexHash(x2, y2, grid);
+      //both terms are symmetric in the two ends
+      edgeSums[grid] += mix(first + second) + mix(first ^ second);
+    }
+  }
+
+  /**
+   * Adds an edge, in either direction
+   *
+   * @param line the edge
+   */
+  public void line(Line line) {
+    line(line.getFirstPoint().getX(), line.getFirstPoint().getY(), line.getSecondPoint().getX(), line.getSecondPoint().getY());
+  }
+
+  /**
+   * Adds the vertices and edges of another GeometryChecksum with the same tolerance
+   * This lets parallel streams sum up their parts separately
+   *
+   * @param other the checksum to add
+   * @throws IllegalArgumentException if the tolerances differ
+   */
+  public void combine(GeometryChecksum other) {
+    if (other.tolerance != tolerance)
+      throw new IllegalArgumentException("Only checksums with the same tolerance can be combined.");
+    vertexCount += other.vertexCount;
+    edgeCount += other.edgeCount;
+    for (int grid = 0; grid < 2; grid++) {
+      vertexSums[grid] += other.vertexSums[grid];
+      edgeSums[grid] += other.edgeSums[grid];
+    }
+  }
+
+  /**
+   * Retrieves the number of vertices added
+   *
+   * @return the number of vertices
+   */
+  public long getVertexCount() {
+    return vertexCount;
+  }
+
+  /**
+   * Retrieves the number of edges added
+   *
+   * @return the number of edges
+   */
+  public long getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * Checks whether the vertices of two checksums match
+   *
+   * @param other the other checksum
+   * @return true if both have the same vertices within the tolerance; false if not
+   */
+  public boolean matchesVertices(GeometryChecksum other) {
+    return tolerance == other.tolerance && vertexCount == other.vertexCount
+      && (vertexSums[0] == other.vertexSums[0] || vertexSums[1] == other.vertexSums[1]);
+  }
+
+  /**
+   * Checks whether the edges of two checksums match
+   *
+   * @param other the other checksum
+   * @return true if both have the same edges within the tolerance; false if not
+   */
+  public boolean matchesEdges(GeometryChecksum other) {
+    return tolerance == other.tolerance && edgeCount == other.edgeCount
+      && (edgeSums[0] == other.edgeSums[0] || edgeSums[1] == other.edgeSums[1]);
+  }
+
+  /**
+   * Checks whether the vertices and the edges of two checksums match
+   *
+   * @param other the other checksum
+   * @return true if both have the same vertices and edges within the tolerance; false if not
+   */
+  public boolean matches(GeometryChecksum other) {
+    return matchesVertices(other) && matchesEdges(other);
+  }
+
+  /**
+   * Helper method to hash a vertex snapped to a grid
+   *
+   * @param x the x coordinate of the vertex
+   * @param y the y coordinate of the vertex
+   * @param grid 0 for the grid through the origin, 1 for the grid shifted by half a cell
+   * @return the hash of the cell holding the vertex
+   */
+  private long vertexHash(double x, double y, int grid) {
+    long cellX = (long) Math.floor(x / tolerance + 0.5 * grid);
+    long cellY = (long) Math.floor(y / tolerance + 0.5 * grid);
+    return mix(mix(cellX) + cellY);
+  }
+
+  /**
+   * Helper method to scramble the bits of a value, with the finalizer of SplitMix64
+   *
+   * @param value the value
+   * @return the scrambled value
+   */
+  private static long mix(long value) {
+    value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+    value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+    return value ^ (value >>> 31);
+  }
+
+  /**
+   * Returns the counts and the sums of the first grid
+   *
+   * @return the checksum in the format "V vertices, E edges, vertexSum/edgeSum"
+   */
+  public String toString() {
+    return String.format("%d vertices, %d edges, %016x/%016x", vertexCount, edgeCount, vertexSums[0], edgeSums[0]);
+  }
+}
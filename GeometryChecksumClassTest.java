@@ -0,0 +1,389 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * JUnit test suite for the GeometryChecksum class
+ * Besides checking the checksum itself, this class is the golden-output harness of the fast generation paths:
+ * for every fractal type and level, each parallel, primitive, streaming and cached path must produce
+ * the geometry of a reference generation. The references are plain recursions over Points kept in this
+ * class, since the getPoints() and getLines() of every fractal share their generation with other paths:
+ * the iterated function system for SnowflakeFractal and RectangleFractal, and the mesh for TriangleFractal
+ */
+public class GeometryChecksumClassTest {
+
+  /** The deepest level checked for each fractal type, keeping the reference generation quick */
+  private static final int TRIANGLE_LEVELS = 5;
+  private static final int SNOWFLAKE_LEVELS = 5;
+  private static final int RECTANGLE_LEVELS = 3;
+
+  /**
+   * Test that the checksum ignores order and direction and notices missing or moved geometry
+   */
+  @Test
+  public void testChecksum() {
+    GeometryChecksum forward = new GeometryChecksum();
+    forward.point(1, 2);
+    forward.point(3.5, -4);
+    forward.line(1, 2, 3.5, -4);
+    forward.line(3.5, -4, 0, 0);
+
+    GeometryChecksum backward = new GeometryChecksum();
+    backward.line(0, 0, 3.5, -4);
+    backward.line(3.5, -4, 1, 2);
+    backward.point(3.5, -4);
+    backward.point(1, 2);
+    assertTrue(forward.matches(backward));
+    assertEquals(2, backward.getVertexCount());
+    assertEquals(2, backward.getEdgeCount());
+
+    //differences far below the tolerance match, even across a cell border of one of the grids
+    GeometryChecksum close = new GeometryChecksum();
+    close.point(1 + 1e-12, 2 - 1e-12);
+    close.point(3.5, -4 + 1e-12);
+    assertTrue(forward.matchesVertices(close));
+    GeometryChecksum border = new GeometryChecksum();
+    border.point(1, 2);
+    border.point(3.5 + 5e-7 - 1e-13, -4);
+    GeometryChecksum otherSide = new GeometryChecksum();
+    otherSide.point(1, 2);
+    otherSide.point(3.5 + 5e-7 + 1e-13, -4);
+    assertTrue(border.matchesVertices(otherSide));
+
+    //moved, missing and extra geometry does not match
+    GeometryChecksum moved = new GeometryChecksum();
+    moved.point(1, 2);
+    moved.point(3.5, -4 + 1e-5);
+    assertFalse(forward.matchesVertices(moved));
+    GeometryChecksum missing = new GeometryChecksum();
+    missing.point(1, 2);
+    assertFalse(forward.matchesVertices(missing));
+    GeometryChecksum extra = new GeometryChecksum();
+    extra.line(1, 2, 3.5, -4);
+    extra.line(3.5, -4, 0, 0);
+    extra.line(3.5, -4, 0, 0);
+    assertFalse(forward.matchesEdges(extra));
+
+    //a checksum summed in parts matches one summed at once
+    GeometryChecksum parts = new GeometryChecksum();
+    parts.point(1, 2);
+    parts.line(1, 2, 3.5, -4);
+    GeometryChecksum rest = new GeometryChecksum();
+    rest.point(3.5, -4);
+    rest.line(3.5, -4, 0, 0);
+    parts.combine(rest);
+    assertTrue(forward.matches(parts));
+  }
+
+  /**
+   * Test the fast paths of TriangleFractal, including the mesh, against its reference generation
+   */
+  @Test
+  public void testTriangleFastPaths() {
+    for (int levels = 0; levels <= TRIANGLE_LEVELS; levels++) {
+      int numLevels = levels;
+      Supplier<TriangleFractal> create = () ->
+        new TriangleFractal(new Triangle(new Point(10, 480), new Point(250, 15), new Point(470, 470)), numLevels);
+      GeometryChecksum reference = triangleReference(create.get().getBaseShape(), numLevels);
+      List<String> failures = checkCommonPaths(create, reference);
+
+      TriangleFractal fractal = create.get();
+      GeometryChecksum mesh = new GeometryChecksum();
+      fractal.getMesh().replay(mesh);
+      check(failures, "mesh", reference, mesh);
+      assertEquals("level " + levels + ": " + failures, 0, failures.size());
+    }
+  }
+
+  /**
+   * Test the fast paths of SnowflakeFractal against its reference generation, for every kind of base shape
+   */
+  @Test
+  public void testSnowflakeFastPaths() {
+    List<Supplier<Polygon>> shapes = new ArrayList<>();
+    shapes.add(() -> new EquilateralTriangle(new Point(250, 250), 300.0));
+    shapes.add(() -> new Square(new Point(-40, 75), 120.0));
+    shapes.add(() -> new NGon(new Point(250, 250), 90.0, 7));
+
+    for (Supplier<Polygon> shape : shapes) {
+      for (int levels = 0; levels <= SNOWFLAKE_LEVELS; levels++) {
+        int numLevels = levels;
+        Supplier<SnowflakeFractal<?>> create = () -> snowflake(shape.get(), numLevels);
+        GeometryChecksum reference = snowflakeReference(shape.get(), numLevels);
+        List<String> failures = checkCommonPaths(create, reference);
+
+        SnowflakeFractal<?> fractal = create.get();
+        fractal.setParallelEdges(true);
+        check(failures, "parallel edges", reference, GeometryChecksum.of(fractal.getPoints(), fractal.getLines()));
+
+        fractal = create.get();
+        fractal.setSymmetric(true);
+        check(failures, "symmetric", reference, GeometryChecksum.of(fractal.getPoints(), fractal.getLines()));
+
+        //the packed Points have no edges, so only their vertices are compared
+        GeometryChecksum packed = new GeometryChecksum();
+        double[] coordinates = create.get().getPackedPoints();
+        for (int i = 0; i < coordinates.length; i += 2)
+          packed.point(coordinates[i], coordinates[i + 1]);
+        if (!reference.matchesVertices(packed))
+          failures.add("packed points: " + packed);
+        assertEquals(shape.get().getClass().getSimpleName() + " level " + levels + ": " + failures, 0, failures.size());
+      }
+    }
+  }
+
+  /**
+   * Test the fast paths of RectangleFractal against its reference generation
+   */
+  @Test
+  public void testRectangleFastPaths() {
+    for (int levels = 0; levels <= RECTANGLE_LEVELS; levels++) {
+      int numLevels = levels;
+      List<Supplier<RectangleFractal>> creators = new ArrayList<>();
+      creators.add(() -> new RectangleFractal(new Rectangle(new Point(250, 250), 360.0, 150.0), numLevels));
+      creators.add(() -> new RectangleFractal(new Square(new Point(100, -50), 81.0), numLevels));
+      for (Supplier<RectangleFractal> create : creators) {
+        List<String> failures = checkCommonPaths(create, rectangleReference(create.get().getBaseShape(), numLevels));
+        assertEquals("level " + levels + ": " + failures, 0, failures.size());
+      }
+    }
+  }
+
+  /**
+   * Test that parallel transforms move and rotate a fractal like sequential ones
+   */
+  @Test
+  public void testParallelTransforms() {
+    List<Fractal<?>> sequential = new ArrayList<>();
+    List<Fractal<?>> parallel = new ArrayList<>();
+    for (List<Fractal<?>> fractals : List.of(sequential, parallel)) {
+      fractals.add(new TriangleFractal(new Triangle(new Point(0, 500), new Point(250, 0), new Point(500, 500)), 4));
+      fractals.add(snowflake(new Square(new Point(0, 0), 100.0), 8));
+      fractals.add(new RectangleFractal(new Rectangle(new Point(250, 250), 300.0, 120.0), 3));
+    }
+    for (Fractal<?> fractal : parallel)
+      fractal.setParallelTransforms(true);
+    for (int i = 0; i < sequential.size(); i++) {
+      for (Fractal<?> fractal : List.of(sequential.get(i), parallel.get(i))) {
+        fractal.setCenter(new Point(30, 40));
+        fractal.rotate(0.6);
+      }
+      assertTrue(GeometryChecksum.of(sequential.get(i).getPoints(), sequential.get(i).getLines())
+                 .matches(GeometryChecksum.of(parallel.get(i).getPoints(), parallel.get(i).getLines())));
+    }
+  }
+
+  /**
+   * Helper method to compute the checksum of a triangle fractal by joining the center of every triangle
+   * to its vertices, level by level, keeping every vertex and side once
+   *
+   * @param shape the base shape
+   * @param numLevels the number of levels
+   * @return the checksum of the unique vertices and sides of the smallest triangles
+   */
+  private static GeometryChecksum triangleReference(Triangle shape, int numLevels) {
+    Point[] vertices = shape.getPoints();
+    List<Point> points = new ArrayList<>();
+    List<Line> lines = new ArrayList<>();
+    addTriangles(vertices[0], vertices[1], vertices[2], numLevels, points, lines);
+    return GeometryChecksum.of(points.toArray(new Point[0]), lines.toArray(new Line[0]));
+  }
+
+  /**
+   * Helper method to add the vertices and sides of the smallest triangles of a triangle that are not added yet
+   *
+   * @param a the first vertex of the triangle
+   * @param b the second vertex of the triangle
+   * @param c the third vertex of the triangle
+   * @param levels the number of levels below the triangle
+   * @param points the list receiving the vertices
+   * @param lines the list receiving the sides
+   */
+  private static void addTriangles(Point a, Point b, Point c, int levels, List<Point> points, List<Line> lines) {
+    if (levels == 0) {
+      Point[] corners = {a, b, c};
+      for (int i = 0; i < 3; i++) {
+        if (!points.contains(corners[i]))
+          points.add(corners[i]);
+        Line side = new Line(corners[i], corners[(i + 1) % 3]);
+        if (!lines.contains(side))
+          lines.add(side);
+      }
+      return;
+    }
+    Point center = new Point((a.getX() + b.getX() + c.getX()) / 3, (a.getY() + b.getY() + c.getY()) / 3);
+    addTriangles(center, a, b, levels - 1, points, lines);
+    addTriangles(center, b, c, levels - 1, points, lines);
+    addTriangles(center, c, a, levels - 1, points, lines);
+  }
+
+  /**
+   * Helper method to compute the checksum of a snowflake by dividing every side into its "_/\_" pattern, level by level
+   *
+   * @param shape the base shape
+   * @param numLevels the number of levels
+   * @return the checksum of the Points and of the Lines joining consecutive Points
+   */
+  private static GeometryChecksum snowflakeReference(Polygon shape, int numLevels) {
+    List<Point> points = new ArrayList<>(Arrays.asList(shape.getPoints()));
+    for (int level = 0; level < numLevels; level++) {
+      List<Point> divided = new ArrayList<>();
+      for (int i = 0; i < points.size(); i++) {
+        Point start = points.get(i);
+        Point end = points.get((i + 1) % points.size());
+        Point oneThird = between(start, end, 1.0 / 3);
+        Point twoThird = between(start, end, 2.0 / 3);
+        Point peak = new Point(oneThird.getX(), oneThird.getY());
+        peak.rotateAbout(twoThird, Math.PI / 3);
+        divided.addAll(Arrays.asList(start, oneThird, peak, twoThird));
+      }
+      points = divided;
+    }
+
+    GeometryChecksum checksum = new GeometryChecksum();
+    for (int i = 0; i < points.size(); i++) {
+      checksum.point(points.get(i));
+      checksum.line(new Line(points.get(i), points.get((i + 1) % points.size())));
+    }
+    return checksum;
+  }
+
+  /**
+   * Helper method to compute the checksum of a rectangle fractal by dividing the base Rectangle into its outer cells,
+   * level by level, keeping every corner and side once
+   *
+   * @param shape the base shape
+   * @param numLevels the number of levels
+   * @return the checksum of the unique corners and sides of the smallest cells
+   */
+  private static GeometryChecksum rectangleReference(Rectangle shape, int numLevels) {
+    Point corner = shape.getPoints()[0];
+    List<Point> points = new ArrayList<>();
+    List<Line> lines = new ArrayList<>();
+    addCells(corner.getX(), corner.getY(), shape.getWidth(), shape.getHeight(), numLevels, points, lines);
+    return GeometryChecksum.of(points.toArray(new Point[0]), lines.toArray(new Line[0]));
+  }
+
+  /**
+   * Helper method to add the corners and sides of the smallest cells of a cell that are not added yet
+   *
+   * @param x the smallest x coordinate of the cell
+   * @param y the smallest y coordinate of the cell
+   * @param width the width of the cell
+   * @param height the height of the cell
+   * @param levels the number of levels below the cell
+   * @param points the list receiving the corners
+   * @param lines the list receiving the sides
+   */
+  private static void addCells(double x, double y, double width, double height, int levels, List<Point> points, List<Line> lines) {
+    if (levels == 0) {
+      Point[] corners = {new Point(x, y), new Point(x + width, y), new Point(x + width, y + height), new Point(x, y + height)};
+      for (int i = 0; i < 4; i++) {
+        if (!points.contains(corners[i]))
+          points.add(corners[i]);
+        Line side = new Line(corners[i], corners[(i + 1) % 4]);
+        if (!lines.contains(side))
+          lines.add(side);
+      }
+      return;
+    }
+    for (int i = 0; i < 3; i++) {
+      for (int j = 0; j < 3; j++) {
+        if (i != 1 || j != 1)
+          addCells(x + i * width / 3, y + j * height / 3, width / 3, height / 3, levels - 1, points, lines);
+      }
+    }
+  }
+
+  /**
+   * Helper method to find the Point a fraction of the way between two Points
+   *
+   * @param start the first Point
+   * @param end the second Point
+   * @param ratio the fraction of the way
+   * @return the new Point
+   */
+  private static Point between(Point start, Point end, double ratio) {
+    return new Point(start.getX() + (end.getX() - start.getX()) * ratio, start.getY() + (end.getY() - start.getY()) * ratio);
+  }
+
+  /**
+   * Helper method to check the fast paths shared by every fractal against the reference
+   *
+   * @param create creates a new copy of the fractal
+   * @param reference the checksum of the reference generation
+   * @return a description of every path that did not match
+   */
+  private static List<String> checkCommonPaths(Supplier<? extends Fractal<?>> create, GeometryChecksum reference) {
+    List<String> failures = new ArrayList<>();
+
+    //cached: the second reads come from the cache
+    Fractal<?> fractal = create.get();
+    fractal.getPoints();
+    fractal.getLines();
+    check(failures, "cached", reference, GeometryChecksum.of(fractal.getPoints(), fractal.getLines()));
+
+    //streaming
+    GeometryChecksum streams = new GeometryChecksum();
+    create.get().pointStream().forEach(streams::point);
+    create.get().lineStream().forEach(streams::line);
+    check(failures, "streams", reference, streams);
+
+    GeometryChecksum sink = new GeometryChecksum();
+    create.get().generate(sink);
+    check(failures, "generate", reference, sink);
+
+    GeometryChecksum spilled = new GeometryChecksum();
+    try (GeometrySpill spill = GeometrySpill.of(create.get())) {
+      spill.replay(spilled);
+    }
+    check(failures, "spill", reference, spilled);
+
+    //primitive
+    GeometryChecksum offHeap = new GeometryChecksum();
+    try (OffHeapGeometry geometry = OffHeapGeometry.of(create.get())) {
+      geometry.replay(offHeap);
+    }
+    check(failures, "off-heap", reference, offHeap);
+
+    GeometryChecksum culled = new GeometryChecksum();
+    BoundsTree.of(create.get(), 3).generate(-1e9, -1e9, 1e9, 1e9, culled);
+    check(failures, "bounds tree", reference, culled);
+
+    //parallel
+    GeometryChecksum parallel = create.get().pointStream().parallel()
+      .collect(GeometryChecksum::new, GeometryChecksum::point, GeometryChecksum::combine);
+    parallel.combine(create.get().lineStream().parallel()
+      .collect(GeometryChecksum::new, GeometryChecksum::line, GeometryChecksum::combine));
+    check(failures, "parallel streams", reference, parallel);
+    return failures;
+  }
+
+  /**
+   * Helper method to compare the checksum of a path with the reference
+   *
+   * @param failures the list receiving a description of the path if it does not match
+   * @param path the name of the path
+   * @param reference the checksum of the reference generation
+   * @param actual the checksum of the path
+   */
+  private static void check(List<String> failures, String path, GeometryChecksum reference, GeometryChecksum actual) {
+    if (!reference.matches(actual))
+      failures.add(path + ": " + actual + " instead of " + reference);
+  }
+
+  /**
+   * Helper method to create a SnowflakeFractal on any regular polygon
+   *
+   * @param shape the base shape, which must be a RegularPolygon
+   * @param numLevels the number of levels
+   * @return the new fractal
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static SnowflakeFractal<?> snowflake(Polygon shape, int numLevels) {
+    return new SnowflakeFractal(shape, numLevels);
+  }
+}
@@ -0,0 +1,25 @@
+/**
+ * The GeometrySink interface receives the geometry of a fractal as raw coordinates
+ * Generators emit into a sink instead of building Point and Line objects,
+ * so the receiver decides how (and whether) the geometry is stored
+ */
+public interface GeometrySink {
+
+  /**
+   * Receives a Point of the fractal
+   *
+   * @param x the x coordinate of the Point
+   * @param y the y coordinate of the Point
+   */
+  void point(double x, double y);
+
+  /**
+   * Receives a Line of the fractal
+   *
+   * @param x1 the x coordinate of the first Point
+   * @param y1 the y coordinate of the first Point
+   * @param x2 the x coordinate of the second Point
+   * @param y2 the y coordinate of the second Point
+   */
+  void line(double x1, double y1, double x2, double y2);
+}
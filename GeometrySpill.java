@@ -0,0 +1,428 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The GeometrySpill class generates fractals larger than memory by spilling them to disk
+ * Points and Lines are buffered into chunks of a fixed size. Every full chunk is written to its own
+ * temporary file, so only one chunk is ever held in memory while generating.
+ * The chunks are read back in order through an iterator, which can start at any chunk to resume
+ * an interrupted reader.
+ *
+ * Closing the spill deletes its files. A GeometrySpill is not thread-safe
+ */
+public class GeometrySpill implements GeometrySink, AutoCloseable {
+
+  /** The default number of Points and of Lines a chunk can hold */
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+  /** The size of the header of a chunk file: the number of Points and of Lines */
+  private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+  /** The directory holding the chunk files */
+  private final Path directory;
+
+  /** Whether the directory was created by this spill and must be deleted with it */
+  private final boolean ownsDirectory;
+
+  /** The number of Points and of Lines a chunk can hold */
+  private final int chunkSize;
+
+  /** The Points of the chunk being filled, as x, y */
+  private final double[] points;
+
+  /** The Lines of the chunk being filled, as x1, y1, x2, y2 */
+  private final double[] lines;
+
+  /** The number of Points and Lines in the chunk being filled */
+  private int numPoints;
+  private int numLines;
+
+  /** The buffer used to write a chunk to its file */
+  private ByteBuffer writeBuffer;
+
+  /** The number of chunks written to disk */
+  private int numChunks;
+
+  /** The total number of Points and Lines spilled */
+  private long totalPoints;
+  private long totalLines;
+
+  /** Whether the spill has been closed */
+  private boolean closed;
+
+  /**
+   * Creates a spill writing chunks of the default size into a new temporary directory
+   *
+   * @throws UncheckedIOException if the directory can not be created
+   */
+  public GeometrySpill() {
+    this(DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Creates a spill writing chunks into a new temporary directory
+   *
+   * @param chunkSize the number of Points and of Lines a chunk can hold
+   * @throws UncheckedIOException if the directory can not be created
+   */
+  public GeometrySpill(int chunkSize) {
+    this(createTempDirectory(), true, chunkSize);
+  }
+
+  /**
+   * Creates a spill writing chunks into an existing directory
+   * The directory itself is left in place when the spill is closed
+   *
+   * @param directory the directory to write the chunk files to
+   * @param chunkSize the number of Points and of Lines a chunk can hold
+   */
+  public GeometrySpill(Path directory, int chunkSize) {
+    this(directory, false, chunkSize);
+  }
+
+  /**
+   * Helper constructor shared by the public ones
+   *
+   * @param directory the directory to write the chunk files to
+   * @param ownsDirectory whether the directory must be deleted when the spill is closed
+   * @param chunkSize the number of Points and of Lines a chunk can hold
+   */
+  private GeometrySpill(Path directory, boolean ownsDirectory, int chunkSize) {
+    if (chunkSize <= 0)
+      throw new IllegalArgumentException("The chunk size must be positive.");
+    this.directory = directory;
+    this.ownsDirectory = ownsDirectory;
+    this.chunkSize = chunkSize;
+    this.points = new double[2 * chunkSize];
+    this.lines = new double[4 * chunkSize];
+  }
+
+  /**
+   * Generates a fractal into a new spill with chunks of the default size
+   *
+   * @param fractal the fractal to generate
+   * @return the spill holding the whole fractal
+   */
+  public static GeometrySpill of(Fractal<?> fractal) {
+    GeometrySpill spill = new GeometrySpill();
+    fractal.generate(spill);
+    spill.flush();
+    return spill;
+  }
+
+  /**
+   * Appends a Point, spilling the current chunk if it is full
+   *
+   * @param x the x coordinate of the Point
+   * @param y the y coordinate of the Point
+   */
+  public void point(double x, double y) {
+    checkOpen();
+    if (numPoints == chunkSize)
+      flush();
+    points[2 * numPoints] = x;
+    points[2 * numPoints + 1] = y;
+    numPoints++;
+    totalPoints++;
+  }
+
+  /**
+   * Appends a Line, spilling the current chunk if it is full
+   *
+   * @param x1 the x coordinate of the first Point
+   * @param y1 the y coordinate of the first Point
+   * @param x2 the x coordinate of the second Point
+   * @param y2 the y coordinate of the second Point
+   */
+  public void line(double x1, double y1, double x2, double y2) {
+    checkOpen();
+    if (numLines == chunkSize)
+      flush();
+    lines[4 * numLines] = x1;
+    lines[4 * numLines + 1] = y1;
+    lines[4 * numLines + 2] = x2;
+    lines[4 * numLines + 3] = y2;
+    numLines++;
+    totalLines++;
+  }
+
+  /**
+   * Writes the chunk being filled to disk, if it holds anything
+   *
+   * @throws UncheckedIOException if the chunk can not be written
+   */
+  public void flush() {
+    checkOpen();
+    if (numPoints == 0 && numLines == 0)
+      return;
+    if (writeBuffer == null)
+      writeBuffer = ByteBuffer.allocateDirect(HEADER_BYTES + 6 * chunkSize * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    writeBuffer.clear();
+    writeBuffer.putInt(numPoints).putInt(numLines);
+    writeBuffer.asDoubleBuffer().put(points, 0, 2 * numPoints).put(lines, 0, 4 * numLines);
+    writeBuffer.position(HEADER_BYTES + (2 * numPoints + 4 * numLines) * Double.BYTES).flip();
+    try (FileChannel channel = FileChannel.open(chunkFile(numChunks), StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (writeBuffer.hasRemaining())
+        channel.write(writeBuffer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    numChunks++;
+    numPoints = 0;
+    numLines = 0;
+  }
+
+  /**
+   * Retrieves the number of chunks written to disk
+   *
+   * @return the number of chunks
+   */
+  public int getChunkCount() {
+    return numChunks;
+  }
+
+  /**
+   * Retrieves the number of Points spilled
+   *
+   * @return the number of Points
+   */
+  public long getPointCount() {
+    return totalPoints;
+  }
+
+  /**
+   * Retrieves the number of Lines spilled
+   *
+   * @return the number of Lines
+   */
+  public long getLineCount() {
+    return totalLines;
+  }
+
+  /**
+   * Retrieves the directory holding the chunk files
+   *
+   * @return the directory
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Returns an iterator over all chunks, in the order they were generated
+   * The chunk being filled is written to disk first
+   *
+   * @return the iterator
+   */
+  public Iterator<Chunk> chunks() {
+    return chunks(0);
+  }
+
+  /**
+   * Returns an iterator over the chunks starting at a given one, to resume reading mid-stream
+   * The chunk being filled is written to disk first. Only one chunk is read into memory at a time
+   *
+   * @param firstChunk the index of the first chunk to read
+   * @return the iterator
+   * @throws IndexOutOfBoundsException if the index is negative or past the last chunk
+   */
+  public Iterator<Chunk> chunks(int firstChunk) {
+    flush();
+    if (firstChunk < 0 || firstChunk > numChunks)
+      throw new IndexOutOfBoundsException("Chunk " + firstChunk + " out of " + numChunks);
+    int lastChunk = numChunks;
+    return new Iterator<Chunk>() {
+      private int next = firstChunk;
+
+      public boolean hasNext() {
+        return next < lastChunk;
+      }
+
+      public Chunk next() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        checkOpen();
+        return readChunk(next++);
+      }
+    };
+  }
+
+  /**
+   * Sends every spilled Point and Line to a sink, chunk by chunk
+   *
+   * @param sink the sink receiving the geometry
+   */
+  public void replay(GeometrySink sink) {
+    Iterator<Chunk> chunks = chunks();
+    while (chunks.hasNext())
+      chunks.next().replay(sink);
+  }
+
+  /**
+   * Deletes the chunk files, ending the lifetime of the spill
+   * Calling close() again has no effect
+   *
+   * @throws UncheckedIOException if a file can not be deleted
+   */
+  public void close() {
+    if (closed)
+      return;
+    closed = true;
+    try {
+      for (int i = 0; i < numChunks; i++)
+        Files.deleteIfExists(chunkFile(i));
+      if (ownsDirectory)
+        Files.deleteIfExists(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Helper method to read a chunk back from its file
+   *
+   * @param index the index of the chunk
+   * @return the chunk
+   * @throws UncheckedIOException if the file can not be read
+   */
+  private Chunk readChunk(int index) {
+    try {
+      ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(chunkFile(index))).order(ByteOrder.LITTLE_ENDIAN);
+      double[] chunkPoints = new double[2 * bytes.getInt()];
+      double[] chunkLines = new double[4 * bytes.getInt()];
+      bytes.asDoubleBuffer().get(chunkPoints).get(chunkLines);
+      return new Chunk(index, chunkPoints, chunkLines);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Helper method to find the file of a chunk
+   *
+   * @param index the index of the chunk
+   * @return the path of the file
+   */
+  private Path chunkFile(int index) {
+    return directory.resolve(String.format("chunk-%08d.bin", index));
+  }
+
+  /**
+   * Helper method to check that the spill has not been closed
+   *
+   * @throws IllegalStateException if the spill has been closed
+   */
+  private void checkOpen() {
+    if (closed)
+      throw new IllegalStateException("The spill has been closed.");
+  }
+
+  /**
+   * Helper method to create the temporary directory of a spill
+   *
+   * @return the new directory
+   * @throws UncheckedIOException if the directory can not be created
+   */
+  private static Path createTempDirectory() {
+    try {
+      return Files.createTempDirectory("fractal-spill");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * The Chunk class holds the Points and Lines of one chunk read back from disk
+   */
+  public static class Chunk {
+
+    /** The index of the chunk in the stream */
+    private final int index;
+
+    /** The Points of the chunk, as x, y */
+    private final double[] points;
+
+    /** The Lines of the chunk, as x1, y1, x2, y2 */
+    private final double[] lines;
+
+    /**
+     * Creates a Chunk
+     *
+     * @param index the index of the chunk in the stream
+     * @param points the Points of the chunk, as x, y
+     * @param lines the Lines of the chunk, as x1, y1, x2, y2
+     */
+    private Chunk(int index, double[] points, double[] lines) {
+      this.index = index;
+      this.points = points;
+      this.lines = lines;
+    }
+
+    /**
+     * Retrieves the index of the chunk, to resume reading after it
+     *
+     * @return the index of the chunk
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    /**
+     * Retrieves the number of Points in the chunk
+     *
+     * @return the number of Points
+     */
+    public int getPointCount() {
+      return points.length / 2;
+    }
+
+    /**
+     * Retrieves the number of Lines in the chunk
+     *
+     * @return the number of Lines
+     */
+    public int getLineCount() {
+      return lines.length / 4;
+    }
+
+    /**
+     * Retrieves the Points of the chunk
+     *
+     * @return the coordinates as x, y for each Point
+     */
+    public double[] getPoints() {
+      return points;
+    }
+
+    /**
+     * Retrieves the Lines of the chunk
+     *
+     * @return the coordinates as x1, y1, x2, y2 for each Line
+     */
+    public double[] getLines() {
+      return lines;
+    }
+
+    /**
+     * Sends the Points and Lines of the chunk to a sink
+     *
+     * @param sink the sink receiving the geometry
+     */
+    public void replay(GeometrySink sink) {
+      for (int i = 0; i < points.length; i += 2)
+        sink.point(points[i], points[i + 1]);
+      for (int i = 0; i < lines.length; i += 4)
+        sink.line(lines[i], lines[i + 1], lines[i + 2], lines[i + 3]);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * JUnit test suite for the GeometrySpill class
+ * This class tests that fractals spilled to disk read back in order, from the start or mid-stream
+ */
+public class GeometrySpillClassTest {
+
+  /**
+   * Test that the chunks hold the Lines of the stream, in order
+   */
+  @Test
+  public void testChunks() {
+    SnowflakeFractal<Square> fractal = new SnowflakeFractal<>(new Square(new Point(100, 100), 50.0), 3);
+    Line[] lines = fractal.lineStream().toArray(Line[]::new);
+
+    try (GeometrySpill spill = new GeometrySpill(10)) {
+      fractal.generate(spill);
+      assertEquals(lines.length, spill.getLineCount());
+      assertEquals(lines.length, spill.getPointCount());
+
+      int numLines = 0;
+      Iterator<GeometrySpill.Chunk> chunks = spill.chunks();
+      while (chunks.hasNext()) {
+        GeometrySpill.Chunk chunk = chunks.next();
+        assertTrue(chunk.getLineCount() <= 10);
+        double[] coordinates = chunk.getLines();
+        for (int i = 0; i < coordinates.length; i += 4, numLines++) {
+          assertEquals(lines[numLines].getFirstPoint().getX(), coordinates[i], 0);
+          assertEquals(lines[numLines].getSecondPoint().getY(), coordinates[i + 3], 0);
+        }
+      }
+      assertEquals(lines.length, numLines);
+      assertEquals((lines.length + 9) / 10, spill.getChunkCount());
+    }
+  }
+
+  /**
+   * Test that reading can resume at a given chunk
+   */
+  @Test
+  public void testResume() {
+    TriangleFractal fractal = new TriangleFractal(new EquilateralTriangle(new Point(0, 0), 10.0), 3);
+
+    try (GeometrySpill spill = new GeometrySpill(4)) {
+      fractal.generate(spill);
+      Iterator<GeometrySpill.Chunk> all = spill.chunks();
+      all.next();
+      all.next();
+
+      Iterator<GeometrySpill.Chunk> resumed = spill.chunks(2);
+      while (all.hasNext()) {
+        GeometrySpill.Chunk expected = all.next();
+        GeometrySpill.Chunk chunk = resumed.next();
+        assertEquals(expected.getIndex(), chunk.getIndex());
+        assertArrayEquals(expected.getPoints(), chunk.getPoints(), 0);
+        assertArrayEquals(expected.getLines(), chunk.getLines(), 0);
+      }
+      assertFalse(resumed.hasNext());
+    }
+  }
+
+  /**
+   * Test that closing the spill deletes its files
+   */
+  @Test
+  public void testClose() {
+    GeometrySpill spill = new GeometrySpill(2);
+    Path directory = spill.getDirectory();
+    for (int i = 0; i < 5; i++)
+      spill.point(i, i);
+    spill.flush();
+    assertEquals(3, spill.getChunkCount());
+    spill.close();
+    assertFalse(Files.exists(directory));
+    try {
+      spill.point(0, 0);
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+    }
+  }
+}
@@ -0,0 +1,414 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The IteratedFunctionSystem class generates fractals from a set of affine maps and a base shape
+ * Every node of the recursion tree carries the affine map taking the base shape onto it. A node
+ * with levels remaining has one child per map of the system, the composition of its own map
+ * with that map. The nodes a fractal starts from are given by root maps, so a system holds no
+ * state of its own and can be shared by all fractals of a kind and used from many threads.
+ *
+ * A node is laid out as {a, b, c, d, e, f, address, depth, levels remaining}, where a to f are
+ * the coefficients of its AffineMap. The address numbers the node by the path taken from its root:
+ * the address of a root is its index, and the child for map k of a node with address n has
+ * address n * numMaps + k. Addresses are exact as long as they stay below 2^53.
+ *
+ * By default the leaves emit the base shape. Fractals that share Points or Lines between
+ * neighboring nodes override emit() so that each one is emitted by a single node.
+ * The hull of a system is a polygon holding everything a node and its descendants emit, in the
+ * coordinates of the base shape, so mapping it onto a node bounds the whole subtree
+ */
+public class IteratedFunctionSystem {
+
+  /** The index of the address in a node */
+  private static final int ADDRESS = 6;
+
+  /** The index of the depth in a node */
+  private static final int DEPTH = 7;
+
+  /** The index of the number of levels remaining in a node */
+  private static final int LEVELS = 8;
+
+  /** The number of entries in a node */
+  private static final int NODE_SIZE = 9;
+
+  /** The node frames of each thread, reused by every depth-first generation on it */
+  private static final ThreadLocal<Arena> ARENAS = ThreadLocal.withInitial(Arena::new);
+
+  /** The coefficients of the maps, six per map */
+  private final double[] maps;
+
+  /** The number of maps */
+  private final int numMaps;
+
+  /** The Points of the base shape, as x, y */
+  private final double[] basePoints;
+
+  /** The Lines of the base shape, as x1, y1, x2, y2 */
+  private final double[] baseLines;
+
+  /** The corners of the hull, as x, y */
+  private final double[] hull;
+
+  /**
+   * Creates an IteratedFunctionSystem whose hull is the base shape
+   * This holds when the maps take the base shape inside itself, like subdivisions do
+   *
+   * @param maps the affine maps, in the order the children of a node are visited
+   * @param basePoints the Points of the base shape, as x, y
+   * @param baseLines the Lines of the base shape, as x1, y1, x2, y2
+   * @throws IllegalArgumentException if there are no maps, or a coordinate array has a bad length
+   */
+  public IteratedFunctionSystem(AffineMap[] maps, double[] basePoints, double[] baseLines) {
+    this(maps, basePoints, baseLines, concat(basePoints, baseLines));
+  }
+
+  /**
+   * Creates an IteratedFunctionSystem
+   *
+   * @param maps the affine maps, in the order the children of a node are visited
+   * @param basePoints the Points of the base shape, as x, y
+   * @param baseLines the Lines of the base shape, as x1, y1, x2, y2
+   * @param hull the corners of a polygon holding all the geometry of a subtree, as x, y
+   * @throws IllegalArgumentException if there are no maps, or a coordinate array has a bad length
+   */
+  public IteratedFunctionSystem(AffineMap[] maps, double[] basePoints, double[] baseLines, double[] hull) {
+    if (maps.length == 0)
+      throw new IllegalArgumentException("An iterated function system needs at least one map.");
+    if (basePoints.length % 2 != 0 || baseLines.length % 4 != 0 || hull.length % 2 != 0)
+      throw new IllegalArgumentException("The base shape must hold whole Points and Lines.");
+    this.numMaps = maps.length;
+    this.maps = new double[6 * numMaps];
+    for (int i = 0; i < numMaps; i++)
+      maps[i].copyTo(this.maps, 6 * i);
+    this.basePoints = basePoints.clone();
+    this.baseLines = baseLines.clone();
+    this.hull = hull.clone();
+  }
+
+  /**
+   * Helper method to join two coordinate arrays
+   *
+   * @param first the first array
+   * @param second the second array
+   * @return the coordinates of the first array followed by those of the second
+   */
+  private static double[] concat(double[] first, double[] second) {
+    double[] joined = Arrays.copyOf(first, first.length + second.length);
+    System.arraycopy(second, 0, joined, first.length, second.length);
+    return joined;
+  }
+
+  /**
+   * Retrieves the number of maps, which is the number of children of every inner node
+   *
+   * @return the number of maps
+   */
+  public int getNumMaps() {
+    return numMaps;
+  }
+
+  /**
+   * Retrieves one of the maps
+   *
+   * @param k the index of the map
+   * @return the map
+   */
+  public AffineMap getMap(int k) {
+    int m = 6 * k;
+    return new AffineMap(maps[m], maps[m + 1], maps[m + 2], maps[m + 3], maps[m + 4], maps[m + 5]);
+  }
+
+  /**
+   * Retrieves the corners of the hull, which holds all the geometry of a subtree once mapped onto its node
+   *
+   * @return the corners as x, y, in the coordinates of the base shape
+   */
+  public double[] getHull() {
+    return hull.clone();
+  }
+
+  /**
+   * Creates the top-level nodes of the recursion tree
+   *
+   * @param numLevels the number of levels below each root
+   * @param roots the maps taking the base shape onto each root, in encounter order
+   * @return the root nodes
+   */
+  public ArrayDeque<double[]> rootNodes(int numLevels, AffineMap... roots) {
+    ArrayDeque<double[]> nodes = new ArrayDeque<>();
+    for (int i = 0; i < roots.length; i++) {
+      double[] node = new double[NODE_SIZE];
+      roots[i].copyTo(node, 0);
+      node[ADDRESS] = i;
+      node[DEPTH] = 0;
+      node[LEVELS] = numLevels;
+      nodes.add(node);
+    }
+    return nodes;
+  }
+
+  /**
+   * Expands one node of the recursion tree
+   *
+   * @param node the node to expand
+   * @param sink the sink receiving the geometry emitted by the node
+   * @return the children of the node in encounter order, or null if the node is a leaf
+   */
+  public double[][] expand(double[] node, GeometrySink sink) {
+    if (getLevels(node) == 0) {
+      emit(node, sink);
+      return null;
+    }
+    double[][] children = new double[numMaps][];
+    for (int k = 0; k < numMaps; k++)
+      children[k] = newNode();
+    expand(node, sink, children);
+    return children;
+  }
+
+  /**
+   * Expands one node of the recursion tree into nodes owned by the caller, allocating nothing
+   *
+   * @param node the node to expand
+   * @param sink the sink receiving the geometry emitted by the node
+   * @param children the nodes receiving the children in encounter order, at least getNumMaps() of them
+   *                 created by newNode(). They are left unchanged if the node is a leaf
+   * @return true if the children were written; false if the node is a leaf
+   */
+  public boolean expand(double[] node, GeometrySink sink, double[][] children) {
+    emit(node, sink);
+    if (getLevels(node) == 0)
+      return false;
+    for (int k = 0; k < numMaps; k++)
+      child(node, k, children[k]);
+    return true;
+  }
+
+  /**
+   * Creates an empty node, for callers that keep their own nodes to expand into
+   *
+   * @return a new node
+   */
+  public static double[] newNode() {
+    return new double[NODE_SIZE];
+  }
+
+  /**
+   * Helper method to compute one child of a node
+   *
+   * @param node the parent node
+   * @param k the index of the map leading to the child
+   * @param child the array receiving the child node
+   */
+  private void child(double[] node, int k, double[] child) {
+    double a = node[0], b = node[1], c = node[2], d = node[3];
+    int m = 6 * k;
+    child[0] = a * maps[m] + b * maps[m + 2];
+    child[1] = a * maps[m + 1] + b * maps[m + 3];
+    child[2] = c * maps[m] + d * maps[m + 2];
+    child[3] = c * maps[m + 1] + d * maps[m + 3];
+    child[4] = a * maps[m + 4] + b * maps[m + 5] + node[4];
+    child[5] = c * maps[m + 4] + d * maps[m + 5] + node[5];
+    child[ADDRESS] = node[ADDRESS] * numMaps + k;
+    child[DEPTH] = node[DEPTH] + 1;
+    child[LEVELS] = node[LEVELS] - 1;
+  }
+
+  /**
+   * Emits the geometry owned by a node
+   * By default every leaf emits the base shape, mapped onto the leaf
+   *
+   * @param node the node being expanded
+   * @param sink the sink receiving the geometry
+   */
+  protected void emit(double[] node, GeometrySink sink) {
+    if (getLevels(node) != 0)
+      return;
+    for (int i = 0; i < basePoints.length; i += 2)
+      sink.point(mapX(node, basePoints[i], basePoints[i + 1]), mapY(node, basePoints[i], basePoints[i + 1]));
+    for (int i = 0; i < baseLines.length; i += 4)
+      sink.line(mapX(node, baseLines[i], baseLines[i + 1]), mapY(node, baseLines[i], baseLines[i + 1]),
+                mapX(node, baseLines[i + 2], baseLines[i + 3]), mapY(node, baseLines[i + 2], baseLines[i + 3]));
+  }
+
+  /**
+   * Generates the fractal into a sink, walking the recursion tree depth first
+   * The nodes are kept in the frames of a per-thread arena, one frame per depth, so the walk
+   * allocates nothing per node
+   *
+   * @param numLevels the number of levels below each root
+   * @param sink the sink receiving the geometry
+   * @param roots the maps taking the base shape onto each root
+   */
+  public void generate(int numLevels, GeometrySink sink, AffineMap... roots) {
+    Arena arena = Arena.acquire(numLevels + 1);
+    try {
+      double[] root = arena.frames[0];
+      for (int i = 0; i < roots.length; i++) {
+        roots[i].copyTo(root, 0);
+        root[ADDRESS] = i;
+        root[DEPTH] = 0;
+        root[LEVELS] = numLevels;
+        generate(arena.frames, 0, sink);
+      }
+    } finally {
+      arena.release();
+    }
+  }
+
+  /**
+   * Emits a node and all of its descendants into a sink, allocating nothing per node
+   *
+   * @param node the node to expand, which is left unchanged
+   * @param sink the sink receiving the geometry
+   */
+  public void generate(double[] node, GeometrySink sink) {
+    Arena arena = Arena.acquire(getLevels(node) + 1);
+    try {
+      System.arraycopy(node, 0, arena.frames[0], 0, NODE_SIZE);
+      generate(arena.frames, 0, sink);
+    } finally {
+      arena.release();
+    }
+  }
+
+  /**
+   * Helper method to emit the node of a frame and all of its descendants, each child taking the next frame in turn
+   *
+   * @param frames the frames of the arena
+   * @param f the frame holding the node
+   * @param sink the sink receiving the geometry
+   */
+  private void generate(double[][] frames, int f, GeometrySink sink) {
+    double[] node = frames[f];
+    emit(node, sink);
+    if (getLevels(node) == 0)
+      return;
+    double[] child = frames[f + 1];
+    for (int k = 0; k < numMaps; k++) {
+      child(node, k, child);
+      generate(frames, f + 1, sink);
+    }
+  }
+
+  /**
+   * Returns a lazy Stream over the Points of the fractal
+   * A parallel stream splits the work along the recursion subtrees
+   *
+   * @param numLevels the number of levels below each root
+   * @param roots the maps taking the base shape onto each root
+   * @return a Stream of the emitted Points
+   */
+  public Stream<Point> pointStream(int numLevels, AffineMap... roots) {
+    return StreamSupport.stream(new FractalSpliterator.Points(this, rootNodes(numLevels, roots)), false);
+  }
+
+  /**
+   * Returns a lazy Stream over the Lines of the fractal
+   * A parallel stream splits the work along the recursion subtrees
+   *
+   * @param numLevels the number of levels below each root
+   * @param roots the maps taking the base shape onto each root
+   * @return a Stream of the emitted Lines
+   */
+  public Stream<Line> lineStream(int numLevels, AffineMap... roots) {
+    return StreamSupport.stream(new FractalSpliterator.Lines(this, rootNodes(numLevels, roots)), false);
+  }
+
+  /**
+   * Maps the x coordinate of a Point of the base shape onto a node
+   *
+   * @param node the node
+   * @param x the x coordinate in the base shape
+   * @param y the y coordinate in the base shape
+   * @return the x coordinate in the node
+   */
+  public static double mapX(double[] node, double x, double y) {
+    return node[0] * x + node[1] * y + node[4];
+  }
+
+  /**
+   * Maps the y coordinate of a Point of the base shape onto a node
+   *
+   * @param node the node
+   * @param x the x coordinate in the base shape
+   * @param y the y coordinate in the base shape
+   * @return the y coordinate in the node
+   */
+  public static double mapY(double[] node, double x, double y) {
+    return node[2] * x + node[3] * y + node[5];
+  }
+
+  /**
+   * Retrieves the address of a node
+   *
+   * @param node the node
+   * @return the address of the node
+   */
+  public static long getAddress(double[] node) {
+    return (long) node[ADDRESS];
+  }
+
+  /**
+   * Retrieves the depth of a node below its root
+   *
+   * @param node the node
+   * @return the depth of the node
+   */
+  public static int getDepth(double[] node) {
+    return (int) node[DEPTH];
+  }
+
+  /**
+   * Retrieves the number of levels remaining below a node
+   *
+   * @param node the node
+   * @return the number of levels remaining
+   */
+  public static int getLevels(double[] node) {
+    return (int) node[LEVELS];
+  }
+
+  /**
+   * The Arena class holds the node frames of one thread, grown to the deepest walk seen so far
+   * A sink generating another fractal from inside a walk gets a fresh arena instead of the busy one
+   */
+  private static class Arena {
+
+    /** One node per depth of the walk */
+    private double[][] frames = new double[0][];
+
+    /** Whether a walk is using the frames */
+    private boolean busy;
+
+    /**
+     * Takes the arena of the current thread, or a fresh one if it is in use
+     *
+     * @param depth the number of frames needed
+     * @return the arena, holding at least that many frames
+     */
+    private static Arena acquire(int depth) {
+      Arena arena = ARENAS.get();
+      if (arena.busy)
+        arena = new Arena();
+      arena.busy = true;
+      if (arena.frames.length < depth) {
+        double[][] frames = Arrays.copyOf(arena.frames, depth);
+        for (int i = arena.frames.length; i < depth; i++)
+          frames[i] = new double[NODE_SIZE];
+        arena.frames = frames;
+      }
+      return arena;
+    }
+
+    /**
+     * Gives the arena back once the walk is done
+     */
+    private void release() {
+      busy = false;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+
+/**
+ * JUnit test suite for the IteratedFunctionSystem and AffineMap classes
+ * This class tests the generation of a plain system, where every leaf emits the base shape
+ */
+public class IteratedFunctionSystemClassTest {
+
+  /** A Sierpinski triangle: three maps halving the triangle (0, 0), (1, 0), (0, 1) towards its corners */
+  private IteratedFunctionSystem sierpinski = new IteratedFunctionSystem(
+    new AffineMap[] {AffineMap.ofScale(0.5, 0.5, 0, 0), AffineMap.ofScale(0.5, 0.5, 0.5, 0), AffineMap.ofScale(0.5, 0.5, 0, 0.5)},
+    new double[] {0, 0, 1, 0, 0, 1},
+    new double[] {0, 0, 1, 0, 1, 0, 0, 1, 0, 1, 0, 0});
+
+  /**
+   * Test that every leaf emits the base shape mapped onto it
+   */
+  @Test
+  public void testGenerate() {
+    ArrayList<double[]> lines = new ArrayList<>();
+    int[] numPoints = new int[1];
+    sierpinski.generate(2, new GeometrySink() {
+      public void point(double x, double y) {
+        numPoints[0]++;
+      }
+
+      public void line(double x1, double y1, double x2, double y2) {
+        lines.add(new double[] {x1, y1, x2, y2});
+      }
+    }, AffineMap.ofScale(8, 8, 0, 0));
+
+    assertEquals(27, numPoints[0]);
+    assertEquals(27, lines.size());
+    //the first leaf is the bottom left corner, a quarter of the size of the root
+    assertArrayEquals(new double[] {0, 0, 2, 0}, lines.get(0), 1e-12);
+    //the last leaf is the top corner of the top triangle
+    assertArrayEquals(new double[] {0, 8, 0, 6}, lines.get(26), 1e-12);
+  }
+
+  /**
+   * Test that the streams agree with generate(), sequentially and in parallel
+   */
+  @Test
+  public void testStreams() {
+    assertEquals(3 * 81, sierpinski.pointStream(4, AffineMap.IDENTITY).count());
+    assertEquals(3 * 81, sierpinski.lineStream(4, AffineMap.IDENTITY).parallel().count());
+    assertArrayEquals(sierpinski.pointStream(3, AffineMap.IDENTITY).toArray(),
+                      sierpinski.pointStream(3, AffineMap.IDENTITY).parallel().toArray());
+  }
+
+  /**
+   * Test that nodes are numbered by the path from their root
+   */
+  @Test
+  public void testAddresses() {
+    double[] root = sierpinski.rootNodes(2, AffineMap.IDENTITY, AffineMap.IDENTITY).getLast();
+    assertEquals(1, IteratedFunctionSystem.getAddress(root));
+    double[] child = sierpinski.expand(root, new OffHeapGeometry())[2];
+    double[] grandchild = sierpinski.expand(child, new OffHeapGeometry())[1];
+    assertEquals(1 * 9 + 2 * 3 + 1, IteratedFunctionSystem.getAddress(grandchild));
+    assertEquals(2, IteratedFunctionSystem.getDepth(grandchild));
+    assertEquals(0, IteratedFunctionSystem.getLevels(grandchild));
+    assertNull(sierpinski.expand(grandchild, new OffHeapGeometry()));
+
+    //expanding into nodes owned by the caller gives the same children
+    double[][] children = {IteratedFunctionSystem.newNode(), IteratedFunctionSystem.newNode(), IteratedFunctionSystem.newNode()};
+    assertTrue(sierpinski.expand(child, new OffHeapGeometry(), children));
+    assertArrayEquals(sierpinski.expand(child, new OffHeapGeometry()), children);
+    assertFalse(sierpinski.expand(grandchild, new OffHeapGeometry(), children));
+  }
+
+  /**
+   * Test composing and inverting affine maps
+   */
+  @Test
+  public void testAffineMap() {
+    AffineMap triangle = AffineMap.ofTriangle(1, 1, 4, 2, 2, 5);
+    Point p = triangle.map(new Point(1, 0));
+    assertEquals(new Point(4, 2), p);
+    assertEquals(new Point(1, 0), triangle.inverse().map(p));
+
+    AffineMap segment = AffineMap.ofSegment(0, 0, 0, 2);
+    assertEquals(new Point(-2, 1), segment.compose(AffineMap.ofScale(1, 1, 0.5, 1)).map(new Point(0, 0)));
+  }
+
+  /**
+   * Test that depth-first generation allocates next to nothing per node
+   * The run is repeated so that the measured one is compiled, and a nested generation from the sink is checked too
+   */
+  @Test
+  public void testGenerateAllocation() {
+    Fractal<?>[] fractals = {
+      new TriangleFractal(new Triangle(new Point(0, 500), new Point(250, 0), new Point(500, 500)), 8),
+      new SnowflakeFractal<NGon>(new NGon(new Point(250, 250), 150.0, 5), 6),
+      new RectangleFractal(new Rectangle(new Point(250, 250), 300.0, 200.0), 4)};
+    long[] count = new long[1];
+    GeometrySink sink = new GeometrySink() {
+      public void point(double x, double y) {
+        count[0]++;
+      }
+
+      public void line(double x1, double y1, double x2, double y2) {
+        count[0]++;
+      }
+    };
+
+    for (Fractal<?> fractal : fractals) {
+      long nodes = 0;
+      int numMaps = fractal.system().getNumMaps();
+      for (long level = 0, width = fractal.rootMaps().length; level <= fractal.getNumLevels(); level++, width *= numMaps)
+        nodes += width;
+
+      long allocated = Long.MAX_VALUE;
+      for (int run = 0; run < 20; run++) {
+        long start = GenerationRun.currentThreadAllocatedBytes();
+        fractal.generate(sink);
+        allocated = Math.min(allocated, GenerationRun.currentThreadAllocatedBytes() - start);
+      }
+      assertTrue(fractal.getClass().getSimpleName() + " allocated " + allocated + " bytes for " + nodes + " nodes",
+                 allocated < nodes / 10);
+    }
+
+    //a generation started from inside another one on the same thread gets its own frames
+    OffHeapGeometry inner = new OffHeapGeometry();
+    OffHeapGeometry outer = new OffHeapGeometry();
+    sierpinski.generate(1, new GeometrySink() {
+      public void point(double x, double y) {
+        outer.point(x, y);
+        sierpinski.generate(1, inner, AffineMap.IDENTITY);
+      }
+
+      public void line(double x1, double y1, double x2, double y2) {
+        outer.line(x1, y1, x2, y2);
+      }
+    }, AffineMap.IDENTITY);
+    assertEquals(9, outer.getPointCount());
+    assertEquals(9, outer.getLineCount());
+    assertEquals(81, inner.getPointCount());
+  }
+}
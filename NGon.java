@@ -78,6 +78,7 @@ public class NGon extends Polygon implements RegularPolygon {
       rotatedPoint.rotateAbout(center, centralAngle);
       polyPoints[i] = rotatedPoint;
     }
+    modified();
   }
 }
     
@@ -0,0 +1,352 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The OffHeapGeometry class stores the geometry of a fractal outside of the Java heap
+ * Coordinates are appended into direct ByteBuffers allocated in chunks, so very deep fractals neither
+ * fill the heap nor give the garbage collector millions of Points to trace. The first chunk is sized
+ * for the expected number of elements and each next one is twice as large, up to the chunk size.
+ * Growing never copies the stored coordinates, and a single store may exceed 2 GB.
+ *
+ * Once closed, the store drops its chunks and any access fails. The memory of a chunk is returned when
+ * the garbage collector reclaims its buffer, not by close() itself.
+ * An OffHeapGeometry is not thread-safe
+ */
+public class OffHeapGeometry implements GeometrySink, AutoCloseable {
+
+  /** The default size of the largest chunks, in bytes */
+  public static final int DEFAULT_CHUNK_BYTES = 1 << 26;
+
+  /** The size of the first chunk when no number of elements is expected, in bytes */
+  public static final int DEFAULT_FIRST_CHUNK_BYTES = 1 << 12;
+
+  /** The coordinates of the Points, as x, y */
+  private final Region points;
+
+  /** The coordinates of the Lines, as x1, y1, x2, y2 */
+  private final Region lines;
+
+  /** Whether the store has been closed */
+  private boolean closed;
+
+  /**
+   * Creates an empty OffHeapGeometry with chunks of the default sizes
+   */
+  public OffHeapGeometry() {
+    this(DEFAULT_CHUNK_BYTES);
+  }
+
+  /**
+   * Creates an empty OffHeapGeometry whose first chunks hold DEFAULT_FIRST_CHUNK_BYTES, or chunkBytes if it is smaller
+   *
+   * @param chunkBytes the size of the largest chunks in bytes. Must be a positive multiple of 32
+   */
+  public OffHeapGeometry(int chunkBytes) {
+    this(chunkBytes, DEFAULT_FIRST_CHUNK_BYTES / (2 * Double.BYTES), DEFAULT_FIRST_CHUNK_BYTES / (4 * Double.BYTES));
+  }
+
+  /**
+   * Creates an empty OffHeapGeometry whose first chunks are sized for the number of elements expected
+   *
+   * @param chunkBytes the size of the largest chunks in bytes. Must be a positive multiple of 32
+   * @param expectedPoints the number of Points expected
+   * @param expectedLines the number of Lines expected
+   */
+  public OffHeapGeometry(int chunkBytes, long expectedPoints, long expectedLines) {
+    if (chunkBytes <= 0 || chunkBytes % 32 != 0)
+      throw new IllegalArgumentException("The chunk size must be a positive multiple of 32 bytes.");
+    points = new Region(firstChunkBytes(expectedPoints * 2 * Double.BYTES, chunkBytes), chunkBytes);
+    lines = new Region(firstChunkBytes(expectedLines * 4 * Double.BYTES, chunkBytes), chunkBytes);
+  }
+
+  /**
+   * Generates a fractal straight into a new OffHeapGeometry, sized for one Point and two Lines per leaf of its recursion
+   *
+   * @param fractal the fractal to generate
+   * @return the store holding the Points and Lines of the fractal
+   */
+  public static OffHeapGeometry of(Fractal<?> fractal) {
+    double leaves = fractal.rootMaps().length * Math.pow(fractal.system().getNumMaps(), fractal.getNumLevels());
+    long expected = (long) Math.min(leaves, DEFAULT_CHUNK_BYTES);
+    OffHeapGeometry geometry = new OffHeapGeometry(DEFAULT_CHUNK_BYTES, expected, 2 * expected);
+    fractal.generate(geometry);
+    return geometry;
+  }
+
+  /**
+   * Helper method to size a first chunk
+   *
+   * @param expectedBytes the number of bytes expected
+   * @param chunkBytes the size of the largest chunks
+   * @return the expected bytes rounded up to a multiple of 32, between 32 and the size of the largest chunks
+   */
+  private static int firstChunkBytes(long expectedBytes, int chunkBytes) {
+    long rounded = (Math.max(expectedBytes, 1) + 31) / 32 * 32;
+    return (int) Math.min(rounded, chunkBytes);
+  }
+
+  /**
+   * Appends a Point
+   *
+   * @param x the x coordinate of the Point
+   * @param y the y coordinate of the Point
+   */
+  public void point(double x, double y) {
+    checkOpen();
+    points.add(x);
+    points.add(y);
+  }
+
+  /**
+   * Appends a Line
+   *
+   * @param x1 the x coordinate of the first Point
+   * @param y1 the y coordinate of the first Point
+   * @param x2 the x coordinate of the second Point
+   * @param y2 the y coordinate of the second Point
+   */
+  public void line(double x1, double y1, double x2, double y2) {
+    checkOpen();
+    lines.add(x1);
+    lines.add(y1);
+    lines.add(x2);
+    lines.add(y2);
+  }
+
+  /**
+   * Retrieves the number of Points stored
+   *
+   * @return the number of Points
+   */
+  public long getPointCount() {
+    return points.size / 2;
+  }
+
+  /**
+   * Retrieves the number of Lines stored
+   *
+   * @return the number of Lines
+   */
+  public long getLineCount() {
+    return lines.size / 4;
+  }
+
+  /**
+   * Retrieves the x coordinate of a Point
+   *
+   * @param index the index of the Point
+   * @return the x coordinate
+   */
+  public double getPointX(long index) {
+    checkOpen();
+    return points.get(2 * index);
+  }
+
+  /**
+   * Retrieves the y coordinate of a Point
+   *
+   * @param index the index of the Point
+   * @return the y coordinate
+   */
+  public double getPointY(long index) {
+    checkOpen();
+    return points.get(2 * index + 1);
+  }
+
+  /**
+   * Retrieves one coordinate of a Line
+   *
+   * @param index the index of the Line
+   * @param coordinate 0 for x1, 1 for y1, 2 for x2 and 3 for y2
+   * @return the coordinate
+   */
+  public double getLineCoordinate(long index, int coordinate) {
+    checkOpen();
+    if (coordinate < 0 || coordinate > 3)
+      throw new IndexOutOfBoundsException("Line coordinate " + coordinate);
+    return lines.get(4 * index + coordinate);
+  }
+
+  /**
+   * Sends all stored Points and Lines to a sink, in the order they were appended
+   * The coordinates are read straight from the chunks, without copying them onto the heap
+   *
+   * @param sink the sink receiving the geometry
+   */
+  public void replay(GeometrySink sink) {
+    checkOpen();
+    for (long i = 0; i < points.size; i += 2)
+      sink.point(points.get(i), points.get(i + 1));
+    for (long i = 0; i < lines.size; i += 4)
+      sink.line(lines.get(i), lines.get(i + 1), lines.get(i + 2), lines.get(i + 3));
+  }
+
+  /**
+   * Writes the coordinates of the Points to a channel as little-endian doubles x, y
+   * The chunks are handed to the channel directly, so nothing is copied onto the heap
+   *
+   * @param channel the channel to write to
+   * @return the number of bytes written
+   * @throws IOException if the channel can not be written
+   */
+  public long writePoints(WritableByteChannel channel) throws IOException {
+    checkOpen();
+    return points.writeTo(channel);
+  }
+
+  /**
+   * Writes the coordinates of the Lines to a channel as little-endian doubles x1, y1, x2, y2
+   * The chunks are handed to the channel directly, so nothing is copied onto the heap
+   *
+   * @param channel the channel to write to
+   * @return the number of bytes written
+   * @throws IOException if the channel can not be written
+   */
+  public long writeLines(WritableByteChannel channel) throws IOException {
+    checkOpen();
+    return lines.writeTo(channel);
+  }
+
+  /**
+   * Ends the lifetime of the store and drops its chunks, whose memory the garbage collector then reclaims
+   * Calling close() again has no effect
+   */
+  public void close() {
+    closed = true;
+    points.release();
+    lines.release();
+  }
+
+  /**
+   * Helper method to check that the store has not been closed
+   *
+   * @throws IllegalStateException if the store has been closed
+   */
+  private void checkOpen() {
+    if (closed)
+      throw new IllegalStateException("The geometry has been closed.");
+  }
+
+  /**
+   * The Region class is a growable sequence of doubles kept in direct ByteBuffer chunks
+   * Each chunk is twice as large as the one before it, up to the size of the largest chunks
+   */
+  private static class Region {
+
+    /** The size of the first chunk in bytes */
+    private final int firstChunkBytes;
+
+    /** The size of the largest chunks in bytes */
+    private final int maxChunkBytes;
+
+    /** The chunks, all full except the last one */
+    private ArrayList<ByteBuffer> chunks = new ArrayList<>();
+
+    /** The index of the first double of every chunk */
+    private long[] starts = new long[16];
+
+    /** The chunk doubles are appended to */
+    private ByteBuffer last;
+
+    /** The index after the last double the last chunk can hold */
+    private long end;
+
+    /** The number of doubles stored */
+    private long size;
+
+    /**
+     * Creates an empty Region
+     *
+     * @param firstChunkBytes the size of the first chunk in bytes
+     * @param maxChunkBytes the size of the largest chunks in bytes
+     */
+    private Region(int firstChunkBytes, int maxChunkBytes) {
+      this.firstChunkBytes = firstChunkBytes;
+      this.maxChunkBytes = maxChunkBytes;
+    }
+
+    /**
+     * Appends a double, allocating a new chunk when the last one is full
+     *
+     * @param value the double to append
+     */
+    private void add(double value) {
+      if (size == end) {
+        int chunkBytes = last == null ? firstChunkBytes : (int) Math.min(2L * last.capacity(), maxChunkBytes);
+        last = ByteBuffer.allocateDirect(chunkBytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (chunks.size() == starts.length)
+          starts = Arrays.copyOf(starts, 2 * starts.length);
+        starts[chunks.size()] = size;
+        chunks.add(last);
+        end = size + chunkBytes / Double.BYTES;
+      }
+      last.putDouble((int) (size - starts[chunks.size() - 1]) * Double.BYTES, value);
+      size++;
+    }
+
+    /**
+     * Reads a double
+     *
+     * @param index the index of the double
+     * @return the double
+     */
+    private double get(long index) {
+      if (index < 0 || index >= size)
+        throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+      int chunk = chunkOf(index);
+      return chunks.get(chunk).getDouble((int) (index - starts[chunk]) * Double.BYTES);
+    }
+
+    /**
+     * Helper method to find the chunk holding a double
+     *
+     * @param index the index of the double, which is stored
+     * @return the index of the last chunk starting at or before the double
+     */
+    private int chunkOf(long index) {
+      int low = 0;
+      int high = chunks.size() - 1;
+      while (low < high) {
+        int middle = (low + high + 1) >>> 1;
+        if (starts[middle] <= index)
+          low = middle;
+        else
+          high = middle - 1;
+      }
+      return low;
+    }
+
+    /**
+     * Writes the stored doubles to a channel
+     *
+     * @param channel the channel to write to
+     * @return the number of bytes written
+     * @throws IOException if the channel can not be written
+     */
+    private long writeTo(WritableByteChannel channel) throws IOException {
+      long written = 0;
+      for (int i = 0; i < chunks.size(); i++) {
+        ByteBuffer chunk = chunks.get(i).duplicate();
+        long remaining = (size - starts[i]) * Double.BYTES;
+        chunk.limit((int) Math.min(chunk.capacity(), remaining));
+        while (chunk.hasRemaining())
+          written += channel.write(chunk);
+      }
+      return written;
+    }
+
+    /**
+     * Drops the chunks, so that the garbage collector can reclaim their memory
+     */
+    private void release() {
+      chunks = new ArrayList<>();
+      last = null;
+      end = 0;
+      size = 0;
+    }
+  }
+}
@@ -0,0 +1,102 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+
+/**
+ * JUnit test suite for the OffHeapGeometry class
+ * This class tests that fractals generated off the heap match their streams, across chunk boundaries
+ */
+public class OffHeapGeometryClassTest {
+
+  /**
+   * Test that the stored Lines match the Line stream, with chunks much smaller than the geometry
+   */
+  @Test
+  public void testLines() {
+    SnowflakeFractal<Square> fractal = new SnowflakeFractal<>(new Square(new Point(100, 100), 50.0), 3);
+    Line[] lines = fractal.lineStream().toArray(Line[]::new);
+
+    try (OffHeapGeometry geometry = new OffHeapGeometry(64)) {
+      fractal.generate(geometry);
+      assertEquals(lines.length, geometry.getLineCount());
+      assertEquals(lines.length, geometry.getPointCount());
+      for (int i = 0; i < lines.length; i++) {
+        assertEquals(lines[i].getFirstPoint().getX(), geometry.getLineCoordinate(i, 0), 0);
+        assertEquals(lines[i].getFirstPoint().getY(), geometry.getLineCoordinate(i, 1), 0);
+        assertEquals(lines[i].getSecondPoint().getX(), geometry.getLineCoordinate(i, 2), 0);
+        assertEquals(lines[i].getSecondPoint().getY(), geometry.getLineCoordinate(i, 3), 0);
+      }
+    }
+  }
+
+  /**
+   * Test that the Points can be exported as raw coordinates
+   */
+  @Test
+  public void testWritePoints() throws Exception {
+    TriangleFractal fractal = new TriangleFractal(new EquilateralTriangle(new Point(0, 0), 10.0), 2);
+    Point[] points = fractal.pointStream().toArray(Point[]::new);
+
+    try (OffHeapGeometry geometry = new OffHeapGeometry(96)) {
+      fractal.generate(geometry);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertEquals(16L * points.length, geometry.writePoints(Channels.newChannel(out)));
+
+      ByteBuffer bytes = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+      for (Point point : points) {
+        assertEquals(point.getX(), bytes.getDouble(), 0);
+        assertEquals(point.getY(), bytes.getDouble(), 0);
+      }
+    }
+  }
+
+  /**
+   * Test that chunks growing from a one-Point first chunk keep every coordinate, and that of() matches the streams
+   */
+  @Test
+  public void testGrowingChunks() {
+    try (OffHeapGeometry geometry = new OffHeapGeometry(1024, 1, 1)) {
+      for (int i = 0; i < 1000; i++)
+        geometry.point(i, -i);
+      assertEquals(1000, geometry.getPointCount());
+      for (int i = 0; i < 1000; i++) {
+        assertEquals(i, geometry.getPointX(i), 0);
+        assertEquals(-i, geometry.getPointY(i), 0);
+      }
+    }
+
+    RectangleFractal fractal = new RectangleFractal(new Square(new Point(0, 0), 10.0), 2);
+    Point[] points = fractal.pointStream().toArray(Point[]::new);
+    try (OffHeapGeometry geometry = OffHeapGeometry.of(fractal)) {
+      assertEquals(points.length, geometry.getPointCount());
+      for (int i = 0; i < points.length; i++) {
+        assertEquals(points[i].getX(), geometry.getPointX(i), 0);
+        assertEquals(points[i].getY(), geometry.getPointY(i), 0);
+      }
+    }
+  }
+
+  /**
+   * Test that a closed store can no longer be used
+   */
+  @Test
+  public void testClose() {
+    OffHeapGeometry geometry = new OffHeapGeometry();
+    geometry.point(1, 2);
+    assertEquals(2.0, geometry.getPointY(0), 0);
+    geometry.close();
+    try {
+      geometry.getPointX(0);
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+    }
+    try {
+      geometry.line(0, 0, 1, 1);
+      fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+    }
+  }
+}
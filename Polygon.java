@@ -9,6 +9,9 @@ public class Polygon {
   /** The center of the Polygon */
   protected Point center;
   
+  /** The number of changes made through the methods of the Polygon */
+  private long modCount;
+  
   /**
    * Creates a new Polygon with given array of points
    * 
@@ -64,6 +67,7 @@ public class Polygon {
       polyPoints[i].setY (polyPoints[i].getY() + (newCenter.getY() - currentCenter.getY()));
     }
     this.center = this.getCenter();
+    modified();
   }
   
   /**
@@ -74,11 +78,28 @@ public class Polygon {
   public void rotate (double angle) {
     Point center = this.getCenter();
     
-    //a loop goes through and rotate all the Points in the Polygon by the given angle 
-    for (int i = 0; i < polyPoints.length; i = i + 1) {
-      polyPoints[i].rotateAbout(center,angle);
-    }
+    //rotate all the Points in the Polygon by the given angle in one batch
+    BatchTransform.apply(AffineMap.ofRotation(angle, center.getX(), center.getY()), polyPoints, 0, polyPoints.length);
     this.center = this.getCenter();
+    modified();
+  }
+  
+  /**
+   * Returns the number of changes made through the methods of the Polygon
+   * Fractals compare it to know whether their cached geometry is still valid.
+   * Points of the Polygon changed directly are not counted
+   * 
+   * @return the number of changes
+   */
+  public long getModificationCount() {
+    return modCount;
+  }
+  
+  /**
+   * Counts a change to the Polygon, to be called by every method moving its Points
+   */
+  protected void modified() {
+    modCount++;
   }
   
   /**
@@ -0,0 +1,141 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ * The ProgressiveRenderer class draws a fractal level by level on a canvas
+ * Level 0 is drawn at once, then a single background thread generates the deeper levels one after the other
+ * and each one replaces the drawing as soon as it is ready. A new rendering waits for the thread, which stops
+ * working on a cancelled rendering before its next level
+ */
+public class ProgressiveRenderer {
+
+  /** The canvas to draw on */
+  private final Canvas canvas;
+
+  /** Identifies the latest rendering; older renderings stop generating and drawing once a new one starts */
+  private final AtomicLong currentRendering = new AtomicLong();
+
+  /** The handler told about failures of the background thread, on the JavaFX application thread */
+  private final Consumer<Throwable> onFailure;
+
+  /** The single background thread generating the deeper levels */
+  private final ExecutorService generator = Executors.newSingleThreadExecutor(task -> {
+    Thread thread = new Thread(task, "progressive-renderer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Creates a ProgressiveRenderer drawing on the given canvas
+   *
+   * @param canvas the canvas to draw on
+   * @param onFailure the handler told, on the JavaFX application thread, when a deeper level can not be generated
+   */
+  public ProgressiveRenderer(Canvas canvas, Consumer<Throwable> onFailure) {
+    this.canvas = canvas;
+    this.onFailure = onFailure;
+  }
+
+  /**
+   * Starts drawing a fractal progressively, replacing any rendering in progress
+   * Must be called on the JavaFX application thread
+   *
+   * @param numLevels the number of levels of the final drawing
+   * @param fractalAtLevel creates the fractal with a given number of levels. It is called from a background
+   *                       thread for the deeper levels, so every call must create its own base shape.
+   *                       Failures of those calls are reported to the failure handler
+   * @throws IllegalArgumentException if the fractal of level 0 can not be created
+   */
+  public void render(int numLevels, IntFunction<Fractal<?>> fractalAtLevel) {
+    render(numLevels, fractalAtLevel, lines -> { });
+  }
+
+  /**
+   * Starts drawing a fractal progressively, replacing any rendering in progress, and hands out the final Lines
+   * Must be called on the JavaFX application thread
+   *
+   * @param numLevels the number of levels of the final drawing
+   * @param fractalAtLevel creates the fractal with a given number of levels. It is called from a background
+   *                       thread for the deeper levels, so every call must create its own base shape.
+   *                       Failures of those calls are reported to the failure handler
+   * @param onFinished told, on the JavaFX application thread, the Lines of the final level once they are drawn.
+   *                   It is not told if the rendering is replaced, cancelled or fails first
+   * @throws IllegalArgumentException if the fractal of level 0 can not be created
+   */
+  public void render(int numLevels, IntFunction<Fractal<?>> fractalAtLevel, Consumer<Line[]> onFinished) {
+    if (numLevels < 0)
+      throw new IllegalArgumentException("Number of levels must be non-negative.");
+    long rendering = currentRendering.incrementAndGet();
+
+    //draw level 0 immediately, so there is something on screen right away
+    Fractal<?> first = fractalAtLevel.apply(0);
+    Line[] firstLines = first.getLines();
+    draw(first, firstLines);
+    if (numLevels == 0) {
+      onFinished.accept(firstLines);
+      return;
+    }
+
+    generator.execute(() -> {
+      try {
+        //stop between generations once a newer rendering started or this one was cancelled
+        for (int level = 1; level <= numLevels && currentRendering.get() == rendering; level++) {
+          Fractal<?> fractal = fractalAtLevel.apply(level);
+          if (currentRendering.get() != rendering)
+            return;
+          Line[] lines = fractal.getLines();
+          boolean last = level == numLevels;
+          Platform.runLater(() -> {
+            //a newer rendering may have started while this level was generated
+            if (currentRendering.get() == rendering) {
+              draw(fractal, lines);
+              if (last)
+                onFinished.accept(lines);
+            }
+          });
+        }
+      } catch (RuntimeException | Error e) {
+        Platform.runLater(() -> {
+          if (currentRendering.get() == rendering)
+            onFailure.accept(e);
+        });
+      }
+    });
+  }
+
+  /**
+   * Stops the rendering in progress, so that it no longer draws on the canvas
+   */
+  public void cancel() {
+    currentRendering.incrementAndGet();
+  }
+
+  /**
+   * Helper method to replace the drawing on the canvas with the Lines of a fractal
+   *
+   * @param fractal the fractal to draw
+   * @param lines the Lines of the fractal
+   */
+  private void draw(Fractal<?> fractal, Line[] lines) {
+    GraphicsContext gc = canvas.getGraphicsContext2D();
+    gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+
+    FractalDrawEvent event = new FractalDrawEvent();
+    event.begin();
+    for (Line line : lines) {
+      gc.strokeLine(
+                    line.getFirstPoint().getX(),
+                    line.getFirstPoint().getY(),
+                    line.getSecondPoint().getX(),
+                    line.getSecondPoint().getY()
+                   );
+    }
+    event.finish(fractal, "canvas", lines.length);
+  }
+}
@@ -84,5 +84,6 @@ public class Rectangle extends Polygon {
     polyPoints[1] = new Point (center.getX() + width/2, center.getY() - height/2);
     polyPoints[2] = new Point (center.getX() - width/2, center.getY() + height/2);
     polyPoints[3] = new Point (center.getX() + width/2, center.getY() + height/2);
+    modified();
   }
 }
\ No newline at end of file
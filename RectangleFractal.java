@@ -1,4 +1,4 @@
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * The RectangleFractal class represents a recursive fractal generated from a base Rectangle
@@ -6,12 +6,21 @@ import java.util.ArrayList;
  */
 public class RectangleFractal extends Fractal<Rectangle> {
   
-  /** List to store the current generated Rectangles in the fractal */
-  private ArrayList<Rectangle> currentRectangles = new ArrayList<>();
+  /** The deepest level that can be indexed, keeping the vertex and edge ids within an int */
+  private static final int MAX_MESH_LEVELS = 9;
+  
+  /** The rotation applied through rotate(), in radians about the center of the base shape */
+  private double angle;
+  
+  /** The mesh of the last generation, or null if none was built */
+  private FractalMesh cachedMesh;
+  
+  /** The version of the fractal the cached mesh was built from */
+  private long meshVersion;
   
   /**
    * Constructs a RectangleFractal with the specified base Rectangle or Square and number of levels
-   *
+   * 
    * @param rectangle the base Rectangle or Square used to generate the fractal.
    * @param numLevels the number of recursive levels for the fractal.
    */
@@ -21,97 +30,393 @@ public class RectangleFractal extends Fractal<Rectangle> {
   
   /**
    * Retrieves all the Points that make up the fractal
+   * The Points are the vertices of the mesh generated by the iterated function system, each corner shared
+   * by several Rectangles appearing once. The Points are shared with the fractal, as Fractal.getPoints() describes
    * 
    * @return an array of Points representing the fractal's geometry
+   * @throws IllegalStateException if the fractal has too many levels to index
    */
   public Point[] getPoints() {
-    ArrayList<Point> points = new ArrayList<>();
-    currentRectangles.clear(); // clear any previously generated Rectangles
-    generateRectangleFractalPoints(baseShape, numLevels, points); 
-    return points.toArray(new Point[0]);
+    Point[] cached = cachedPoints();
+    if (cached != null)
+      return cached;
+    GenerationRun run = startRun();
+    try {
+      FractalMesh mesh = currentMesh();
+      Point[] points = mesh.toPoints();
+      pointsOfFractal.clear(); //clear previously stored points
+      pointsOfFractal.addAll(Arrays.asList(points));
+      countVertices(points.length);
+      return cachePoints(points);
+    } finally {
+      finishRun(run);
+    }
   }
   
   /**
-   * Helper method to recursively generate the Points of the rectangle fractal.
+   * Retrieves all the Lines that make up the fractal
+   * The Lines are the edges of the mesh, joining the Points of getPoints(), each side shared
+   * by two Rectangles appearing once. The Lines are shared with the fractal and must not be changed
    * 
-   * @param rectangle the current Rectangle to subdivide
-   * @param numLevels the remaining levels of recursion
-   * @param result the list to store the generated Points
+   * @return an array of Lines that make up the fractal
+   * @throws IllegalStateException if the fractal has too many levels to index
    */
-  private void generateRectangleFractalPoints (Rectangle rectangle, int numLevels, ArrayList<Point> result) {
-    Point[] points = rectangle.getPoints();
-    
-    //base case: If no levels remain, add the Points of the rectangle
-    if (numLevels == 0) {
-      for (Point point : points) {
-        if (!result.contains(point))
-          result.add(point);
-      }
-      currentRectangles.add(rectangle);
-      return;
+  public Line[] getLines() {
+    Line[] cached = cachedLines();
+    if (cached != null)
+      return cached;
+    GenerationRun run = startRun();
+    try {
+      Point[] points = getPoints();
+      FractalMesh mesh = currentMesh();
+      Line[] lines = new Line[mesh.getEdgeCount()];
+      for (int i = 0; i < lines.length; i++)
+        lines[i] = new Line(points[mesh.getEdgeStart(i)], points[mesh.getEdgeEnd(i)]);
+      countEdges(lines.length);
+      return cacheLines(lines);
+    } finally {
+      finishRun(run);
     }
+  }
+  
+  /**
+   * Rotates the fractal about the center of the base shape by a specified angle
+   * The Points of getPoints() are rotated in place and stay the Points of the fractal, and
+   * the rotation is kept for the next generation
+   * 
+   * @param angle the angle of rotation in radians
+   */
+  public void rotate(double angle) {
+    Point center = baseShape.getCenter();
     
-    double subWidth = rectangle.getWidth()/3.0;
-    double subHeight = rectangle.getHeight()/3.0;
-    
-    //determine the center of the top left corner of the rectangle
-    Point centerTopLeft = divide(points[3], points[1], 1.0/6);
-    
-    //a loop to recursively create smaller Rectangles, skipping the center one
-    for (int i = 0; i < 3; i++) {
-      for (int j = 0; j < 3; j++) { 
-        if (i == 1 && j == 1)
-          ;
-        else {
-          //calculate the center of the smaller Rectangle
-          Point subCenter = new Point(centerTopLeft.getX() + i * subWidth, centerTopLeft.getY() - j * subHeight);
-          //create a new smaller Rectangle
-          Rectangle smallerRectangle = new Rectangle (subCenter, subWidth, subHeight);
-          generateRectangleFractalPoints(smallerRectangle, numLevels - 1, result);
-        }
-      }
+    //generate the Points if the cached ones are missing or stale
+    if (!hasCachedPoints())
+      getPoints();
+    
+    FractalTransformEvent event = new FractalTransformEvent();
+    event.begin();
+    //rotate every Point of the fractal about the center in one batch
+    transform(AffineMap.ofRotation(angle, center.getX(), center.getY()), pointsOfFractal);
+    commitTransform(event, "rotate", pointsOfFractal.size());
+    this.angle += angle;
+    modified();
+    keepCachedPoints();
+  }
+  
+  /**
+   * Helper method to retrieve the mesh of the current version of the fractal, building it if needed
+   * 
+   * @return the indexed mesh of the fractal
+   * @throws IllegalStateException if the fractal has too many levels to index
+   */
+  private FractalMesh currentMesh() {
+    if (cachedMesh != null && meshVersion == getVersion())
+      return cachedMesh;
+    if (numLevels > MAX_MESH_LEVELS)
+      throw new IllegalStateException("The fractal has too many levels to index.");
+    
+    //generate the unit square, whose corners lie on a lattice, and place the mesh onto the base Rectangle afterwards
+    MeshBuilder builder = new MeshBuilder(numLevels);
+    system().generate(numLevels, builder, AffineMap.IDENTITY);
+    cachedMesh = builder.toMesh(rootMaps()[0]);
+    meshVersion = getVersion();
+    return cachedMesh;
+  }
+  
+  /**
+   * Finds the smaller Rectangle holding a Point, descending one level at a time from the base Rectangle
+   * The Point is taken back through rootMaps(), so a rotation applied through rotate() is included.
+   * Levels deeper than 33 can not be told apart with doubles and are not descended
+   * 
+   * @param point the Point to look up
+   * @return the address of the Rectangle holding the Point, which is not a member if the Point lies in
+   *         a removed center, or null if the Point lies outside the base Rectangle
+   */
+  public FractalAddress locate(Point point) {
+    if (baseShape.getWidth() == 0 || baseShape.getHeight() == 0)
+      return null;
+    AffineMap toSquare = rootMaps()[0].inverse();
+    double u = toSquare.mapX(point.getX(), point.getY());
+    double v = toSquare.mapY(point.getX(), point.getY());
+    if (!(u >= 0 && u <= 1 && v >= 0 && v <= 1))
+      return null;
+    
+    //the base-3 digits of the cell holding the Point give the Rectangle taken at each level
+    int levels = Math.min(numLevels, 33);
+    long cells = (long) Math.pow(3, levels);
+    long col = Math.min((long) (u * cells), cells - 1);
+    long row = Math.min((long) (v * cells), cells - 1);
+    int[] path = new int[levels];
+    long span = cells;
+    for (int level = 0; level < levels; level++) {
+      span /= 3;
+      int i = (int) (col / span % 3);
+      int j = (int) (row / span % 3);
+      if (i == 1 && j == 1)
+        return new FractalAddress(Arrays.copyOf(path, level), 8, false);
+      path[level] = Carpet.mapTo(i, j);
     }
+    return new FractalAddress(path, 8, true);
   }
   
   /**
-   * Retrieves all the Lines that make up the fractal
+   * Retrieves the iterated function system shared by all RectangleFractals
    * 
-   * @return an array of Lines that make up the fractal
+   * @return the system dividing a square into the eight outer squares of a 3 by 3 grid
    */
-  public Line[] getLines() {
-    ArrayList<Line> generatedLines = new ArrayList<>();
+  protected IteratedFunctionSystem system() {
+    return Carpet.SYSTEM;
+  }
+  
+  /**
+   * Retrieves the map taking the unit square onto the base Rectangle, rotated by the rotation applied through rotate()
+   * 
+   * @return an array holding the map
+   */
+  protected AffineMap[] rootMaps() {
+    Point corner = baseShape.getPoints()[0];
+    AffineMap map = AffineMap.ofScale(baseShape.getWidth(), baseShape.getHeight(), corner.getX(), corner.getY());
+    if (angle != 0) {
+      Point center = baseShape.getCenter();
+      map = AffineMap.ofRotation(angle, center.getX(), center.getY()).compose(map);
+    }
+    return new AffineMap[] {map};
+  }
+  
+  /**
+   * Helper method to decide whether a cell is one of the smallest Rectangles of the fractal
+   * A cell is removed if, at some level, both of its base-3 digits are the center digit
+   * 
+   * @param col the column of the cell
+   * @param row the row of the cell
+   * @param totalLevels the number of levels of the fractal
+   * @return true if the cell is part of the fractal; false if not
+   */
+  static boolean isCellPresent(long col, long row, int totalLevels) {
+    if (col < 0 || row < 0)
+      return false;
+    for (int level = 0; level < totalLevels; level++) {
+      if (col % 3 == 1 && row % 3 == 1)
+        return false;
+      col /= 3;
+      row /= 3;
+    }
+    return col == 0 && row == 0;
+  }
+  
+  /**
+   * Helper method to decide whether a cell owns one of its corners
+   * The owner is the first present cell among the (up to) four cells around the corner
+   * 
+   * @param col the column of the cell
+   * @param row the row of the cell
+   * @param cornerCol the column of the corner
+   * @param cornerRow the row of the corner
+   * @param totalLevels the number of levels of the fractal
+   * @return true if the cell owns the corner; false if not
+   */
+  private static boolean ownsCorner(long col, long row, long cornerCol, long cornerRow, int totalLevels) {
+    for (long r = cornerRow - 1; r <= cornerRow; r++) {
+      for (long c = cornerCol - 1; c <= cornerCol; c++) {
+        if (c == col && r == row)
+          return true;
+        if (isCellPresent(c, r, totalLevels))
+          return false;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * The Carpet class maps the unit square onto the eight outer cells of a 3 by 3 grid, skipping the center one
+   * The leaves are the cells of a 3^numLevels by 3^numLevels grid over the base Rectangle, found from their address.
+   * Only the leaves emit geometry. A corner or side shared by several of them is
+   * owned by the first Rectangle of the fractal that touches it, so nothing is emitted twice
+   */
+  private static class Carpet extends IteratedFunctionSystem {
     
-    if (currentRectangles.isEmpty()) {
-      getPoints();
+    /** The column and row offsets of the cell each map leads to */
+    private static final int[] COLUMN = {0, 0, 0, 1, 1, 2, 2, 2};
+    private static final int[] ROW = {0, 1, 2, 0, 2, 0, 1, 2};
+    
+    /** The system shared by all RectangleFractals */
+    static final Carpet SYSTEM = new Carpet();
+    
+    /**
+     * Creates the system, with the maps ordered by column then row
+     */
+    private Carpet() {
+      super(cellMaps(), new double[] {0, 0, 1, 0, 1, 1, 0, 1}, new double[] {0, 0, 1, 0, 1, 0, 1, 1, 1, 1, 0, 1, 0, 1, 0, 0});
     }
     
-    //a loop to add Lines from each rectangle in the fractal
-    for (Rectangle rectangle : currentRectangles) {
-      Line[] lines = rectangle.getLines();
-      for (int i = 0; i < lines.length; i++) {
-        addLineIfNotExists(lines[i], generatedLines);
+    /**
+     * Finds the map leading to one of the eight outer cells
+     * 
+     * @param column the column of the cell, from 0 to 2
+     * @param row the row of the cell, from 0 to 2, but not the center cell
+     * @return the index of the map
+     */
+    static int mapTo(int column, int row) {
+      int cell = 3 * column + row;
+      return cell < 4 ? cell : cell - 1;
+    }
+    
+    /**
+     * Helper method to create the maps onto the eight outer cells
+     * 
+     * @return the maps, in the order of COLUMN and ROW
+     */
+    private static AffineMap[] cellMaps() {
+      AffineMap[] maps = new AffineMap[COLUMN.length];
+      for (int k = 0; k < maps.length; k++)
+        maps[k] = AffineMap.ofScale(1.0/3, 1.0/3, COLUMN[k] / 3.0, ROW[k] / 3.0);
+      return maps;
+    }
+    
+    /**
+     * Emits the corners and sides owned by a cell
+     * 
+     * @param node the cell being expanded
+     * @param sink the sink receiving the geometry owned by the cell
+     */
+    protected void emit(double[] node, GeometrySink sink) {
+      if (getLevels(node) != 0)
+        return;
+      
+      //find the column and row of the cell from its address, the last map taken being the least significant digit
+      int totalLevels = getDepth(node);
+      long address = getAddress(node);
+      long col = 0;
+      long row = 0;
+      long span = 1;
+      for (int level = 0; level < totalLevels; level++) {
+        int k = (int) (address % COLUMN.length);
+        col += COLUMN[k] * span;
+        row += ROW[k] * span;
+        address /= COLUMN.length;
+        span *= 3;
       }
+      
+      double x1 = mapX(node, 0, 0);
+      double y1 = mapY(node, 0, 0);
+      double x2 = mapX(node, 1, 1);
+      double y2 = mapY(node, 1, 1);
+      
+      //corners, each owned by the first present cell around it
+      if (ownsCorner(col, row, col, row, totalLevels))
+        sink.point(x1, y1);
+      if (ownsCorner(col, row, col + 1, row, totalLevels))
+        sink.point(x2, y1);
+      if (ownsCorner(col, row, col + 1, row + 1, totalLevels))
+        sink.point(x2, y2);
+      if (ownsCorner(col, row, col, row + 1, totalLevels))
+        sink.point(x1, y2);
+      
+      //sides, each owned by the first present cell on either side of it
+      if (!isCellPresent(col, row - 1, totalLevels))
+        sink.line(x1, y1, x2, y1);
+      sink.line(x2, y1, x2, y2);
+      sink.line(x2, y2, x1, y2);
+      if (!isCellPresent(col - 1, row, totalLevels))
+        sink.line(x1, y2, x1, y1);
     }
-    return generatedLines.toArray(new Line[0]);
   }
   
   /**
-   * Rotates the fractal about the center of the base shape by a specified angle
-   * 
-   * @param angle the angle of rotation in radians
+   * The MeshBuilder class collects the corners and sides emitted for the unit square into an indexed mesh
+   * Every corner lies on the lattice of the smallest cells, so a side finds the ids of its ends
+   * from their lattice cells once the walk is over, instead of searching the corners for them
    */
-  public void rotate(double angle) {
-    Point center = baseShape.getCenter();
+  private static class MeshBuilder implements GeometrySink {
     
-    if (currentRectangles.isEmpty()) {
-      getPoints();
+    /** The number of smallest cells along a side of the unit square */
+    private final long cells;
+    
+    /** The corners, as x, y in the unit square */
+    private double[] vertices = new double[64];
+    
+    /** The sides, as the lattice cells of their start and end corners */
+    private long[] edges = new long[64];
+    
+    /** The number of corners and sides emitted */
+    private int numVertices;
+    private int numEdges;
+    
+    /**
+     * Creates a MeshBuilder sized for a number of levels
+     * 
+     * @param numLevels the number of levels of the fractal
+     */
+    private MeshBuilder(int numLevels) {
+      long cells = 1;
+      for (int level = 0; level < numLevels; level++)
+        cells *= 3;
+      this.cells = cells;
+    }
+    
+    /**
+     * Adds a corner, which is emitted only once
+     * 
+     * @param x the x coordinate of the corner in the unit square
+     * @param y the y coordinate of the corner in the unit square
+     */
+    public void point(double x, double y) {
+      if (2 * numVertices == vertices.length)
+        vertices = Arrays.copyOf(vertices, 2 * vertices.length);
+      vertices[2 * numVertices] = x;
+      vertices[2 * numVertices + 1] = y;
+      numVertices++;
+    }
+    
+    /**
+     * Adds a side, which is emitted only once
+     * 
+     * @param x1 the x coordinate of the start in the unit square
+     * @param y1 the y coordinate of the start in the unit square
+     * @param x2 the x coordinate of the end in the unit square
+     * @param y2 the y coordinate of the end in the unit square
+     */
+    public void line(double x1, double y1, double x2, double y2) {
+      if (2 * numEdges == edges.length)
+        edges = Arrays.copyOf(edges, 2 * edges.length);
+      edges[2 * numEdges] = lattice(x1, y1);
+      edges[2 * numEdges + 1] = lattice(x2, y2);
+      numEdges++;
+    }
+    
+    /**
+     * Helper method to find the lattice cell of a corner
+     * 
+     * @param x the x coordinate of the corner in the unit square
+     * @param y the y coordinate of the corner in the unit square
+     * @return the number of the lattice cell, row by row
+     */
+    private long lattice(double x, double y) {
+      return Math.round(y * cells) * (cells + 1) + Math.round(x * cells);
     }
     
-    // a loop to rotate each Point of every rectangle in the fractal
-    for (Rectangle rectangle : currentRectangles) {
-      for (Point point : rectangle.getPoints()) {
-        point.rotateAbout(center, angle);
+    /**
+     * Creates the mesh from the corners and sides emitted, placed by a map
+     * 
+     * @param map the map taking the unit square onto the fractal
+     * @return the mesh
+     */
+    private FractalMesh toMesh(AffineMap map) {
+      //sort the corners by lattice cell, keeping the id of each in the low bits
+      long[] index = new long[numVertices];
+      for (int v = 0; v < numVertices; v++)
+        index[v] = lattice(vertices[2 * v], vertices[2 * v + 1]) << 32 | v;
+      Arrays.sort(index);
+      
+      int[] ids = new int[2 * numEdges];
+      for (int i = 0; i < ids.length; i++) {
+        int found = Arrays.binarySearch(index, edges[i] << 32);
+        ids[i] = (int) index[found >= 0 ? found : -found - 1];
       }
+      
+      double[] placed = Arrays.copyOf(vertices, 2 * numVertices);
+      BatchTransform.apply(map, placed, 0, numVertices);
+      return new FractalMesh(placed, ids);
     }
   }
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 import org.junit.*;
 import static org.junit.Assert.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.Collectors;
 
 /**
  * JUnit test suite for the RectangleFractal class
@@ -161,4 +163,105 @@ public class RectangleFractalClassTest {
     //verify rotation for rectangle fractal
     assertArrayEquals(originalPoints2, rotatedPoints2);
   }
-}
\ No newline at end of file
+  
+  /**
+   * Test pointStream() and lineStream()
+   * The streams should produce the same unique Points and Lines as getPoints() and getLines()
+   */
+  @Test
+  public void testStreams() {
+    RectangleFractal fractal = new RectangleFractal(rectangle, 2);
+    
+    Point[] points = fractal.getPoints();
+    Line[] lines = fractal.getLines();
+    
+    //verify the sequential streams
+    assertEquals(points.length, fractal.pointStream().count());
+    assertEquals(lines.length, fractal.lineStream().count());
+    assertTrue(fractal.pointStream().allMatch(point -> Arrays.asList(points).contains(point)));
+    assertTrue(fractal.lineStream().allMatch(line -> Arrays.asList(lines).contains(line)));
+    
+    //verify the parallel streams keep the encounter order
+    assertEquals(fractal.pointStream().collect(Collectors.toList()),
+                 fractal.pointStream().parallel().collect(Collectors.toList()));
+    assertEquals(fractal.lineStream().collect(Collectors.toList()),
+                 fractal.lineStream().parallel().collect(Collectors.toList()));
+  }
+  
+  /**
+   * Test locate()
+   * The address should follow the base-3 digits of the cell holding the Point
+   */
+  @Test
+  public void testLocate() {
+    RectangleFractal fractal = new RectangleFractal(rectangle, 2);
+    
+    assertEquals("/0.0", fractal.locate(new Point(-1.9, -0.9)).toString());
+    FractalAddress address = fractal.locate(new Point(1.9, 0.1));
+    assertArrayEquals(new int[] {6, 6}, address.getPath());
+    assertTrue(address.isMember());
+    assertEquals(54, address.toIndex());
+    
+    //Points in the center removed at level 1 and in a center removed at level 2
+    assertEquals(new FractalAddress(new int[0], 8, false), fractal.locate(new Point(0, 0)));
+    assertEquals("/0 removed", fractal.locate(new Point(-1.4, -0.7)).toString());
+    
+    assertNull(fractal.locate(new Point(3, 0)));
+  }
+  
+  /**
+   * Test that changing the base Rectangle drops the cached geometry
+   */
+  @Test
+  public void testGenerationCache() {
+    Rectangle base = new Rectangle(new Point(0, 0), 3.0, 3.0);
+    RectangleFractal fractal = new RectangleFractal(base, 1);
+    Point[] points = fractal.getPoints();
+    assertArrayEquals(points, fractal.getPoints());
+    
+    base.setWidth(9.0);
+    Point[] widened = fractal.getPoints();
+    assertEquals(points.length, widened.length);
+    assertEquals(9.0, Arrays.stream(widened).mapToDouble(Point::getX).max().getAsDouble()
+                   - Arrays.stream(widened).mapToDouble(Point::getX).min().getAsDouble(), 1e-9);
+    
+    //a rotation is seen by getLines(), whose Lines are rebuilt after it
+    Line[] lines = fractal.getLines();
+    fractal.rotate(Math.toRadians(90));
+    Line[] rotated = fractal.getLines();
+    assertNotSame(lines[0], rotated[0]);
+    assertEquals(3.0, Arrays.stream(rotated).mapToDouble(line -> line.getFirstPoint().getX()).max().getAsDouble()
+                   - Arrays.stream(rotated).mapToDouble(line -> line.getFirstPoint().getX()).min().getAsDouble(), 1e-9);
+  }
+  
+  /**
+   * Test that rotate() moves the Lines, which share the rotated Points, and that a new generation keeps the rotation
+   */
+  @Test
+  public void testRotateLines() {
+    RectangleFractal fractal = new RectangleFractal(new Rectangle(new Point(10, 20), 6.0, 3.0), 2);
+    Line[] lines = fractal.getLines();
+    
+    //rotate copies of the Lines about the center
+    Point center = fractal.getCenter();
+    Line[] expected = new Line[lines.length];
+    for (int i = 0; i < lines.length; i++) {
+      Point first = new Point(lines[i].getFirstPoint().getX(), lines[i].getFirstPoint().getY());
+      Point second = new Point(lines[i].getSecondPoint().getX(), lines[i].getSecondPoint().getY());
+      first.rotateAbout(center, Math.toRadians(30));
+      second.rotateAbout(center, Math.toRadians(30));
+      expected[i] = new Line(first, second);
+    }
+    
+    fractal.rotate(Math.toRadians(30));
+    Line[] rotated = fractal.getLines();
+    assertArrayEquals(expected, rotated);
+    Point[] points = fractal.getPoints();
+    assertTrue(Arrays.stream(points).anyMatch(point -> point == rotated[5].getSecondPoint()));
+    
+    //generating again keeps the rotation
+    fractal.setNumLevels(2);
+    assertArrayEquals(expected, fractal.getLines());
+    assertTrue(GeometryChecksum.of(points, rotated).matches(GeometryChecksum.of(fractal.getPoints(), fractal.getLines())));
+  }
+}
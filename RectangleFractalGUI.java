@@ -4,10 +4,13 @@ import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.StackPane;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.Alert;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ToggleButton;
 import javafx.scene.canvas.GraphicsContext;
 
 /**
@@ -23,9 +26,30 @@ public class RectangleFractalGUI extends Application {
   private TextField numLevelsField = new TextField("1"); //default numLevels
   private TextField rotationField = new TextField("0");  //default rotation angle
   
+  /** Check box to draw the fractal level by level */
+  private CheckBox progressiveBox = new CheckBox("Progressive");
+  
   /** Canvas to draw the fractal */
   private Canvas canvas = new Canvas(500.0, 500.0);
   
+  /** Renderer drawing the levels as they are generated in progressive mode */
+  private ProgressiveRenderer progressiveRenderer =
+    new ProgressiveRenderer(canvas, e -> showErrorDialog("Rendering failed", String.valueOf(e.getMessage())));
+  
+  /** Button to start and stop spinning the fractal, and label showing the frame time */
+  private ToggleButton animateButton = new ToggleButton("Animate");
+  private Label frameTimeLabel = new Label();
+  
+  /** Animator spinning the fractal from geometry generated once */
+  private FractalAnimator animator = new FractalAnimator(canvas, frameTimeLabel);
+
+  /** Overlay marking the vertex or Line under the mouse and the selected Lines, and label describing them */
+  private Canvas overlay = new Canvas(500.0, 500.0);
+  private Label pickLabel = new Label();
+  
+  /** Picker answering hover and selection from an index of the drawn Lines */
+  private FractalPicker picker = new FractalPicker(canvas, overlay, pickLabel);
+  
   /**
    * The main entry point for the JavaFX application
    * Configures the layout, input fields, and button actions
@@ -65,14 +89,19 @@ public class RectangleFractalGUI extends Application {
     inputPane.add(rotationLabel, 0, 3);
     inputPane.add(rotationField, 1, 3);
     
-    inputPane.add(drawButton, 0, 4, 2, 1);
+    inputPane.add(progressiveBox, 0, 4, 2, 1);
+    inputPane.add(drawButton, 0, 5, 2, 1);
+    inputPane.add(animateButton, 0, 6, 2, 1);
+    inputPane.add(frameTimeLabel, 0, 7, 2, 1);
+    inputPane.add(pickLabel, 0, 8, 2, 1);
     
-    //place the canvas and input pane in the layout
-    pane.setCenter(canvas);
+    //place the canvas with its overlay and input pane in the layout
+    pane.setCenter(new StackPane(canvas, overlay));
     pane.setLeft(inputPane);
     
     //set the action for the draw button
     drawButton.setOnAction(e -> processFractal());
+    animateButton.setOnAction(e -> processAnimation());
     
     //create and set up the scene
     Scene scene = new Scene(pane);
@@ -94,6 +123,9 @@ public class RectangleFractalGUI extends Application {
    * Handles errors and invalid inputs through dialogs
    */
   private void processFractal() {
+    //a drawing replaces the animation
+    animator.stop();
+    animateButton.setSelected(false);
     try {
       //get user inputs
       double width = Double.parseDouble(widthField.getText());
@@ -111,6 +143,18 @@ public class RectangleFractalGUI extends Application {
       else
         baseShape = new Rectangle(center, width, height);
       
+      //in progressive mode, draw level 0 now and the deeper levels as they are generated, and pick from the last one
+      if (progressiveBox.isSelected()) {
+        picker.clear();
+        progressiveRenderer.render(numLevels, level -> {
+          RectangleFractal levelFractal = new RectangleFractal (baseShape, level);
+          levelFractal.rotate(Math.toRadians(rotation));
+          return levelFractal;
+        }, picker::setLines);
+        return;
+      }
+      progressiveRenderer.cancel();
+      
       //create the fractal and apply rotation
       RectangleFractal fractal = new RectangleFractal (baseShape, numLevels);
       fractal.rotate(Math.toRadians(rotation));
@@ -120,7 +164,10 @@ public class RectangleFractalGUI extends Application {
       gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
       
       //draw all Lines of the fractal
-      for (Line line : fractal.getLines()) {
+      Line[] lines = fractal.getLines();
+      FractalDrawEvent event = new FractalDrawEvent();
+      event.begin();
+      for (Line line : lines) {
         gc.strokeLine(
                       line.getFirstPoint().getX(),
                       line.getFirstPoint().getY(),
@@ -128,9 +175,44 @@ public class RectangleFractalGUI extends Application {
                       line.getSecondPoint().getY()
                      );
       }
+      event.finish(fractal, "canvas", lines.length);
+      picker.setLines(lines);
+    } catch (NumberFormatException e) {
+      showErrorDialog("Invalid input", "Please enter valid numbers for all inputs.");
+    } catch (IllegalArgumentException e) {
+      showErrorDialog("Invalid Input", e.getMessage());
+    }
+  }
+  
+  /**
+   * Starts or stops spinning the fractal, depending on the animate button
+   * The geometry is generated once without rotation, and the animator applies the rotation
+   * Handles errors and invalid inputs through dialogs
+   */
+  private void processAnimation() {
+    if (!animateButton.isSelected()) {
+      animator.stop();
+      return;
+    }
+    try {
+      //get user inputs
+      double width = Double.parseDouble(widthField.getText());
+      double height = Double.parseDouble(heightField.getText());
+      int numLevels = Integer.parseInt(numLevelsField.getText());
+      double rotation = Double.parseDouble(rotationField.getText());
+      
+      //determine the base shape: Square if width == height, otherwise Rectangle
+      Point center = new Point (250,250);
+      Rectangle baseShape = width == height ? new Square(center, width) : new Rectangle(center, width, height);
+      
+      progressiveRenderer.cancel();
+      picker.clear();
+      animator.start(new RectangleFractal(baseShape, numLevels), Math.toRadians(rotation));
     } catch (NumberFormatException e) {
+      animateButton.setSelected(false);
       showErrorDialog("Invalid input", "Please enter valid numbers for all inputs.");
     } catch (IllegalArgumentException e) {
+      animateButton.setSelected(false);
       showErrorDialog("Invalid Input", e.getMessage());
     }
   }
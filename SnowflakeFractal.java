@@ -1,4 +1,7 @@
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * The SnowflakeFractal class generates a fractal pattern based on a regular polygon
@@ -8,6 +11,33 @@ import java.util.ArrayList;
  */
 public class SnowflakeFractal<T extends Polygon & RegularPolygon> extends Fractal<T> {
   
+  /** The peak of the "_/\_" pattern over the segment from (0, 0) to (1, 0), rotating oneThird about twoThird */
+  private static final double PEAK_X = 0.5;
+  private static final double PEAK_Y = -Math.sqrt(3) / 6;
+  
+  /**
+   * The system mapping the segment from (0, 0) to (1, 0) onto the four segments of its "_/\_" pattern
+   * Every segment that is not divided further owns its start Point and the Line to its end Point.
+   * The curve never leaves the triangle under its peak, which is the hull of the system
+   */
+  private static final IteratedFunctionSystem KOCH_CURVE = new IteratedFunctionSystem(
+    new AffineMap[] {AffineMap.ofSegment(0, 0, 1.0/3, 0),
+                     AffineMap.ofSegment(1.0/3, 0, PEAK_X, PEAK_Y),
+                     AffineMap.ofSegment(PEAK_X, PEAK_Y, 2.0/3, 0),
+                     AffineMap.ofSegment(2.0/3, 0, 1, 0)},
+    new double[] {0, 0},
+    new double[] {0, 0, 1, 0},
+    new double[] {0, 0, 1, 0, PEAK_X, PEAK_Y});
+  
+  /** The number of levels below which an edge task generates its segment itself instead of forking */
+  private static final int SPLIT_LEVELS = 6;
+  
+  /** Whether getPoints() refines each side of the base polygon in its own task */
+  private boolean parallelEdges;
+  
+  /** Whether getPoints() refines only the first side and rotates it onto the others */
+  private boolean symmetric;
+  
   /**
    * Constructs a new SnowflakeFractal with the given base shape and number of recursion levels
    * 
@@ -18,74 +48,315 @@ public class SnowflakeFractal<T extends Polygon & RegularPolygon> extends Fracta
     super(baseShape, numLevels);
   }
   
+  /**
+   * Checks whether the sides of the base polygon are refined in parallel
+   * 
+   * @return true if getPoints() refines each side of the base polygon in its own task
+   */
+  public boolean isParallelEdges() {
+    return parallelEdges;
+  }
+  
+  /**
+   * Sets whether the sides of the base polygon are refined in parallel
+   * The Points are the same either way, in the same order
+   * 
+   * @param parallelEdges true to refine each side of the base polygon in its own task
+   */
+  public void setParallelEdges(boolean parallelEdges) {
+    this.parallelEdges = parallelEdges;
+    modified();
+  }
+  
+  /**
+   * Checks whether the rotational symmetry of the base polygon is used
+   * 
+   * @return true if only the first side of the base polygon is refined and the others are rotated copies of it
+   */
+  public boolean isSymmetric() {
+    return symmetric;
+  }
+  
+  /**
+   * Sets whether the rotational symmetry of the base polygon is used
+   * Every side of a regular polygon is the first side rotated about the center, and so is its refinement.
+   * The rotated copies may differ from refined sides in the last bits of their coordinates
+   * 
+   * @param symmetric true to refine only the first side of the base polygon and rotate it onto the others
+   */
+  public void setSymmetric(boolean symmetric) {
+    this.symmetric = symmetric;
+    modified();
+  }
+  
   /**
    * Generates and retrieves all points of the snowflake fractal
+   * Every mode generates the Points through the iterated function system, one per final segment at its start
+   * The array is new on every call, but the Points are the fractal's own and must not be changed
    * 
    * @return an array of Points representing the fractal
+   * @throws IllegalStateException if the fractal has too many Points for one array
    */
   public Point[] getPoints() {
-    ArrayList<Point> points = new ArrayList<>();
-    pointsOfFractal.clear(); //clear previously stored points
-    generateSnowflakeFractalPoints(baseShape.getPoints(), numLevels, points);
-    pointsOfFractal.addAll(points);
-    return points.toArray(new Point[0]);
+    Point[] cached = cachedPoints();
+    if (cached != null)
+      return cached;
+    GenerationRun run = startRun();
+    try {
+      double[] packed = new double[2 * pointsPerSide() * baseShape.getPoints().length];
+      Point[] points = new Point[packed.length / 2];
+      if (parallelEdges && !symmetric) {
+        //the tasks create the Points of their own slices
+        refineSides(packed, points);
+      } else {
+        if (symmetric)
+          refineSymmetric(packed);
+        else
+          system().generate(numLevels, new PackedSink(packed, 0), rootMaps());
+        for (int i = 0; i < points.length; i++)
+          points[i] = new Point(packed[2 * i], packed[2 * i + 1]);
+      }
+      keepCorners(points);
+      pointsOfFractal.clear(); //clear previously stored points
+      pointsOfFractal.addAll(Arrays.asList(points));
+      countVertices(points.length);
+      return cachePoints(points);
+    } finally {
+      finishRun(run);
+    }
+  }
+  
+  /**
+   * Generates the Points of the snowflake fractal as packed coordinates, refining each side of the base polygon
+   * in its own task. Each side owns the slice of the array holding its 4^numLevels Points, so the tasks write
+   * straight into the result and nothing is merged. In symmetric mode only the first side is refined.
+   * The Points are in the order of getPoints()
+   * 
+   * @return the coordinates of the Points, as x, y
+   * @throws IllegalStateException if the fractal has too many Points for one array
+   */
+  public double[] getPackedPoints() {
+    GenerationRun run = startRun();
+    try {
+      double[] packed = new double[2 * pointsPerSide() * baseShape.getPoints().length];
+      if (symmetric)
+        refineSymmetric(packed);
+      else
+        refineSides(packed, null);
+      countVertices(packed.length / 2);
+      return packed;
+    } finally {
+      finishRun(run);
+    }
+  }
+  
+  /**
+   * Helper method to count the Points generated on each side of the base polygon
+   * 
+   * @return 4^numLevels
+   * @throws IllegalStateException if the Points of all sides do not fit in one array of coordinates
+   */
+  private int pointsPerSide() {
+    long total = 2L * baseShape.getPoints().length;
+    for (int level = 0; level < numLevels && total <= Integer.MAX_VALUE - 8; level++)
+      total *= 4;
+    if (total > Integer.MAX_VALUE - 8)
+      throw new IllegalStateException("The fractal has too many Points for one array.");
+    return 1 << (2 * numLevels);
+  }
+  
+  /**
+   * Helper method to put the corners of the base polygon in place of the Points generated at them
+   * The output then shares the corners with the base shape,
+   * so that rotate() moves the base shape along with the Points and a new generation keeps the rotation
+   * 
+   * @param points the Points of all sides, with the corner of each side at the start of its slice
+   */
+  private void keepCorners(Point[] points) {
+    Point[] corners = baseShape.getPoints();
+    int perSide = points.length / corners.length;
+    for (int i = 0; i < corners.length; i++)
+      points[i * perSide] = corners[i];
   }
   
   /**
-   * Helper method to recursively generates the points of the snowflake fractal for a given level
+   * Helper method to refine every side of the base polygon in its own task on the common fork/join pool
    * 
-   * @param points the Points of the current level's polygon
-   * @param numLevels the number of recursive levels remaining
-   * @param result the list to store the resulting Points
-   */
-  private void generateSnowflakeFractalPoints (Point[] points, int numLevels, ArrayList<Point> result) {
-    //base case: Add all Points of the current polygon to the result
-    if (numLevels == 0) {
-      for (Point point : points) {
-        result.add(point);
+   * @param packed the array receiving the coordinates of all Points
+   * @param points the array receiving all Points, or null to only fill the coordinates
+   */
+  private void refineSides(double[] packed, Point[] points) {
+    int perSide = pointsPerSide();
+    ArrayDeque<double[]> roots = system().rootNodes(numLevels, rootMaps());
+    EdgeTask[] tasks = new EdgeTask[roots.size()];
+    for (int i = 0; i < tasks.length; i++)
+      tasks[i] = new EdgeTask(roots.poll(), i * perSide, packed, points);
+    ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+      protected void compute() {
+        invokeAll(tasks);
       }
-      return;
+    });
+  }
+  
+  /**
+   * Helper method to refine the first side of the base polygon and rotate its Points onto the other sides
+   * The map taking the first side onto side k, which for a regular polygon is the rotation about its center
+   * by k times its central angle, is built from the corners of the two sides
+   * 
+   * @param packed the array receiving the coordinates of all Points
+   */
+  private void refineSymmetric(double[] packed) {
+    Point[] corners = baseShape.getPoints();
+    int perSide = pointsPerSide();
+    AffineMap firstSide = sideMap(corners, 0);
+    ForkJoinPool.commonPool().invoke(new EdgeTask(system().rootNodes(numLevels, firstSide).poll(), 0, packed, null));
+    AffineMap toFirstSide = firstSide.inverse();
+    for (int k = 1; k < corners.length; k++) {
+      BatchTransform.apply(sideMap(corners, k).compose(toFirstSide), packed, 0, packed, k * perSide, perSide);
+      //start each side exactly at its corner, as refining it would
+      packed[2 * k * perSide] = corners[k].getX();
+      packed[2 * k * perSide + 1] = corners[k].getY();
     }
+  }
+  
+  /**
+   * Helper method to build the map taking the segment from (0, 0) to (1, 0) onto a side of a polygon
+   * 
+   * @param corners the corners of the polygon
+   * @param side the index of the side, which starts at the corner of the same index
+   * @return the map onto the side
+   */
+  private static AffineMap sideMap(Point[] corners, int side) {
+    Point start = corners[side];
+    Point end = corners[(side+1) % corners.length];
+    return AffineMap.ofSegment(start.getX(), start.getY(), end.getX(), end.getY());
+  }
+  
+  /**
+   * The EdgeTask class generates one node of the recursion tree into the slice of the output it owns
+   * A node with many levels to go forks one task for each of its four children, the segments of its "_/\_" pattern,
+   * whose slices follow each other in the order of getPoints()
+   */
+  private static class EdgeTask extends RecursiveAction {
     
-    ArrayList<Point> generatedPoints = new ArrayList<>();
-    for (int i = 0; i < points.length; i++) {
-      Point start = points[i];
-      Point end = points[(i+1) % points.length];
-      
-      //divide the line segment into three equal parts
-      Point oneThird = divide(start, end, 1.0/3);
-      Point twoThird = divide(start, end, 2.0/3);
-      
-      //calculate the peak of the "_/\_" segment
-      Point peak = new Point(oneThird.getX(), oneThird.getY());
-      peak.rotateAbout(twoThird, Math.PI/3);
-      
-      //add the subdivided points to the list
-      generatedPoints.add(start);
-      generatedPoints.add(oneThird);
-      generatedPoints.add(peak);
-      generatedPoints.add(twoThird);
+    /** The version of the serialized form, which RecursiveAction inherits from Serializable */
+    private static final long serialVersionUID = 1L;
+    
+    /** The node of the segment to generate */
+    private final double[] node;
+    
+    /** The index of the first Point of the slice */
+    private final int offset;
+    
+    /** The arrays receiving the coordinates and the Points, which may be null */
+    private final double[] packed;
+    private final transient Point[] points;
+    
+    EdgeTask(double[] node, int offset, double[] packed, Point[] points) {
+      this.node = node;
+      this.offset = offset;
+      this.packed = packed;
+      this.points = points;
+    }
+    
+    protected void compute() {
+      int levels = IteratedFunctionSystem.getLevels(node);
+      if (levels <= SPLIT_LEVELS) {
+        PackedSink sink = new PackedSink(packed, offset);
+        KOCH_CURVE.generate(node, sink);
+        if (points != null) {
+          for (int i = offset; i < sink.index; i++)
+            points[i] = new Point(packed[2 * i], packed[2 * i + 1]);
+        }
+        return;
+      }
+      double[][] children = KOCH_CURVE.expand(node, PackedSink.NONE);
+      int quarter = 1 << (2 * (levels - 1));
+      EdgeTask[] tasks = new EdgeTask[children.length];
+      for (int k = 0; k < children.length; k++)
+        tasks[k] = new EdgeTask(children[k], offset + k * quarter, packed, points);
+      invokeAll(tasks);
+    }
+  }
+  
+  /**
+   * The PackedSink class writes the Points it receives one after the other into packed coordinates
+   * The Lines are left out, since each one starts at the Point emitted with it
+   */
+  private static class PackedSink implements GeometrySink {
+    
+    /** A sink for nodes that emit nothing */
+    static final PackedSink NONE = new PackedSink(new double[0], 0);
+    
+    /** The array receiving the coordinates */
+    private final double[] packed;
+    
+    /** The index of the next Point to write */
+    private int index;
+    
+    PackedSink(double[] packed, int index) {
+      this.packed = packed;
+      this.index = index;
     }
-    //recursive call to process the next level of fractal Points
-    generateSnowflakeFractalPoints(generatedPoints.toArray(new Point[0]), numLevels - 1, result);
-  } 
+    
+    public void point(double x, double y) {
+      packed[2 * index] = x;
+      packed[2 * index + 1] = y;
+      index++;
+    }
+    
+    public void line(double x1, double y1, double x2, double y2) {
+    }
+  }
   
   /**
    * Generates and retrieves all Lines of the snowflake fractal
+   * The Lines join the Points of getPoints(), and like them they are shared with the fractal and must not be changed
    * 
    * @return an array of Lines representing the edges of the fractal
    */
   public Line[] getLines() {
-    Point[] points = getPoints();
-    Line[] lines = new Line[points.length];
-    int i = 0;
-    
-    //a loop to create Lines connecting consecutive Points
-    for (; i < points.length-1; i = i + 1) 
-      lines[i] = new Line (points[i], points[i+1]);
-    //connect the last Point to the first to close the polygon
-    lines[i] = new Line(points[i],points[0]);
-    return lines;
+    Line[] cached = cachedLines();
+    if (cached != null)
+      return cached;
+    GenerationRun run = startRun();
+    try {
+      Point[] points = getPoints();
+      Line[] lines = new Line[points.length];
+      int i = 0;
+      
+      //a loop to create Lines connecting consecutive Points
+      for (; i < points.length-1; i = i + 1) 
+        lines[i] = new Line (points[i], points[i+1]);
+      //connect the last Point to the first to close the polygon
+      lines[i] = new Line(points[i],points[0]);
+      countEdges(lines.length);
+      return cacheLines(lines);
+    } finally {
+      finishRun(run);
+    }
+  }
+  
+  /**
+   * Retrieves the iterated function system shared by all SnowflakeFractals
+   * 
+   * @return the system dividing a segment into its "_/\_" pattern
+   */
+  protected IteratedFunctionSystem system() {
+    return KOCH_CURVE;
+  }
+  
+  /**
+   * Retrieves the maps taking the segment from (0, 0) to (1, 0) onto each side of the base polygon
+   * 
+   * @return one map per side of the base polygon, in order
+   */
+  protected AffineMap[] rootMaps() {
+    Point[] points = baseShape.getPoints();
+    AffineMap[] maps = new AffineMap[points.length];
+    for (int i = 0; i < points.length; i++)
+      maps[i] = sideMap(points, i);
+    return maps;
   }
   
   public void printPoints() {
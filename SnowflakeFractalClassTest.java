@@ -184,4 +184,161 @@ public class SnowflakeFractalClassTest {
     assertNotEquals(originalPoints, rotatedPoints);
     assertEquals(rotatedPoint, rotatedPoints[0]);
   }
-}
\ No newline at end of file
+  
+  /**
+   * Test pointStream() and lineStream()
+   * The streams should produce the Points and Lines of getPoints() and getLines() in the same order
+   */
+  @Test
+  public void testStreams() {
+    SnowflakeFractal<NGon> fractal = new SnowflakeFractal<>(ngon, 3);
+    
+    //verify the sequential streams
+    assertArrayEquals(fractal.getPoints(), fractal.pointStream().toArray());
+    assertArrayEquals(fractal.getLines(), fractal.lineStream().toArray());
+    
+    //verify the parallel streams
+    assertArrayEquals(fractal.getPoints(), fractal.pointStream().parallel().toArray());
+    assertArrayEquals(fractal.getLines(), fractal.lineStream().parallel().toArray());
+  }
+  
+  /**
+   * Test that repeated reads are served from the cache until the fractal changes
+   */
+  @Test
+  public void testGenerationCache() {
+    NGon base = new NGon(new Point(0, 0), 1.0, 5);
+    SnowflakeFractal<NGon> fractal = new SnowflakeFractal<>(base, 2);
+    FractalMetrics metrics = FractalMetrics.getRegistry();
+    metrics.reset();
+    
+    //only the first read generates the fractal
+    Line[] lines = fractal.getLines();
+    assertArrayEquals(lines, fractal.getLines());
+    assertArrayEquals(fractal.getPoints(), fractal.getPoints());
+    assertEquals(1, metrics.getStats("SnowflakeFractal").getRuns());
+    assertNotSame(fractal.getLines(), fractal.getLines());
+    
+    //every change generates the fractal again
+    long version = fractal.getVersion();
+    fractal.setCenter(new Point(5, 5));
+    assertNotEquals(version, fractal.getVersion());
+    assertArrayEquals(fractal.lineStream().toArray(), fractal.getLines());
+    
+    base.setSideLength(2.0);
+    assertArrayEquals(fractal.lineStream().toArray(), fractal.getLines());
+    
+    fractal.setNumLevels(3);
+    assertEquals(4 * 5 * 4 * 4, fractal.getLines().length);
+    assertEquals(4, metrics.getStats("SnowflakeFractal").getRuns());
+  }
+  
+  /**
+   * Test that refining the sides in parallel gives exactly the Points of the sequential generation
+   * The deepest level forks the sides into smaller tasks
+   */
+  @Test
+  public void testParallelEdges() {
+    for (int levels = 0; levels <= 7; levels += 7) {
+      SnowflakeFractal<NGon> sequential = new SnowflakeFractal<>(new NGon(new Point(3, 4), 10.0, 5), levels);
+      SnowflakeFractal<NGon> parallel = new SnowflakeFractal<>(new NGon(new Point(3, 4), 10.0, 5), levels);
+      parallel.setParallelEdges(true);
+      assertTrue(parallel.isParallelEdges());
+      
+      Point[] expected = sequential.getPoints();
+      Point[] actual = parallel.getPoints();
+      double[] packed = parallel.getPackedPoints();
+      assertEquals(5 * (1 << (2 * levels)), actual.length);
+      assertEquals(expected.length, actual.length);
+      assertEquals(2 * expected.length, packed.length);
+      for (int i = 0; i < expected.length; i++) {
+        assertEquals(expected[i].getX(), actual[i].getX(), 0);
+        assertEquals(expected[i].getY(), actual[i].getY(), 0);
+        assertEquals(expected[i].getX(), packed[2 * i], 0);
+        assertEquals(expected[i].getY(), packed[2 * i + 1], 0);
+      }
+      assertArrayEquals(sequential.getLines(), parallel.getLines());
+    }
+    
+    try {
+      new SnowflakeFractal<Square>(new Square(new Point(0, 0), 1.0), 16).getPackedPoints();
+      fail("A fractal too large for one array should be rejected");
+    } catch (IllegalStateException e) {
+    }
+  }
+  
+  /**
+   * Test that a rotated fractal is generated rotated again, refining its sides in parallel or not
+   */
+  @Test
+  public void testRotateParallelEdges() {
+    SnowflakeFractal<EquilateralTriangle> reference = new SnowflakeFractal<>(new EquilateralTriangle(new Point(250, 250), 100.0), 2);
+    SnowflakeFractal<EquilateralTriangle> parallel = new SnowflakeFractal<>(new EquilateralTriangle(new Point(250, 250), 100.0), 2);
+    Point start = reference.getLines()[0].getFirstPoint();
+    Point expected = new Point(start.getX(), start.getY());
+    expected.rotateAbout(reference.getCenter(), Math.toRadians(90));
+    
+    //switching modes drops the cached generation
+    parallel.getLines();
+    long version = parallel.getVersion();
+    parallel.setParallelEdges(true);
+    assertTrue(parallel.getVersion() > version);
+    parallel.getLines();
+    
+    reference.rotate(Math.toRadians(90));
+    parallel.rotate(Math.toRadians(90));
+    assertEquals(expected, reference.getLines()[0].getFirstPoint());
+    assertArrayEquals(reference.getLines(), parallel.getLines());
+    assertArrayEquals(reference.getPoints(), parallel.getPoints());
+  }
+  
+  /**
+   * Test that rotating the first side onto the others gives the Points of refining every side
+   */
+  @Test
+  public void testSymmetric() {
+    NGon twelveGon = new NGon(new Point(50, -20), 30.0, 12);
+    SnowflakeFractal<NGon> reference = new SnowflakeFractal<>(twelveGon, 4);
+    SnowflakeFractal<NGon> symmetric = new SnowflakeFractal<>(twelveGon, 4);
+    symmetric.setSymmetric(true);
+    assertTrue(symmetric.isSymmetric());
+    
+    Point[] expected = reference.getPoints();
+    Point[] actual = symmetric.getPoints();
+    double[] packed = symmetric.getPackedPoints();
+    assertEquals(12 * 4 * 4 * 4 * 4, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i].getX(), actual[i].getX(), 1e-9);
+      assertEquals(expected[i].getY(), actual[i].getY(), 1e-9);
+      assertEquals(actual[i].getX(), packed[2 * i], 0);
+      assertEquals(actual[i].getY(), packed[2 * i + 1], 0);
+    }
+    
+    //a moved and rotated fractal is still symmetric about its center
+    symmetric.setCenter(new Point(0, 0));
+    reference.setCenter(new Point(0, 0));
+    twelveGon.rotate(0.4);
+    assertArrayEquals(reference.getLines(), symmetric.getLines());
+  }
+  
+  /**
+   * Test that a rotated fractal is generated rotated again when only its first side is refined
+   */
+  @Test
+  public void testRotateSymmetric() {
+    SnowflakeFractal<EquilateralTriangle> reference = new SnowflakeFractal<>(new EquilateralTriangle(new Point(250, 250), 100.0), 2);
+    SnowflakeFractal<EquilateralTriangle> symmetric = new SnowflakeFractal<>(new EquilateralTriangle(new Point(250, 250), 100.0), 2);
+    
+    //switching modes drops the cached generation
+    symmetric.getLines();
+    long version = symmetric.getVersion();
+    symmetric.setSymmetric(true);
+    assertTrue(symmetric.getVersion() > version);
+    symmetric.getLines();
+    
+    reference.rotate(Math.toRadians(90));
+    symmetric.rotate(Math.toRadians(90));
+    assertArrayEquals(reference.getLines(), symmetric.getLines());
+    assertArrayEquals(reference.getPoints(), symmetric.getPoints());
+  }
+}
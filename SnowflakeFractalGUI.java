@@ -4,10 +4,13 @@ import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.StackPane;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.Alert;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ToggleButton;
 import javafx.scene.canvas.GraphicsContext;
 
 /**
@@ -23,9 +26,30 @@ public class SnowflakeFractalGUI extends Application {
   private TextField numLevelsField = new TextField("1");
   private TextField rotationField = new TextField("0");
   
+  /** Check box to draw the fractal level by level */
+  private CheckBox progressiveBox = new CheckBox("Progressive");
+  
   /** Canvas for drawing the fractal */
   private Canvas canvas = new Canvas(500.0, 500.0);
   
+  /** Renderer drawing the levels as they are generated in progressive mode */
+  private ProgressiveRenderer progressiveRenderer =
+    new ProgressiveRenderer(canvas, e -> showErrorDialog("Rendering failed", String.valueOf(e.getMessage())));
+  
+  /** Button to start and stop spinning the fractal, and label showing the frame time */
+  private ToggleButton animateButton = new ToggleButton("Animate");
+  private Label frameTimeLabel = new Label();
+  
+  /** Animator spinning the fractal from geometry generated once */
+  private FractalAnimator animator = new FractalAnimator(canvas, frameTimeLabel);
+
+  /** Overlay marking the vertex or Line under the mouse and the selected Lines, and label describing them */
+  private Canvas overlay = new Canvas(500.0, 500.0);
+  private Label pickLabel = new Label();
+  
+  /** Picker answering hover and selection from an index of the drawn Lines */
+  private FractalPicker picker = new FractalPicker(canvas, overlay, pickLabel);
+  
   /**
    * The main entry point for the JavaFX application
    * Sets up the layout, input fields, and event handling for the GUI
@@ -64,14 +88,19 @@ public class SnowflakeFractalGUI extends Application {
     inputPane.add(rotationLabel, 0, 3);
     inputPane.add(rotationField, 1, 3);
     
-    inputPane.add(drawButton, 0, 4, 2, 1);
+    inputPane.add(progressiveBox, 0, 4, 2, 1);
+    inputPane.add(drawButton, 0, 5, 2, 1);
+    inputPane.add(animateButton, 0, 6, 2, 1);
+    inputPane.add(frameTimeLabel, 0, 7, 2, 1);
+    inputPane.add(pickLabel, 0, 8, 2, 1);
     
-    //place the canvas and input panel in the layout
-    pane.setCenter(canvas);
+    //place the canvas with its overlay and input panel in the layout
+    pane.setCenter(new StackPane(canvas, overlay));
     pane.setLeft(inputPane);
     
     //set the action for the draw button
     drawButton.setOnAction(e -> processFractal());
+    animateButton.setOnAction(e -> processAnimation());
     
     //create and set up the scene
     Scene scene = new Scene(pane);
@@ -93,6 +122,9 @@ public class SnowflakeFractalGUI extends Application {
    * Handles invalid inputs and errors through dialogs
    */
   private void processFractal() {
+    //a drawing replaces the animation
+    animator.stop();
+    animateButton.setSelected(false);
     try {
       //get user inputs
       int numSides = Integer.parseInt(numSidesField.getText());
@@ -100,33 +132,14 @@ public class SnowflakeFractalGUI extends Application {
       int numLevels = Integer.parseInt(numLevelsField.getText());
       double rotation = Double.parseDouble(rotationField.getText());
       
-      //center of the canvas
-      Point center = new Point (250,250);
-      
-      //choose which shape will be the base shape using the numSides
-      if (numSides < 3)
-        throw new IllegalArgumentException("The number of sides must be at least 3.");
-      else if (numSides == 3) {
-        //create a fractal with an equilateral triangle base
-        SnowflakeFractal<EquilateralTriangle> triangle =
-          new SnowflakeFractal<EquilateralTriangle> ((new EquilateralTriangle(center, sideLength)),numLevels);
-        triangle.rotate(Math.toRadians(rotation));
-        drawFractal(triangle);
-      }
-      else if (numSides == 4) {
-        //create a fractal with a square base
-        SnowflakeFractal<Square> square = 
-          new SnowflakeFractal<Square> ((new Square (center, sideLength)),numLevels);
-        square.rotate(Math.toRadians(rotation));
-        drawFractal(square);
-      }
-      else {
-         //create a fractal with a regular polygon base
-        SnowflakeFractal<NGon> ngon = 
-          new SnowflakeFractal<NGon> ((new NGon (center, sideLength, numSides)),numLevels);
-        ngon.rotate(Math.toRadians(rotation));
-        drawFractal(ngon);
+      //in progressive mode, draw level 0 now and the deeper levels as they are generated, and pick from the last one
+      if (progressiveBox.isSelected()) {
+        picker.clear();
+        progressiveRenderer.render(numLevels, level -> createFractal(numSides, sideLength, level, rotation), picker::setLines);
+        return;
       }
+      progressiveRenderer.cancel();
+      drawFractal(createFractal(numSides, sideLength, numLevels, rotation));
     } 
     catch (NumberFormatException e) {
       showErrorDialog("Invalid input", "Please enter valid numbers for all inputs.");
@@ -135,6 +148,69 @@ public class SnowflakeFractalGUI extends Application {
     }
   }
   
+  /**
+   * Starts or stops spinning the fractal, depending on the animate button
+   * The geometry is generated once without rotation, and the animator applies the rotation
+   * Handles invalid inputs and errors through dialogs
+   */
+  private void processAnimation() {
+    if (!animateButton.isSelected()) {
+      animator.stop();
+      return;
+    }
+    try {
+      //get user inputs
+      int numSides = Integer.parseInt(numSidesField.getText());
+      double sideLength = Double.parseDouble(sideLengthField.getText());
+      int numLevels = Integer.parseInt(numLevelsField.getText());
+      double rotation = Double.parseDouble(rotationField.getText());
+      
+      progressiveRenderer.cancel();
+      picker.clear();
+      animator.start(createFractal(numSides, sideLength, numLevels, 0), Math.toRadians(rotation));
+    }
+    catch (NumberFormatException e) {
+      animateButton.setSelected(false);
+      showErrorDialog("Invalid input", "Please enter valid numbers for all inputs.");
+    } catch (IllegalArgumentException e) {
+      animateButton.setSelected(false);
+      showErrorDialog("Invalid Input", e.getMessage());
+    }
+  }
+  
+  /**
+   * Creates a rotated snowflake fractal centered on the canvas
+   * The base shape is chosen from the number of sides
+   *
+   * @param numSides the number of sides of the base shape
+   * @param sideLength the side length of the base shape
+   * @param numLevels the number of levels of the fractal
+   * @param rotation the rotation of the fractal, in degree
+   * @return the new fractal
+   * @throws IllegalArgumentException if the number of sides is less than 3
+   */
+  private static SnowflakeFractal<?> createFractal(int numSides, double sideLength, int numLevels, double rotation) {
+    //center of the canvas
+    Point center = new Point (250,250);
+    SnowflakeFractal<?> fractal;
+    
+    //choose which shape will be the base shape using the numSides
+    if (numSides < 3)
+      throw new IllegalArgumentException("The number of sides must be at least 3.");
+    else if (numSides == 3)
+      //create a fractal with an equilateral triangle base
+      fractal = new SnowflakeFractal<EquilateralTriangle> ((new EquilateralTriangle(center, sideLength)),numLevels);
+    else if (numSides == 4)
+      //create a fractal with a square base
+      fractal = new SnowflakeFractal<Square> ((new Square (center, sideLength)),numLevels);
+    else
+      //create a fractal with a regular polygon base
+      fractal = new SnowflakeFractal<NGon> ((new NGon (center, sideLength, numSides)),numLevels);
+    
+    fractal.rotate(Math.toRadians(rotation));
+    return fractal;
+  }
+  
   /**
    * Draws the fractal on the canvas
    *
@@ -147,7 +223,10 @@ public class SnowflakeFractalGUI extends Application {
     gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
     
     //draw all lines of the fractal
-    for (Line line : fractal.getLines()) {
+    Line[] lines = fractal.getLines();
+    FractalDrawEvent event = new FractalDrawEvent();
+    event.begin();
+    for (Line line : lines) {
       gc.strokeLine(
                     line.getFirstPoint().getX(),
                     line.getFirstPoint().getY(),
@@ -155,6 +234,8 @@ public class SnowflakeFractalGUI extends Application {
                     line.getSecondPoint().getY()
                    );
     }
+    event.finish(fractal, "canvas", lines.length);
+    picker.setLines(lines);
   }
   
   /**
@@ -0,0 +1,470 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * The SpatialIndex class answers nearest, box and crossing queries over the geometry of a fractal
+ * It is a packed R-tree: the elements are sorted along a Z-order curve, then cut into nodes of
+ * NODE_CAPACITY consecutive elements, and the nodes are grouped the same way level after level
+ * up to a single root. The tree is built at once from all elements, with the sort and the bounds
+ * computed in parallel, and is stored in flat arrays.
+ *
+ * Every element is a segment; a Point is indexed as a segment of length zero.
+ * Queries return the index the element had in the array the SpatialIndex was built from.
+ * A SpatialIndex is immutable, so it can be queried from many threads
+ */
+public class SpatialIndex {
+
+  /** The number of elements in a leaf, and of children in an inner node */
+  private static final int NODE_CAPACITY = 16;
+
+  /** The number of bits kept per axis in the Z-order keys */
+  private static final int KEY_BITS = 15;
+
+  /** The number of elements */
+  private final int size;
+
+  /** The elements in Z-order, as x1, y1, x2, y2 */
+  private final double[] segments;
+
+  /** The original index of each element in Z-order */
+  private final int[] ids;
+
+  /** The bounds of the nodes of each level as minX, minY, maxX, maxY, from the leaves up to the root */
+  private final double[][] bounds;
+
+  /**
+   * Builds a SpatialIndex over segments
+   *
+   * @param packed the segments as x1, y1, x2, y2
+   * @throws IllegalArgumentException if the array does not hold whole segments
+   */
+  public SpatialIndex(double[] packed) {
+    if (packed.length % 4 != 0)
+      throw new IllegalArgumentException("The array must hold whole segments.");
+    size = packed.length / 4;
+    segments = new double[packed.length];
+    ids = new int[size];
+    sort(packed);
+
+    //build the levels bottom-up until a single node covers everything
+    int levels = 1;
+    for (long nodes = nodeCount(size); nodes > 1; nodes = nodeCount(nodes))
+      levels++;
+    bounds = new double[size == 0 ? 0 : levels][];
+    if (size == 0)
+      return;
+    bounds[0] = new double[4 * nodeCount(size)];
+    IntStream.range(0, nodeCount(size)).parallel().forEach(node -> boundLeaf(node));
+    for (int level = 1; level < levels; level++) {
+      int finalLevel = level;
+      int count = nodeCount(bounds[level - 1].length / 4);
+      bounds[level] = new double[4 * count];
+      IntStream.range(0, count).parallel().forEach(node -> boundInner(finalLevel, node));
+    }
+  }
+
+  /**
+   * Builds a SpatialIndex over Points
+   *
+   * @param points the Points to index
+   * @return the index
+   */
+  public static SpatialIndex ofPoints(Point[] points) {
+    double[] packed = new double[4 * points.length];
+    for (int i = 0; i < points.length; i++) {
+      packed[4 * i] = packed[4 * i + 2] = points[i].getX();
+      packed[4 * i + 1] = packed[4 * i + 3] = points[i].getY();
+    }
+    return new SpatialIndex(packed);
+  }
+
+  /**
+   * Builds a SpatialIndex over Lines
+   *
+   * @param lines the Lines to index
+   * @return the index
+   */
+  public static SpatialIndex ofLines(Line[] lines) {
+    double[] packed = new double[4 * lines.length];
+    for (int i = 0; i < lines.length; i++) {
+      packed[4 * i] = lines[i].getFirstPoint().getX();
+      packed[4 * i + 1] = lines[i].getFirstPoint().getY();
+      packed[4 * i + 2] = lines[i].getSecondPoint().getX();
+      packed[4 * i + 3] = lines[i].getSecondPoint().getY();
+    }
+    return new SpatialIndex(packed);
+  }
+
+  /**
+   * Retrieves the number of elements indexed
+   *
+   * @return the number of elements
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Finds the element closest to a Point
+   *
+   * @param x the x coordinate of the Point
+   * @param y the y coordinate of the Point
+   * @return the index of the closest element, or -1 if the index is empty
+   */
+  public int nearest(double x, double y) {
+    return nearest(x, y, Double.POSITIVE_INFINITY);
+  }
+
+  /**
+   * Finds the element closest to a Point, within a maximum distance
+   *
+   * @param x the x coordinate of the Point
+   * @param y the y coordinate of the Point
+   * @param maxDistance the largest distance to look at
+   * @return the index of the closest element, or -1 if no element is close enough
+   */
+  public int nearest(double x, double y, double maxDistance) {
+    //best holds the squared distance and the position of the closest element found so far
+    double[] best = {maxDistance * maxDistance, -1};
+    if (size > 0)
+      nearest(bounds.length - 1, 0, x, y, best);
+    return best[1] < 0 ? -1 : ids[(int) best[1]];
+  }
+
+  /**
+   * Finds the elements crossing or lying in a box
+   *
+   * @param minX the smallest x coordinate of the box
+   * @param minY the smallest y coordinate of the box
+   * @param maxX the largest x coordinate of the box
+   * @param maxY the largest y coordinate of the box
+   * @return the indexes of the elements, in increasing order
+   */
+  public int[] range(double minX, double minY, double maxX, double maxY) {
+    IntBuffer found = new IntBuffer();
+    if (size > 0)
+      range(bounds.length - 1, 0, minX, minY, maxX, maxY, found);
+    return found.toSortedArray();
+  }
+
+  /**
+   * Finds the elements crossing or touching a segment
+   *
+   * @param x1 the x coordinate of the start of the segment
+   * @param y1 the y coordinate of the start of the segment
+   * @param x2 the x coordinate of the end of the segment
+   * @param y2 the y coordinate of the end of the segment
+   * @return the indexes of the elements, in increasing order
+   */
+  public int[] intersecting(double x1, double y1, double x2, double y2) {
+    IntBuffer found = new IntBuffer();
+    if (size > 0)
+      intersecting(bounds.length - 1, 0, x1, y1, x2, y2, found);
+    return found.toSortedArray();
+  }
+
+  /**
+   * Helper method to sort the elements along a Z-order curve through their centers
+   *
+   * @param packed the elements in their original order
+   */
+  private void sort(double[] packed) {
+    double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < packed.length; i += 4) {
+      double cx = (packed[i] + packed[i + 2]) / 2;
+      double cy = (packed[i + 1] + packed[i + 3]) / 2;
+      minX = Math.min(minX, cx);
+      minY = Math.min(minY, cy);
+      maxX = Math.max(maxX, cx);
+      maxY = Math.max(maxY, cy);
+    }
+    int cells = (1 << KEY_BITS) - 1;
+    double scaleX = maxX > minX ? cells / (maxX - minX) : 0;
+    double scaleY = maxY > minY ? cells / (maxY - minY) : 0;
+    double originX = minX;
+    double originY = minY;
+
+    //a key is the Z-order code of the center followed by the position, so sorting keeps equal codes stable
+    long[] keys = new long[size];
+    IntStream.range(0, size).parallel().forEach(i -> {
+      int qx = (int) (((packed[4 * i] + packed[4 * i + 2]) / 2 - originX) * scaleX);
+      int qy = (int) (((packed[4 * i + 1] + packed[4 * i + 3]) / 2 - originY) * scaleY);
+      keys[i] = (interleave(qx) | interleave(qy) << 1) << 31 | i;
+    });
+    Arrays.parallelSort(keys);
+    IntStream.range(0, size).parallel().forEach(i -> {
+      int id = (int) (keys[i] & Integer.MAX_VALUE);
+      ids[i] = id;
+      System.arraycopy(packed, 4 * id, segments, 4 * i, 4);
+    });
+  }
+
+  /**
+   * Helper method to spread the bits of a coordinate so that they fill every other bit
+   *
+   * @param value the coordinate, on KEY_BITS bits
+   * @return the spread bits
+   */
+  private static long interleave(int value) {
+    long bits = 0;
+    for (int b = 0; b < KEY_BITS; b++)
+      bits |= (long) (value >> b & 1) << (2 * b);
+    return bits;
+  }
+
+  /**
+   * Helper method to count the nodes needed to hold a number of children
+   *
+   * @param children the number of children
+   * @return the number of nodes
+   */
+  private static int nodeCount(long children) {
+    return (int) ((children + NODE_CAPACITY - 1) / NODE_CAPACITY);
+  }
+
+  /**
+   * Helper method to compute the bounds of a leaf from its elements
+   *
+   * @param node the leaf
+   */
+  private void boundLeaf(int node) {
+    double[] box = bounds[0];
+    box[4 * node] = box[4 * node + 1] = Double.POSITIVE_INFINITY;
+    box[4 * node + 2] = box[4 * node + 3] = Double.NEGATIVE_INFINITY;
+    int last = Math.min(size, (node + 1) * NODE_CAPACITY);
+    for (int e = node * NODE_CAPACITY; e < last; e++) {
+      box[4 * node] = Math.min(box[4 * node], Math.min(segments[4 * e], segments[4 * e + 2]));
+      box[4 * node + 1] = Math.min(box[4 * node + 1], Math.min(segments[4 * e + 1], segments[4 * e + 3]));
+      box[4 * node + 2] = Math.max(box[4 * node + 2], Math.max(segments[4 * e], segments[4 * e + 2]));
+      box[4 * node + 3] = Math.max(box[4 * node + 3], Math.max(segments[4 * e + 1], segments[4 * e + 3]));
+    }
+  }
+
+  /**
+   * Helper method to compute the bounds of an inner node from its children
+   *
+   * @param level the level of the node
+   * @param node the node
+   */
+  private void boundInner(int level, int node) {
+    double[] box = bounds[level];
+    double[] children = bounds[level - 1];
+    box[4 * node] = box[4 * node + 1] = Double.POSITIVE_INFINITY;
+    box[4 * node + 2] = box[4 * node + 3] = Double.NEGATIVE_INFINITY;
+    int last = Math.min(children.length / 4, (node + 1) * NODE_CAPACITY);
+    for (int c = node * NODE_CAPACITY; c < last; c++) {
+      box[4 * node] = Math.min(box[4 * node], children[4 * c]);
+      box[4 * node + 1] = Math.min(box[4 * node + 1], children[4 * c + 1]);
+      box[4 * node + 2] = Math.max(box[4 * node + 2], children[4 * c + 2]);
+      box[4 * node + 3] = Math.max(box[4 * node + 3], children[4 * c + 3]);
+    }
+  }
+
+  /**
+   * Helper method to retrieve the number of children of a node
+   *
+   * @param level the level of the node
+   * @param node the node
+   * @return the position after the last child, elements for a leaf and nodes of the level below otherwise
+   */
+  private int childEnd(int level, int node) {
+    int count = level == 0 ? size : bounds[level - 1].length / 4;
+    return Math.min(count, (node + 1) * NODE_CAPACITY);
+  }
+
+  /**
+   * Helper method to search a subtree for the element closest to a Point
+   *
+   * @param level the level of the node
+   * @param node the node
+   * @param x the x coordinate of the Point
+   * @param y the y coordinate of the Point
+   * @param best the squared distance and position of the closest element found so far
+   */
+  private void nearest(int level, int node, double x, double y, double[] best) {
+    double[] box = bounds[level];
+    double dx = Math.max(0, Math.max(box[4 * node] - x, x - box[4 * node + 2]));
+    double dy = Math.max(0, Math.max(box[4 * node + 1] - y, y - box[4 * node + 3]));
+    if (dx * dx + dy * dy > best[0])
+      return;
+    int end = childEnd(level, node);
+    for (int child = node * NODE_CAPACITY; child < end; child++) {
+      if (level > 0) {
+        nearest(level - 1, child, x, y, best);
+        continue;
+      }
+      double distance = distanceSquared(x, y, segments[4 * child], segments[4 * child + 1],
+                                        segments[4 * child + 2], segments[4 * child + 3]);
+      if (distance <= best[0] && (best[1] < 0 || distance < best[0] || ids[child] < ids[(int) best[1]])) {
+        best[0] = distance;
+        best[1] = child;
+      }
+    }
+  }
+
+  /**
+   * Helper method to search a subtree for the elements crossing or lying in a box
+   *
+   * @param level the level of the node
+   * @param node the node
+   * @param minX the smallest x coordinate of the box
+   * @param minY the smallest y coordinate of the box
+   * @param maxX the largest x coordinate of the box
+   * @param maxY the largest y coordinate of the box
+   * @param found the indexes found so far
+   */
+  private void range(int level, int node, double minX, double minY, double maxX, double maxY, IntBuffer found) {
+    double[] box = bounds[level];
+    if (box[4 * node] > maxX || box[4 * node + 2] < minX || box[4 * node + 1] > maxY || box[4 * node + 3] < minY)
+      return;
+    int end = childEnd(level, node);
+    for (int child = node * NODE_CAPACITY; child < end; child++) {
+      if (level > 0)
+        range(level - 1, child, minX, minY, maxX, maxY, found);
+      else if (crossesBox(segments[4 * child], segments[4 * child + 1], segments[4 * child + 2], segments[4 * child + 3],
+                          minX, minY, maxX, maxY))
+        found.add(ids[child]);
+    }
+  }
+
+  /**
+   * Helper method to search a subtree for the elements crossing or touching a segment
+   *
+   * @param level the level of the node
+   * @param node the node
+   * @param x1 the x coordinate of the start of the segment
+   * @param y1 the y coordinate of the start of the segment
+   * @param x2 the x coordinate of the end of the segment
+   * @param y2 the y coordinate of the end of the segment
+   * @param found the indexes found so far
+   */
+  private void intersecting(int level, int node, double x1, double y1, double x2, double y2, IntBuffer found) {
+    double[] box = bounds[level];
+    if (!crossesBox(x1, y1, x2, y2, box[4 * node], box[4 * node + 1], box[4 * node + 2], box[4 * node + 3]))
+      return;
+    int end = childEnd(level, node);
+    for (int child = node * NODE_CAPACITY; child < end; child++) {
+      if (level > 0)
+        intersecting(level - 1, child, x1, y1, x2, y2, found);
+      else if (segmentsCross(x1, y1, x2, y2, segments[4 * child], segments[4 * child + 1],
+                             segments[4 * child + 2], segments[4 * child + 3]))
+        found.add(ids[child]);
+    }
+  }
+
+  /**
+   * Helper method to compute the squared distance from a Point to a segment
+   *
+   * @return the squared distance from (x, y) to the segment from (x1, y1) to (x2, y2)
+   */
+  private static double distanceSquared(double x, double y, double x1, double y1, double x2, double y2) {
+    double dx = x2 - x1;
+    double dy = y2 - y1;
+    double length = dx * dx + dy * dy;
+    double t = length == 0 ? 0 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / length));
+    double ex = x1 + t * dx - x;
+    double ey = y1 + t * dy - y;
+    return ex * ex + ey * ey;
+  }
+
+  /**
+   * Helper method to check whether a segment crosses or lies in a box, by clipping it to the box
+   *
+   * @return true if the segment from (x1, y1) to (x2, y2) meets the box; false if not
+   */
+  private static boolean crossesBox(double x1, double y1, double x2, double y2,
+                                    double minX, double minY, double maxX, double maxY) {
+    double dx = x2 - x1;
+    double dy = y2 - y1;
+    double[] p = {-dx, dx, -dy, dy};
+    double[] q = {x1 - minX, maxX - x1, y1 - minY, maxY - y1};
+    double enter = 0;
+    double exit = 1;
+    for (int i = 0; i < 4; i++) {
+      if (p[i] == 0) {
+        if (q[i] < 0)
+          return false;
+      }
+      else {
+        double t = q[i] / p[i];
+        if (p[i] < 0)
+          enter = Math.max(enter, t);
+        else
+          exit = Math.min(exit, t);
+        if (enter > exit)
+          return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Helper method to check whether two segments cross or touch
+   *
+   * @return true if the segment from (x1, y1) to (x2, y2) meets the one from (x3, y3) to (x4, y4); false if not
+   */
+  private static boolean segmentsCross(double x1, double y1, double x2, double y2,
+                                       double x3, double y3, double x4, double y4) {
+    double d1 = orientation(x3, y3, x4, y4, x1, y1);
+    double d2 = orientation(x3, y3, x4, y4, x2, y2);
+    double d3 = orientation(x1, y1, x2, y2, x3, y3);
+    double d4 = orientation(x1, y1, x2, y2, x4, y4);
+    if (((d1 > 0 && d2 < 0) || (d1 < 0 && d2 > 0)) && ((d3 > 0 && d4 < 0) || (d3 < 0 && d4 > 0)))
+      return true;
+    return (d1 == 0 && onSegment(x3, y3, x4, y4, x1, y1)) || (d2 == 0 && onSegment(x3, y3, x4, y4, x2, y2))
+      || (d3 == 0 && onSegment(x1, y1, x2, y2, x3, y3)) || (d4 == 0 && onSegment(x1, y1, x2, y2, x4, y4));
+  }
+
+  /**
+   * Helper method to compute on which side of a segment a Point lies
+   *
+   * @return positive on one side of the line through (x1, y1) and (x2, y2), negative on the other, 0 on the line
+   */
+  private static double orientation(double x1, double y1, double x2, double y2, double x, double y) {
+    return (x2 - x1) * (y - y1) - (y2 - y1) * (x - x1);
+  }
+
+  /**
+   * Helper method to check whether a Point on the line through a segment lies within the segment
+   *
+   * @return true if (x, y) lies in the bounds of the segment from (x1, y1) to (x2, y2); false if not
+   */
+  private static boolean onSegment(double x1, double y1, double x2, double y2, double x, double y) {
+    return x >= Math.min(x1, x2) && x <= Math.max(x1, x2) && y >= Math.min(y1, y2) && y <= Math.max(y1, y2);
+  }
+
+  /**
+   * The IntBuffer class collects query results without boxing them
+   */
+  private static class IntBuffer {
+
+    /** The values collected so far */
+    private int[] values = new int[16];
+
+    /** The number of values collected */
+    private int count;
+
+    /**
+     * Adds a value, growing the buffer when it is full
+     *
+     * @param value the value to add
+     */
+    private void add(int value) {
+      if (count == values.length)
+        values = Arrays.copyOf(values, 2 * count);
+      values[count++] = value;
+    }
+
+    /**
+     * Returns the values collected, in increasing order
+     *
+     * @return the sorted values
+     */
+    private int[] toSortedArray() {
+      int[] result = Arrays.copyOf(values, count);
+      Arrays.sort(result);
+      return result;
+    }
+  }
+}
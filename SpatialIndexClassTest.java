@@ -0,0 +1,119 @@
+import org.junit.*;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * JUnit test suite for the SpatialIndex class
+ * This class checks the queries against a scan of every element
+ */
+public class SpatialIndexClassTest {
+
+  /**
+   * Test nearest-neighbor queries on the vertices of a snowflake
+   */
+  @Test
+  public void testNearest() {
+    Point[] points = new SnowflakeFractal<EquilateralTriangle>(
+      new EquilateralTriangle(new Point(250, 250), 300.0), 4).getPoints();
+    SpatialIndex index = SpatialIndex.ofPoints(points);
+    assertEquals(points.length, index.size());
+
+    Random random = new Random(7);
+    for (int i = 0; i < 500; i++) {
+      double x = random.nextDouble() * 500;
+      double y = random.nextDouble() * 500;
+      int found = index.nearest(x, y);
+      double best = Double.POSITIVE_INFINITY;
+      for (Point p : points)
+        best = Math.min(best, Math.hypot(p.getX() - x, p.getY() - y));
+      assertEquals(best, Math.hypot(points[found].getX() - x, points[found].getY() - y), 1e-9);
+    }
+
+    //nothing lies within the distance
+    assertEquals(-1, index.nearest(-1000, -1000, 10));
+    assertEquals(-1, SpatialIndex.ofPoints(new Point[0]).nearest(0, 0));
+  }
+
+  /**
+   * Test box queries on the Lines of a triangle fractal
+   */
+  @Test
+  public void testRange() {
+    Line[] lines = new TriangleFractal(new Triangle(new Point(0, 500), new Point(250, 0), new Point(500, 500)), 4).getLines();
+    SpatialIndex index = SpatialIndex.ofLines(lines);
+
+    Random random = new Random(11);
+    for (int i = 0; i < 200; i++) {
+      double x = random.nextDouble() * 500;
+      double y = random.nextDouble() * 500;
+      double size = random.nextDouble() * 100;
+      List<Integer> expected = new ArrayList<>();
+      for (int l = 0; l < lines.length; l++)
+        if (crossesBox(lines[l], x, y, x + size, y + size))
+          expected.add(l);
+      assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), index.range(x, y, x + size, y + size));
+    }
+
+    //the whole fractal
+    int[] all = index.range(-1, -1, 501, 501);
+    assertEquals(lines.length, all.length);
+  }
+
+  /**
+   * Test segment-intersection queries on the Lines of a carpet
+   */
+  @Test
+  public void testIntersecting() {
+    Line[] lines = new RectangleFractal(new Rectangle(new Point(250, 250), 300.0, 200.0), 2).getLines();
+    SpatialIndex index = SpatialIndex.ofLines(lines);
+
+    //a horizontal cut through the carpet meets every vertical Line spanning its height
+    int[] found = index.intersecting(0, 249, 500, 249);
+    for (int l : found) {
+      double y1 = lines[l].getFirstPoint().getY();
+      double y2 = lines[l].getSecondPoint().getY();
+      assertTrue(Math.min(y1, y2) <= 249 && Math.max(y1, y2) >= 249);
+    }
+    assertTrue(found.length > 0);
+
+    //a segment outside the carpet meets nothing
+    assertArrayEquals(new int[0], index.intersecting(0, 0, 50, 50));
+
+    //short segments across the top and left sides of the corner cell of the carpet
+    int[] top = index.intersecting(110, 140, 110, 160);
+    assertEquals(1, top.length);
+    assertEquals(150, lines[top[0]].getFirstPoint().getY(), 1e-9);
+    assertEquals(150, lines[top[0]].getSecondPoint().getY(), 1e-9);
+    int[] left = index.intersecting(90, 160, 110, 160);
+    assertEquals(1, left.length);
+    assertEquals(100, lines[left[0]].getFirstPoint().getX(), 1e-9);
+    assertEquals(100, lines[left[0]].getSecondPoint().getX(), 1e-9);
+  }
+
+  /**
+   * Helper method to check whether a Line crosses a box
+   * The parameters of the Line inside the box along each axis form an interval; the Line meets the box if they overlap
+   *
+   * @return true if the Line meets the box; false if not
+   */
+  private static boolean crossesBox(Line line, double minX, double minY, double maxX, double maxY) {
+    double[] x = axisInterval(line.getFirstPoint().getX(), line.getSecondPoint().getX(), minX, maxX);
+    double[] y = axisInterval(line.getFirstPoint().getY(), line.getSecondPoint().getY(), minY, maxY);
+    return Math.max(0, Math.max(x[0], y[0])) <= Math.min(1, Math.min(x[1], y[1]));
+  }
+
+  /**
+   * Helper method to find the parameters where a coordinate moving from a to b lies between min and max
+   *
+   * @return the first and last parameter, an empty interval if there is none
+   */
+  private static double[] axisInterval(double a, double b, double min, double max) {
+    if (a == b)
+      return a >= min && a <= max ? new double[] {0, 1} : new double[] {1, 0};
+    double t1 = (min - a) / (b - a);
+    double t2 = (max - a) / (b - a);
+    return new double[] {Math.min(t1, t2), Math.max(t1, t2)};
+  }
+}
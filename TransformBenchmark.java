@@ -0,0 +1,70 @@
+import java.util.Arrays;
+
+/**
+ * The TransformBenchmark class times rotating the Points of a large snowflake
+ * It compares rotating each Point with Point.rotateAbout(), as rotate() used to, against the
+ * BatchTransform kernels on Points, on packed x, y coordinates and on separate x and y arrays,
+ * and the parallel kernels on packed coordinates and on Points. Running it with and without
+ * --add-modules jdk.incubator.vector compares the Vector API kernels with the scalar loops.
+ * Each variant is run untimed until the JIT compiler has compiled it, since the Vector API kernels are
+ * very slow before that, then run several times more, and the median time is reported
+ */
+public class TransformBenchmark {
+
+  /** The number of timed runs of each variant */
+  private static final int RUNS = 15;
+
+  /** The number of untimed runs of each variant before the timed ones */
+  private static final int WARMUP_RUNS = 50;
+
+  /**
+   * Runs the benchmark
+   *
+   * @param args the number of levels of the square snowflake, 9 by default for about a million Points
+   */
+  public static void main(String[] args) {
+    int numLevels = args.length > 0 ? Integer.parseInt(args[0]) : 9;
+    SnowflakeFractal<Square> fractal = new SnowflakeFractal<>(new Square(new Point(0, 0), 1000.0), numLevels);
+    Point[] points = fractal.pointStream().toArray(Point[]::new);
+    double[] packed = new double[2 * points.length];
+    double[] xs = new double[points.length];
+    double[] ys = new double[points.length];
+    for (int i = 0; i < points.length; i++) {
+      packed[2 * i] = xs[i] = points[i].getX();
+      packed[2 * i + 1] = ys[i] = points[i].getY();
+    }
+    Point center = new Point(0, 0);
+    double angle = 1e-3;
+    AffineMap rotation = AffineMap.ofRotation(angle, 0, 0);
+    System.out.printf("%,d Points, %s kernels%n", points.length, BatchTransform.isVectorized() ? "Vector API" : "scalar");
+
+    report("Point.rotateAbout", () -> {
+      for (Point point : points)
+        point.rotateAbout(center, angle);
+    });
+    report("BatchTransform on Points", () -> BatchTransform.apply(rotation, points, 0, points.length));
+    report("BatchTransform on packed x, y", () -> BatchTransform.apply(rotation, packed, 0, points.length));
+    report("BatchTransform on x and y arrays", () -> BatchTransform.apply(rotation, xs, ys, 0, points.length));
+    report("parallel BatchTransform on packed", () -> BatchTransform.applyParallel(rotation, packed, 0, points.length));
+    report("parallel BatchTransform on Points", () -> BatchTransform.applyParallel(rotation, Arrays.asList(points)));
+  }
+
+  /**
+   * Helper method to time a variant and print its median time
+   *
+   * @param name the name of the variant
+   * @param variant the work to time
+   */
+  private static void report(String name, Runnable variant) {
+    for (int run = 0; run < WARMUP_RUNS; run++)
+      variant.run();
+    long[] nanos = new long[RUNS];
+    for (int run = 0; run < RUNS; run++) {
+      long start = System.nanoTime();
+      variant.run();
+      nanos[run] = System.nanoTime() - start;
+    }
+    Arrays.sort(nanos);
+    System.out.printf("%-34s %8.2f ms%n", name, nanos[RUNS / 2] / 1e6);
+  }
+}
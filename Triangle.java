@@ -23,19 +23,49 @@ public class Triangle extends Polygon {
     Point p2 = polyPoints[1]; //the second Point of the triangle
     Point p3 = polyPoints[2]; //the third Point of the triangle
     
-    double x1 = p1.getX();                  //the x coordinate of the first Point 
-    double y1 = p1.getY();                  //the y coordinate of the first Point
-    double x2 = (p2.getX() + p3.getX())/2;  //the x coordinate of the middle Point between p2 and p3
-    double y2 = (p2.getY() + p3.getY())/2;  //the y coordinate of the middle Point between p2 and p3
-    double x3 = p3.getX();                  //the x coordinate of the third Point
-    double y3 = p3.getY();                  //the y coordinate of the third Point
-    double x4 = (p1.getX() + p2.getX())/2;  //the x coordinate of the middle Point between p1 and p2 
-    double y4 = (p1.getY() + p2.getY())/2;  //the x coordinate of the middle Point between p1 and p2
-      
-    double x = ((x1*y2 - y1*x2)*(x3-x4) - (x1-x2)*(x3*y4-y3*x4)) / ((x1-x2)*(y3-y4)-(y1-y2)*(x3-x4));
-    double y = ((x1*y2 - y1*x2)*(y3-y4) - (y1-y2)*(x3*y4-y3*x4)) / ((x1-x2)*(y3-y4)-(y1-y2)*(x3-x4));
+    return new Point (centerX(p1.getX(), p1.getY(), p2.getX(), p2.getY(), p3.getX(), p3.getY()),
+                      centerY(p1.getX(), p1.getY(), p2.getX(), p2.getY(), p3.getX(), p3.getY()));
+  }
+  
+  /**
+   * Returns the x coordinate of the center of a triangle given by its coordinates
+   * The center is the intersection of the median from the first vertex and the median from the third vertex
+   * 
+   * @param x1 the x coordinate of the first Point
+   * @param y1 the y coordinate of the first Point
+   * @param x2 the x coordinate of the second Point
+   * @param y2 the y coordinate of the second Point
+   * @param x3 the x coordinate of the third Point
+   * @param y3 the y coordinate of the third Point
+   * @return the x coordinate of the center
+   */
+  public static double centerX(double x1, double y1, double x2, double y2, double x3, double y3) {
+    double mx2 = (x2 + x3)/2;  //the x coordinate of the middle Point between p2 and p3
+    double my2 = (y2 + y3)/2;  //the y coordinate of the middle Point between p2 and p3
+    double mx4 = (x1 + x2)/2;  //the x coordinate of the middle Point between p1 and p2
+    double my4 = (y1 + y2)/2;  //the y coordinate of the middle Point between p1 and p2
+    
+    return ((x1*my2 - y1*mx2)*(x3-mx4) - (x1-mx2)*(x3*my4-y3*mx4)) / ((x1-mx2)*(y3-my4)-(y1-my2)*(x3-mx4));
+  }
+  
+  /**
+   * Returns the y coordinate of the center of a triangle given by its coordinates
+   * The center is the intersection of the median from the first vertex and the median from the third vertex
+   * 
+   * @param x1 the x coordinate of the first Point
+   * @param y1 the y coordinate of the first Point
+   * @param x2 the x coordinate of the second Point
+   * @param y2 the y coordinate of the second Point
+   * @param x3 the x coordinate of the third Point
+   * @param y3 the y coordinate of the third Point
+   * @return the y coordinate of the center
+   */
+  public static double centerY(double x1, double y1, double x2, double y2, double x3, double y3) {
+    double mx2 = (x2 + x3)/2;  //the x coordinate of the middle Point between p2 and p3
+    double my2 = (y2 + y3)/2;  //the y coordinate of the middle Point between p2 and p3
+    double mx4 = (x1 + x2)/2;  //the x coordinate of the middle Point between p1 and p2
+    double my4 = (y1 + y2)/2;  //the y coordinate of the middle Point between p1 and p2
     
-    return new Point (x,y);
+    return ((x1*my2 - y1*mx2)*(y3-my4) - (y1-my2)*(x3*my4-y3*mx4)) / ((x1-mx2)*(y3-my4)-(y1-my2)*(x3-mx4));
   }
 }
-                                     
\ No newline at end of file
@@ -1,4 +1,4 @@
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * The TriangleFractal class generates a fractal pattern based on a triangle
@@ -7,6 +7,18 @@ import java.util.ArrayList;
  */
 public class TriangleFractal extends Fractal<Triangle> {
 
+  /** The deepest level that can be indexed, keeping the edge ids within an int */
+  private static final int MAX_MESH_LEVELS = 18;
+  
+  /** The mesh of the last getMesh() call, or null if none was built */
+  private FractalMesh cachedMesh;
+  
+  /** The version of the fractal the cached mesh was built from */
+  private long meshVersion;
+  
+  /** The ids in the cached mesh of the three corners of the base triangle */
+  private int[] meshCorners;
+
   /**
    * Constructs a new TriangleFractal with the given base triangle and number of recursion levels
    *
@@ -19,90 +31,195 @@ public class TriangleFractal extends Fractal<Triangle> {
   
   /**
    * Generates and retrieves all Points of the triangle fractal
+   * The Points are the vertices of the mesh, and the corners of the base triangle are the base shape's own Points
+   * The Points are shared with the fractal, as Fractal.getPoints() describes, and must not be changed
    *
    * @return an array of Points representing the fractal's vertices
+   * @throws IllegalStateException if the fractal has too many levels to index
    */
   public Point[] getPoints() {
-    ArrayList<Point> points = new ArrayList<>();
-    pointsOfFractal.clear(); //clear previously stored points
-    generateTriangleFractalPoints(baseShape.getPoints(), numLevels, points);
-    pointsOfFractal.addAll(points);
-    return points.toArray(new Point[0]);
+    Point[] cached = cachedPoints();
+    if (cached != null)
+      return cached;
+    GenerationRun run = startRun();
+    try {
+      FractalMesh mesh = currentMesh();
+      Point[] points = new Point[mesh.getVertexCount()];
+      for (int i = 0; i < points.length; i++)
+        points[i] = new Point(mesh.getX(i), mesh.getY(i));
+      
+      //share the corners with the base shape, so that rotate() moves it along and a new generation keeps the rotation
+      Point[] corners = baseShape.getPoints();
+      for (int i = 0; i < 3; i++)
+        points[meshCorners[i]] = corners[i];
+      
+      pointsOfFractal.clear(); //clear previously stored points
+      pointsOfFractal.addAll(Arrays.asList(points));
+      countVertices(points.length);
+      return cachePoints(points);
+    } finally {
+      finishRun(run);
+    }
   }
   
   /**
-   * Recursively generates the points of the triangle fractal for a given level
+   * Generates and retrieves all Lines of the triangle fractal.
+   * The Lines are the edges of the mesh, joining the Points of getPoints(), and are shared with the fractal in the same way
    *
-   * @param points the Points of the current level's triangle
-   * @param numLevels the number of recursive levels remaining
-   * @param result the list to store the resulting points
+   * @return an array of Lines representing all Lines of the smaller triangles
+   * @throws IllegalStateException if the fractal has too many levels to index
    */
-  private void generateTriangleFractalPoints (Point[] points, int numLevels, ArrayList<Point> result) {
-    if (numLevels == 0) {
-      //base case: Add all Points of the current triangle to the result
-      for (Point point : points) {
-        if (!result.contains(point))
-          result.add(point);
-      }
-      return;
+  public Line[] getLines() {
+    Line[] cached = cachedLines();
+    if (cached != null)
+      return cached;
+    GenerationRun run = startRun();
+    try {
+      Point[] points = getPoints();
+      FractalMesh mesh = currentMesh();
+      Line[] lines = new Line[mesh.getEdgeCount()];
+      for (int i = 0; i < lines.length; i++)
+        lines[i] = new Line(points[mesh.getEdgeStart(i)], points[mesh.getEdgeEnd(i)]);
+      countEdges(lines.length);
+      return cacheLines(lines);
+    } finally {
+      finishRun(run);
     }
+  }
+  
+  /**
+   * Generates the unique vertices and edges of the fractal together, in a single walk of the recursion
+   * A vertex is either a base vertex or the center of an inner triangle, and an edge is either a base
+   * edge or a spoke joining an inner center to a vertex, so both get their id when they are created
+   * and a leaf tells a repeated vertex or edge by its id instead of searching for it.
+   * The vertices and edges come in the same order as getPoints() and getLines()
+   *
+   * @return the indexed mesh of the fractal
+   * @throws IllegalStateException if the fractal has too many levels to index
+   */
+  public FractalMesh getMesh() {
+    boolean hit = cachedMesh != null && meshVersion == getVersion();
+    FractalMetrics.getRegistry().recordCacheLookup("mesh", hit);
+    if (hit)
+      return cachedMesh;
     
-    //vertices of the current triangle
-    Point p1 = points[0];
-    Point p2 = points[1];
-    Point p3 = points[2];
-    
-    //calculate the center of the triangle
-    Triangle triangle = new Triangle(p1,p2,p3);
-    Point center = triangle.getCenter();
-    
-    //recursively generate Points for the three smaller triangles
-    generateTriangleFractalPoints(new Point[]{center, p1, p2}, numLevels - 1, result);
-    generateTriangleFractalPoints(new Point[]{center, p2, p3}, numLevels - 1, result);
-    generateTriangleFractalPoints(new Point[]{center, p3, p1}, numLevels - 1, result);
+    GenerationRun run = startRun();
+    try {
+      FractalMesh mesh = buildMesh();
+      countVertices(mesh.getVertexCount());
+      countEdges(mesh.getEdgeCount());
+      return mesh;
+    } finally {
+      finishRun(run);
+    }
   }
   
   /**
-   * Generates and retrieves all Lines of the triangle fractal.
+   * Helper method to retrieve the mesh of the current version of the fractal, building it if needed
    *
-   * @return an array of Lines representing all Lines of the smaller triangles
+   * @return the indexed mesh of the fractal
+   * @throws IllegalStateException if the fractal has too many levels to index
    */
-  public Line[] getLines() {
-    ArrayList<Line> lines = new ArrayList<>();
-    generateTriangleFractalLines(baseShape.getPoints(), numLevels, lines);
-    return lines.toArray(new Line[0]);
+  private FractalMesh currentMesh() {
+    if (cachedMesh != null && meshVersion == getVersion())
+      return cachedMesh;
+    return buildMesh();
   }
   
   /**
-   * Recursively generates the lines of the triangle fractal for a given level
+   * Helper method to walk the recursion once and keep the mesh for the current version of the fractal
    *
-   * @param points the points of the current level's triangle
-   * @param numLevels the number of recursive levels remaining
-   * @param result the list to store the resulting lines
+   * @return the indexed mesh of the fractal
+   * @throws IllegalStateException if the fractal has too many levels to index
    */
-  private void generateTriangleFractalLines (Point[] points, int numLevels, ArrayList<Line> result) {
-    if (numLevels == 0) {
-      //base case: Add all Lines of the smaller triangles
-      addLineIfNotExists((new Line(points[0], points[1])), result);
-      addLineIfNotExists((new Line(points[1], points[2])), result);
-      addLineIfNotExists((new Line(points[2], points[0])), result); 
-      return;
+  private FractalMesh buildMesh() {
+    if (numLevels > MAX_MESH_LEVELS)
+      throw new IllegalStateException("The fractal has too many levels to index.");
+    Point[] points = baseShape.getPoints();
+    MeshBuilder builder = new MeshBuilder(numLevels);
+    for (int i = 0; i < 3; i++) {
+      builder.coordinates[2 * i] = points[i].getX();
+      builder.coordinates[2 * i + 1] = points[i].getY();
     }
+    //the base edges are 0 from p1 to p2, 1 from p2 to p3 and 2 from p3 to p1
+    builder.walk(0, 1, 2, 0, 1, 2, numLevels);
+    cachedMesh = builder.toMesh();
+    meshCorners = Arrays.copyOf(builder.vertexOrder, 3);
+    meshVersion = getVersion();
+    return cachedMesh;
+  }
+  
+  /**
+   * Finds the smaller triangle holding a Point, descending one level at a time from the base triangle
+   * At every level the Point is tested against the three triangles around the center, using only the base shape
+   * 
+   * @param point the Point to look up
+   * @return the address of the smallest triangle holding the Point, or null if the Point lies outside the base triangle
+   */
+  public FractalAddress locate(Point point) {
+    Point[] points = baseShape.getPoints();
+    double x1 = points[0].getX(), y1 = points[0].getY();
+    double x2 = points[1].getX(), y2 = points[1].getY();
+    double x3 = points[2].getX(), y3 = points[2].getY();
+    double px = point.getX(), py = point.getY();
+    if (!contains(x1, y1, x2, y2, x3, y3, px, py))
+      return null;
     
-    Triangle triangle = new Triangle(points[0], points[1], points[2]);
-    
-    //vertices of the current triangle
-    Point p1 = points[0];
-    Point p2 = points[1];
-    Point p3 = points[2];
-    
-    //calculate the center of the triangle
-    Point center = triangle.getCenter();
-    
-    //recursively generate Lines for the three smaller triangles
-    generateTriangleFractalLines(new Point[]{center, p1, p2}, numLevels - 1, result);
-    generateTriangleFractalLines(new Point[]{center, p2, p3}, numLevels - 1, result);
-    generateTriangleFractalLines(new Point[]{center, p3, p1}, numLevels - 1, result);
+    int[] path = new int[numLevels];
+    for (int level = 0; level < numLevels; level++) {
+      double cx = Triangle.centerX(x1, y1, x2, y2, x3, y3);
+      double cy = Triangle.centerY(x1, y1, x2, y2, x3, y3);
+      
+      //the three triangles cover this one, so a Point in neither of the first two is in the last one
+      if (contains(cx, cy, x1, y1, x2, y2, px, py)) {
+        path[level] = 0;
+        x3 = x2; y3 = y2; x2 = x1; y2 = y1;
+      }
+      else if (contains(cx, cy, x2, y2, x3, y3, px, py)) {
+        path[level] = 1;
+      }
+      else {
+        path[level] = 2;
+        x2 = x3; y2 = y3; x3 = x1; y3 = y1;
+      }
+      x1 = cx;
+      y1 = cy;
+    }
+    return new FractalAddress(path, 3, true);
+  }
+  
+  /**
+   * Helper method to check whether a Point lies in a triangle or on its sides
+   * 
+   * @return true if the Point (px, py) lies in the triangle (x1, y1), (x2, y2), (x3, y3); false if not
+   */
+  private static boolean contains(double x1, double y1, double x2, double y2, double x3, double y3, double px, double py) {
+    double d1 = (x2 - x1) * (py - y1) - (y2 - y1) * (px - x1);
+    double d2 = (x3 - x2) * (py - y2) - (y3 - y2) * (px - x2);
+    double d3 = (x1 - x3) * (py - y3) - (y1 - y3) * (px - x3);
+    boolean negative = d1 < 0 || d2 < 0 || d3 < 0;
+    boolean positive = d1 > 0 || d2 > 0 || d3 > 0;
+    return !(negative && positive);
+  }
+  
+  /**
+   * Retrieves the iterated function system shared by all TriangleFractals
+   *
+   * @return the system dividing a triangle about its center
+   */
+  protected IteratedFunctionSystem system() {
+    return CenterSubdivision.SYSTEM;
+  }
+  
+  /**
+   * Retrieves the map taking the triangle (0, 0), (1, 0), (0, 1) onto the base triangle
+   *
+   * @return an array holding the map
+   */
+  protected AffineMap[] rootMaps() {
+    Point[] points = baseShape.getPoints();
+    return new AffineMap[] {AffineMap.ofTriangle(points[0].getX(), points[0].getY(), points[1].getX(), points[1].getY(),
+                                                 points[2].getX(), points[2].getY())};
   }
   
   public void printPoints() {
@@ -111,4 +228,190 @@ public class TriangleFractal extends Fractal<Triangle> {
       System.out.printf("(%.6f, %.6f)\n", p.getX(), p.getY());
     }
   }
-}
\ No newline at end of file
+  
+  /**
+   * The CenterSubdivision class divides the triangle (0, 0), (1, 0), (0, 1) into the three
+   * triangles joining its center to its sides, as the three maps of an iterated function system.
+   * The root owns the base vertices and edges, and every inner triangle owns its center
+   * and the three Lines joining the center to its vertices
+   */
+  private static class CenterSubdivision extends IteratedFunctionSystem {
+    
+    /** The system shared by all TriangleFractals */
+    static final CenterSubdivision SYSTEM = new CenterSubdivision();
+    
+    /** The center of the triangle (0, 0), (1, 0), (0, 1) */
+    private static final double CENTER = 1.0 / 3;
+    
+    /**
+     * Creates the system, mapping the triangle onto (center, p1, p2), (center, p2, p3) and (center, p3, p1)
+     */
+    private CenterSubdivision() {
+      super(new AffineMap[] {AffineMap.ofTriangle(CENTER, CENTER, 0, 0, 1, 0),
+                             AffineMap.ofTriangle(CENTER, CENTER, 1, 0, 0, 1),
+                             AffineMap.ofTriangle(CENTER, CENTER, 0, 1, 0, 0)},
+            new double[] {0, 0, 1, 0, 0, 1},
+            new double[] {0, 0, 1, 0, 1, 0, 0, 1, 0, 1, 0, 0});
+    }
+    
+    /**
+     * Emits the base triangle from the root and the center and spokes from every inner triangle
+     *
+     * @param node the triangle being expanded
+     * @param sink the sink receiving the geometry owned by the triangle
+     */
+    protected void emit(double[] node, GeometrySink sink) {
+      double x1 = mapX(node, 0, 0), y1 = mapY(node, 0, 0);
+      double x2 = mapX(node, 1, 0), y2 = mapY(node, 1, 0);
+      double x3 = mapX(node, 0, 1), y3 = mapY(node, 0, 1);
+      
+      if (getDepth(node) == 0) {
+        sink.point(x1, y1);
+        sink.point(x2, y2);
+        sink.point(x3, y3);
+        sink.line(x1, y1, x2, y2);
+        sink.line(x2, y2, x3, y3);
+        sink.line(x3, y3, x1, y1);
+      }
+      if (getLevels(node) == 0)
+        return;
+      
+      double cx = mapX(node, CENTER, CENTER);
+      double cy = mapY(node, CENTER, CENTER);
+      sink.point(cx, cy);
+      sink.line(cx, cy, x1, y1);
+      sink.line(cx, cy, x2, y2);
+      sink.line(cx, cy, x3, y3);
+    }
+  }
+  
+  /**
+   * The MeshBuilder class walks the recursion once, handing out vertex and edge ids as it goes
+   * The center of the k-th inner triangle has id 3 + k, and its spokes to the first, second and
+   * third vertex have ids 3 + 3k, 4 + 3k and 5 + 3k. The ids are only used during the walk; the
+   * mesh numbers vertices and edges in the order the leaves first reach them
+   *
+   * Unlike the other fractals, the mesh is not built from the geometry CenterSubdivision emits.
+   * getPoints() and getLines() have always listed the vertices and edges in leaf order, starting
+   * with the center of the first inner triangle, while the system emits the base triangle first and
+   * every center from the triangle owning it. A sink would have to find each spoke's ends by their
+   * coordinates and then sort the mesh back into leaf order, whereas this walk takes the ids from
+   * the recursion itself. The walk divides a triangle exactly as CenterSubdivision does, and
+   * testMesh checks the two against each other
+   */
+  private static class MeshBuilder {
+    
+    /** The coordinates of every vertex by id, as x, y */
+    private final double[] coordinates;
+    
+    /** The position of every vertex and edge in the mesh by id, or -1 if no leaf reached it yet */
+    private final int[] vertexOrder;
+    private final int[] edgeOrder;
+    
+    /** The vertices and edges of the mesh */
+    private final double[] vertices;
+    private final int[] edges;
+    
+    /** The number of inner triangles created, and of vertices and edges in the mesh */
+    private int numInner;
+    private int numVertices;
+    private int numEdges;
+    
+    /**
+     * Creates a MeshBuilder sized for a number of levels
+     * 
+     * @param numLevels the number of levels of the fractal
+     */
+    private MeshBuilder(int numLevels) {
+      int inner = 0;
+      for (int level = 0; level < numLevels; level++)
+        inner = 3 * inner + 1;
+      coordinates = new double[2 * (3 + inner)];
+      vertexOrder = new int[3 + inner];
+      edgeOrder = new int[3 + 3 * inner];
+      Arrays.fill(vertexOrder, -1);
+      Arrays.fill(edgeOrder, -1);
+      vertices = new double[coordinates.length];
+      edges = new int[2 * edgeOrder.length];
+    }
+    
+    /**
+     * Walks a triangle and its subtriangles, each one as (center, a, b), (center, b, c) and (center, c, a)
+     * 
+     * @param a the id of the first vertex
+     * @param b the id of the second vertex
+     * @param c the id of the third vertex
+     * @param ab the id of the edge from the first to the second vertex
+     * @param bc the id of the edge from the second to the third vertex
+     * @param ca the id of the edge from the third to the first vertex
+     * @param levels the number of levels remaining
+     */
+    private void walk(int a, int b, int c, int ab, int bc, int ca, int levels) {
+      if (levels == 0) {
+        reachVertex(a);
+        reachVertex(b);
+        reachVertex(c);
+        reachEdge(ab, a, b);
+        reachEdge(bc, b, c);
+        reachEdge(ca, c, a);
+        return;
+      }
+      
+      //create the center and its spokes
+      int k = numInner++;
+      int center = 3 + k;
+      double x1 = coordinates[2 * a], y1 = coordinates[2 * a + 1];
+      double x2 = coordinates[2 * b], y2 = coordinates[2 * b + 1];
+      double x3 = coordinates[2 * c], y3 = coordinates[2 * c + 1];
+      coordinates[2 * center] = Triangle.centerX(x1, y1, x2, y2, x3, y3);
+      coordinates[2 * center + 1] = Triangle.centerY(x1, y1, x2, y2, x3, y3);
+      int spokeA = 3 + 3 * k;
+      int spokeB = spokeA + 1;
+      int spokeC = spokeA + 2;
+      
+      //the subtriangles (center, a, b), (center, b, c) and (center, c, a)
+      walk(center, a, b, spokeA, ab, spokeB, levels - 1);
+      walk(center, b, c, spokeB, bc, spokeC, levels - 1);
+      walk(center, c, a, spokeC, ca, spokeA, levels - 1);
+    }
+    
+    /**
+     * Adds a vertex to the mesh the first time a leaf reaches it
+     * 
+     * @param vertex the id of the vertex
+     */
+    private void reachVertex(int vertex) {
+      if (vertexOrder[vertex] >= 0)
+        return;
+      vertexOrder[vertex] = numVertices;
+      vertices[2 * numVertices] = coordinates[2 * vertex];
+      vertices[2 * numVertices + 1] = coordinates[2 * vertex + 1];
+      numVertices++;
+    }
+    
+    /**
+     * Adds an edge to the mesh the first time a leaf reaches it, in the direction the leaf gives
+     * 
+     * @param edge the id of the edge
+     * @param start the id of the start vertex
+     * @param end the id of the end vertex
+     */
+    private void reachEdge(int edge, int start, int end) {
+      if (edgeOrder[edge] >= 0)
+        return;
+      edgeOrder[edge] = numEdges;
+      edges[2 * numEdges] = vertexOrder[start];
+      edges[2 * numEdges + 1] = vertexOrder[end];
+      numEdges++;
+    }
+    
+    /**
+     * Creates the mesh from the vertices and edges reached
+     * 
+     * @return the mesh
+     */
+    private FractalMesh toMesh() {
+      return new FractalMesh(vertices, edges);
+    }
+  }
+}
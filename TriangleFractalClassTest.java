@@ -1,6 +1,8 @@
 import org.junit.*;
 import static org.junit.Assert.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.Collectors;
 
 /**
  * JUnit test suite for the TriangleFractal class
@@ -155,4 +157,105 @@ public class TriangleFractalClassTest {
     assertEquals(rotatedPoint, rotatedPoints[0]);
     assertNotEquals(originalPoints,rotatedPoints);
   }
-}
\ No newline at end of file
+  
+  /**
+   * Test pointStream() and lineStream()
+   * The streams should produce the same unique Points and Lines as getPoints() and getLines()
+   */
+  @Test
+  public void testStreams() {
+    TriangleFractal fractal = new TriangleFractal(triangle, 3);
+    
+    Point[] points = fractal.getPoints();
+    Line[] lines = fractal.getLines();
+    
+    //verify the sequential streams
+    assertEquals(points.length, fractal.pointStream().count());
+    assertEquals(lines.length, fractal.lineStream().count());
+    assertTrue(fractal.pointStream().allMatch(point -> Arrays.asList(points).contains(point)));
+    assertTrue(fractal.lineStream().allMatch(line -> Arrays.asList(lines).contains(line)));
+    
+    //verify the parallel streams keep the encounter order
+    assertEquals(fractal.pointStream().collect(Collectors.toList()),
+                 fractal.pointStream().parallel().collect(Collectors.toList()));
+    assertEquals(fractal.lineStream().collect(Collectors.toList()),
+                 fractal.lineStream().parallel().collect(Collectors.toList()));
+  }
+  
+  /**
+   * Test locate()
+   * The address should give the triangle taken around the center at each level
+   */
+  @Test
+  public void testLocate() {
+    TriangleFractal fractal = new TriangleFractal(triangle, 2);
+    
+    assertArrayEquals(new int[] {0, 1}, fractal.locate(new Point(0, 0.1)).getPath());
+    FractalAddress address = fractal.locate(new Point(0.1, 1.2));
+    assertArrayEquals(new int[] {1, 2}, address.getPath());
+    assertTrue(address.isMember());
+    assertEquals(5, address.toIndex());
+    
+    assertEquals(0, new TriangleFractal(triangle, 0).locate(new Point(0, 1)).getDepth());
+    assertNull(fractal.locate(new Point(2, 2)));
+  }
+  
+  /**
+   * Test getMesh() against getPoints() and getLines()
+   * The single walk should give the same vertices and edges in the same order, and the same ones as the iterated function system
+   */
+  @Test
+  public void testMesh() {
+    for (int level = 0; level <= 4; level++) {
+      TriangleFractal fractal = new TriangleFractal(triangle, level);
+      FractalMesh mesh = fractal.getMesh();
+      
+      assertArrayEquals(fractal.getPoints(), mesh.toPoints());
+      assertArrayEquals(fractal.getLines(), mesh.toLines());
+      int inner = ((int) Math.pow(3, level) - 1) / 2;
+      assertEquals(3 + inner, mesh.getVertexCount());
+      assertEquals(3 + 3 * inner, mesh.getEdgeCount());
+      
+      //the walk should divide the triangle as the iterated function system does, in another order
+      Point[] streamed = fractal.pointStream().toArray(Point[]::new);
+      Line[] streamedLines = fractal.lineStream().toArray(Line[]::new);
+      assertEquals(streamed.length, mesh.getVertexCount());
+      assertEquals(streamedLines.length, mesh.getEdgeCount());
+      assertTrue(Arrays.asList(mesh.toPoints()).containsAll(Arrays.asList(streamed)));
+      assertTrue(Arrays.asList(mesh.toLines()).containsAll(Arrays.asList(streamedLines)));
+    }
+    
+    //the mesh is built again after a change
+    TriangleFractal fractal = new TriangleFractal(triangle, 2);
+    FractalMesh mesh = fractal.getMesh();
+    assertSame(mesh, fractal.getMesh());
+    fractal.setCenter(new Point(10, 10));
+    assertNotSame(mesh, fractal.getMesh());
+    assertArrayEquals(fractal.getPoints(), fractal.getMesh().toPoints());
+  }
+  
+  /**
+   * Test that the Lines join the Points of getPoints() and that a rotated fractal is generated rotated again
+   */
+  @Test
+  public void testRotateLines() {
+    TriangleFractal fractal = new TriangleFractal(new Triangle(new Point(-1, 0), new Point(1, 0), new Point(0, Math.sqrt(3))), 2);
+    Point[] points = fractal.getPoints();
+    Line[] lines = fractal.getLines();
+    assertTrue(Arrays.asList(points).stream().anyMatch(point -> point == lines[4].getFirstPoint()));
+    
+    //rotate copies of the Lines about the center
+    Point center = fractal.getCenter();
+    Line[] expected = new Line[lines.length];
+    for (int i = 0; i < lines.length; i++) {
+      Point first = new Point(lines[i].getFirstPoint().getX(), lines[i].getFirstPoint().getY());
+      Point second = new Point(lines[i].getSecondPoint().getX(), lines[i].getSecondPoint().getY());
+      first.rotateAbout(center, Math.toRadians(90));
+      second.rotateAbout(center, Math.toRadians(90));
+      expected[i] = new Line(first, second);
+    }
+    
+    fractal.rotate(Math.toRadians(90));
+    assertArrayEquals(expected, fractal.getLines());
+  }
+}
@@ -4,10 +4,12 @@ import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.StackPane;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.Alert;
+import javafx.scene.control.CheckBox;
 import javafx.scene.canvas.GraphicsContext;
 
 /**
@@ -26,9 +28,23 @@ public class TriangleFractalGUI extends Application {
   private TextField y3Field = new TextField("500");
   private TextField numLevelsField = new TextField("1");
   
+  /** Check box to draw the fractal level by level */
+  private CheckBox progressiveBox = new CheckBox("Progressive");
+  
   /** Canvas for drawing the fractal */
   private Canvas canvas = new Canvas(500.0, 500.0);
   
+  /** Renderer drawing the levels as they are generated in progressive mode */
+  private ProgressiveRenderer progressiveRenderer =
+    new ProgressiveRenderer(canvas, e -> showErrorDialog("Rendering failed", String.valueOf(e.getMessage())));
+
+  /** Overlay marking the vertex or Line under the mouse and the selected Lines, and label describing them */
+  private Canvas overlay = new Canvas(500.0, 500.0);
+  private Label pickLabel = new Label();
+  
+  /** Picker answering hover and selection from an index of the drawn Lines */
+  private FractalPicker picker = new FractalPicker(canvas, overlay, pickLabel);
+  
   /**
    * Main entry point for the JavaFX application
    * Sets up the layout, input fields, and event handling for the GUI
@@ -63,10 +79,12 @@ public class TriangleFractalGUI extends Application {
     inputPane.addRow(1, x2Label, x2Field, y2Label, y2Field);
     inputPane.addRow(2, x3Label, x3Field, y3Label, y3Field);
     inputPane.addRow(3, numLevelsLabel, numLevelsField);
-    inputPane.add(drawButton, 0, 4, 4, 1);
+    inputPane.add(progressiveBox, 0, 4, 4, 1);
+    inputPane.add(drawButton, 0, 5, 4, 1);
+    inputPane.add(pickLabel, 0, 6, 4, 1);
     
-    //add canvas and input panel to the layout
-    pane.setCenter(canvas);
+    //add canvas with its overlay and input panel to the layout
+    pane.setCenter(new StackPane(canvas, overlay));
     pane.setLeft(inputPane);
     
     //set action for the draw button
@@ -115,6 +133,14 @@ public class TriangleFractalGUI extends Application {
       else
         baseShape = triangle;
       
+      //in progressive mode, draw level 0 now and the deeper levels as they are generated, and pick from the last one
+      if (progressiveBox.isSelected()) {
+        picker.clear();
+        progressiveRenderer.render(numLevels, level -> new TriangleFractal(baseShape, level), picker::setLines);
+        return;
+      }
+      progressiveRenderer.cancel();
+      
       //create the fractal
       TriangleFractal fractal = new TriangleFractal (baseShape, numLevels);
       
@@ -122,7 +148,10 @@ public class TriangleFractalGUI extends Application {
       GraphicsContext gc = canvas.getGraphicsContext2D();
       gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight()); //clear canvas
       
-      for (Line line : fractal.getLines()) {
+      Line[] lines = fractal.getLines();
+      FractalDrawEvent event = new FractalDrawEvent();
+      event.begin();
+      for (Line line : lines) {
         gc.strokeLine(
                       line.getFirstPoint().getX(),
                       line.getFirstPoint().getY(),
@@ -130,6 +159,8 @@ public class TriangleFractalGUI extends Application {
                       line.getSecondPoint().getY()
                      );
       }
+      event.finish(fractal, "canvas", lines.length);
+      picker.setLines(lines);
     } catch (NumberFormatException e) {
       showErrorDialog("Invalid input", "Please enter valid numbers for all inputs.");
     } catch (IllegalArgumentException e) {
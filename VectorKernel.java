@@ -0,0 +1,110 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The VectorKernel class runs the kernels of BatchTransform with the Vector API of jdk.incubator.vector
+ * Each step transforms as many coordinates as the preferred vector of the hardware holds, and the Points
+ * left over at the end of a range go through the scalar loop. Packed coordinates are transformed without
+ * splitting them: every x, y pair is swapped inside the vector, so that a vector of x, y pairs times
+ * (a, d) plus the swapped vector times (b, c) plus (e, f) is the whole map.
+ * The additions are made in the order of the scalar loops, so both give exactly the same results.
+ *
+ * BatchTransform loads this class by name and falls back to its scalar loops when the module is absent.
+ * Compiling this class needs --add-modules jdk.incubator.vector, and so does running with it
+ */
+class VectorKernel implements BatchTransform.Kernel {
+
+  /** The vector shape used, the widest the hardware runs well, holding at least one Point */
+  private static final VectorSpecies<Double> SPECIES =
+    DoubleVector.SPECIES_PREFERRED.length() >= 2 ? DoubleVector.SPECIES_PREFERRED : DoubleVector.SPECIES_128;
+
+  /** Swaps the two coordinates of every Point in a vector of packed coordinates */
+  private static final VectorShuffle<Double> SWAP = VectorShuffle.fromOp(SPECIES, lane -> lane ^ 1);
+
+  /** Selects the lanes holding a y coordinate in a vector of packed coordinates */
+  private static final VectorMask<Double> Y_LANES = VectorMask.fromLong(SPECIES, 0xAAAAAAAAAAAAAAAAL);
+
+  /** The scalar loops finishing the ranges */
+  private final BatchTransform.Kernel scalar = new BatchTransform.ScalarKernel();
+
+  /**
+   * Transforms packed coordinates in place
+   *
+   * @param m the coefficients of the map, as a, b, c, d, e, f
+   * @param coordinates the coordinates, as x, y
+   * @param from the index of the first Point to transform
+   * @param to the index after the last Point to transform
+   */
+  public void apply(double[] m, double[] coordinates, int from, int to) {
+    DoubleVector diagonal = pairs(m[0], m[3]);
+    DoubleVector cross = pairs(m[1], m[2]);
+    DoubleVector offset = pairs(m[4], m[5]);
+    int i = 2 * from;
+    int bound = i + SPECIES.loopBound(2 * to - i);
+    for (; i < bound; i += SPECIES.length()) {
+      DoubleVector v = DoubleVector.fromArray(SPECIES, coordinates, i);
+      v.mul(diagonal).add(v.rearrange(SWAP).mul(cross)).add(offset).intoArray(coordinates, i);
+    }
+    scalar.apply(m, coordinates, i / 2, to);
+  }
+
+  /**
+   * Transforms packed coordinates into another range that does not overlap them
+   *
+   * @param m the coefficients of the map, as a, b, c, d, e, f
+   * @param source the coordinates to read, as x, y
+   * @param sourceFrom the index of the first Point to read
+   * @param target the array receiving the transformed coordinates, as x, y
+   * @param targetFrom the index of the first Point to write
+   * @param count the number of Points to transform
+   */
+  public void apply(double[] m, double[] source, int sourceFrom, double[] target, int targetFrom, int count) {
+    DoubleVector diagonal = pairs(m[0], m[3]);
+    DoubleVector cross = pairs(m[1], m[2]);
+    DoubleVector offset = pairs(m[4], m[5]);
+    int shift = 2 * (targetFrom - sourceFrom);
+    int i = 2 * sourceFrom;
+    int bound = i + SPECIES.loopBound(2 * count);
+    for (; i < bound; i += SPECIES.length()) {
+      DoubleVector v = DoubleVector.fromArray(SPECIES, source, i);
+      v.mul(diagonal).add(v.rearrange(SWAP).mul(cross)).add(offset).intoArray(target, i + shift);
+    }
+    int done = i / 2 - sourceFrom;
+    scalar.apply(m, source, sourceFrom + done, target, targetFrom + done, count - done);
+  }
+
+  /**
+   * Transforms coordinates held in separate x and y arrays in place
+   *
+   * @param m the coefficients of the map, as a, b, c, d, e, f
+   * @param xs the x coordinates
+   * @param ys the y coordinates
+   * @param from the index of the first Point to transform
+   * @param to the index after the last Point to transform
+   */
+  public void apply(double[] m, double[] xs, double[] ys, int from, int to) {
+    double a = m[0], b = m[1], c = m[2], d = m[3], e = m[4], f = m[5];
+    int i = from;
+    int bound = i + SPECIES.loopBound(to - i);
+    for (; i < bound; i += SPECIES.length()) {
+      DoubleVector x = DoubleVector.fromArray(SPECIES, xs, i);
+      DoubleVector y = DoubleVector.fromArray(SPECIES, ys, i);
+      x.mul(a).add(y.mul(b)).add(e).intoArray(xs, i);
+      x.mul(c).add(y.mul(d)).add(f).intoArray(ys, i);
+    }
+    scalar.apply(m, xs, ys, i, to);
+  }
+
+  /**
+   * Helper method to fill a vector with pairs of values, matching packed coordinates
+   *
+   * @param x the value of the lanes holding an x coordinate
+   * @param y the value of the lanes holding a y coordinate
+   * @return the vector x, y, x, y, ...
+   */
+  private static DoubleVector pairs(double x, double y) {
+    return DoubleVector.broadcast(SPECIES, x).blend(y, Y_LANES);
+  }
+}